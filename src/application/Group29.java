@@ -1,5 +1,6 @@
 package application;
 
+import database.DatabaseConnection;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -8,6 +9,10 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.stage.Stage;
+import service.CheckoutPipeline;
+import service.InvoiceService;
+import service.MessageBus;
+import service.StockLedger;
 import util.Alertutil;
 
 
@@ -25,6 +30,16 @@ public class Group29 extends Application {
      */
     @Override
     public void start(Stage stage) {
+        try {
+            DatabaseConnection.getPool(); // opens the database and applies the migrations
+        } catch (ExceptionInInitializerError e) {
+            // a failed migration leaves a half changed schema; the screens must not run on it
+            e.printStackTrace();
+            Alertutil.showAlert("Database error", "The application can not start",
+                    String.valueOf(e.getCause().getMessage()), Alert.AlertType.ERROR);
+            System.exit(1);
+        }
+
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/resources/Login.fxml"));
             Parent root = loader.load();
@@ -50,6 +65,20 @@ public class Group29 extends Application {
         }
     }
 
+    /**
+     * This method runs when the application is closed.
+     * It saves queued orders, finishes running invoices, closes the message bus, writes the last stock changes
+     * and closes the pooled database connections.
+     */
+    @Override
+    public void stop() {
+        CheckoutPipeline.shutdown();
+        InvoiceService.shutdown();
+        MessageBus.shutdown();
+        StockLedger.shutdown();
+        DatabaseConnection.shutdown();
+    }
+
     /**
      * This method shows a confirmation alert before closing the application.
      * If the user confirms, the application will close.
@@ -11,6 +11,7 @@ import javafx.stage.Stage;
 import model.Order;
 import model.User;
 import util.Alertutil;
+import util.FxAsync;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -50,9 +51,12 @@ public class CarrierController {
 
     @FXML private DatePicker deliveredDatePicker;
     @FXML private ComboBox<Integer> deliveredHourBox;
+    @FXML private Button btnClaim, btnMarkDelivered;
 
     private final OrderDAO orderDAO = new OrderDAO();
     private User currentCarrier;
+    private PagedTableLoader<Order> availablePages;
+    private PagedTableLoader<Order> completedPages;
 
     /**
      * Sets the current logged-in carrier and refreshes the order tables.
@@ -93,6 +97,10 @@ public class CarrierController {
         colComCustomer.setCellValueFactory(d -> new javafx.beans.property.SimpleStringProperty(d.getValue().getCustomerName()));
         colComTotal.setCellValueFactory(new javafx.scene.control.cell.PropertyValueFactory<>("totalCost"));
         colComDelivered.setCellValueFactory(d -> new javafx.beans.property.SimpleStringProperty(d.getValue().getDeliveryTime().toString()));
+
+        availablePages = new PagedTableLoader<>(tableAvailable, orderDAO::getUnassignedOrdersWithCustomerInfoPageAsync);
+        completedPages = new PagedTableLoader<>(tableCompleted,
+                (after, limit) -> orderDAO.getDeliveredOrdersForCarrierPageAsync(currentCarrier.getId(), after, limit));
     }
 
     /**
@@ -100,17 +108,21 @@ public class CarrierController {
      * - Available orders (not assigned)
      * - Selected (assigned to this carrier)
      * - Completed (delivered by this carrier)
+     * The three queries run in parallel on database threads.
+     * Available and completed orders are loaded page by page while scrolling.
      */
     private void refreshAll() {
         if (currentCarrier == null) return;
-        tableAvailable.setItems(FXCollections.observableArrayList(orderDAO.getUnassignedOrdersWithCustomerInfo()));
-        tableSelected.setItems(FXCollections.observableArrayList(orderDAO.getAssignedOrdersForCarrier(currentCarrier.getId())));
-        tableCompleted.setItems(FXCollections.observableArrayList(orderDAO.getDeliveredOrdersForCarrier(currentCarrier.getId())));
+        availablePages.reload();
+        FxAsync.load(tableSelected, orderDAO.getAssignedOrdersForCarrierAsync(currentCarrier.getId()),
+                orders -> tableSelected.setItems(FXCollections.observableArrayList(orders)));
+        completedPages.reload();
     }
 
     /**
      * Handles the action when the carrier clicks "Claim" on an available order.
      * The selected order will be assigned to the current carrier if possible.
+     * The update runs on a database thread; the button is disabled meanwhile.
      */
     @FXML
     private void handleClaimSelectedAvailable() {
@@ -125,18 +137,20 @@ public class CarrierController {
             return;
         }
 
-        if (orderDAO.assignOrderToCarrier(selected.getId(), currentCarrier.getId())) {
-            Alertutil.showSuccessMessage("Order claimed successfully.");
-            refreshAll();
-        } else {
-            Alertutil.showErrorMessage("This order was already claimed.");
+        FxAsync.load(btnClaim, orderDAO.assignOrderToCarrierAsync(selected.getId(), currentCarrier.getId()), claimed -> {
+            if (claimed) {
+                Alertutil.showSuccessMessage("Order claimed successfully.");
+            } else {
+                Alertutil.showErrorMessage("This order was already claimed.");
+            }
             refreshAll();
-        }
+        });
     }
 
     /**
      * Handles the action when the carrier completes an order.
      * Marks the selected order as delivered with the chosen date and hour.
+     * The update runs on a database thread; the button is disabled meanwhile.
      */
     @FXML
     private void handleCompleteSelectedOrder() {
@@ -158,11 +172,14 @@ public class CarrierController {
                 LocalTime.of(deliveredHourBox.getValue(), 0)
         );
 
-        if (orderDAO.completeDelivery(selected.getId(), currentCarrier.getId(), deliveredTime)) {
-            Alertutil.showSuccessMessage("Order marked as delivered.");
-            deliveredDatePicker.setValue(null);
-            refreshAll();
-        }
+        FxAsync.load(btnMarkDelivered,
+                orderDAO.completeDeliveryAsync(selected.getId(), currentCarrier.getId(), deliveredTime), delivered -> {
+            if (delivered) {
+                Alertutil.showSuccessMessage("Order marked as delivered.");
+                deliveredDatePicker.setValue(null);
+                refreshAll();
+            }
+        });
     }
 
     /**
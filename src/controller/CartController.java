@@ -10,6 +10,7 @@ import model.CartItem;
 //kupon için
 import dao.CouponDAO;
 import model.Coupon;
+import util.FxAsync;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 
@@ -59,6 +60,9 @@ public class CartController {
     /** Label that shows coupon status messages. */
     @FXML private Label couponMessage;
 
+    /** Button that applies the coupon (disabled while the coupon is read). */
+    @FXML private Button btnApplyCoupon;
+
     /** Cart object that holds selected items. */
     private Cart cart;
 
@@ -138,6 +142,7 @@ public class CartController {
     /**
      * Called when user clicks "Apply" button for coupon.
      * It checks if coupon exists, is active, and fits the conditions.
+     * The coupon is read on a database thread.
      */
     @FXML
     private void handleApplyCoupon() {
@@ -149,8 +154,15 @@ public class CartController {
         }
 
         CouponDAO couponDAO = new CouponDAO();
-        Coupon coupon = couponDAO.getCouponByCode(code);
+        FxAsync.load(btnApplyCoupon, couponDAO.getCouponByCodeAsync(code), this::applyCoupon);
+    }
 
+    /**
+     * Checks the coupon that was read and applies it if it fits the cart.
+     *
+     * @param coupon the coupon, or null if the code is not found or not active
+     */
+    private void applyCoupon(Coupon coupon) {
         if (coupon == null) {
             couponMessage.setText("Invalid or inactive coupon!");
             couponMessage.setStyle("-fx-text-fill: red;");
@@ -1,35 +1,35 @@
 package controller;
 
-import database.DatabaseConnection;
-import dao.OrderDAO;
+import dao.UserDAO;
+import database.DbExecutor;
 import model.*;
+import service.CheckoutPipeline;
+import service.InsufficientStockException;
+import service.ProductCatalog;
+import service.ProductSearchIndex;
+import service.StockLedger;
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import javafx.scene.layout.FlowPane;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import util.Alertutil;
-import java.io.ByteArrayInputStream;
+import util.FxAsync;
 import java.io.IOException;
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * This controller manages the customer main screen.
@@ -39,8 +39,8 @@ import java.util.ResourceBundle;
 public class CustomerController implements Initializable {
 
 
-    /** FlowPane that holds product cards. */
-    @FXML private FlowPane productsFlowPane;
+    /** Virtualized list of product card rows. */
+    @FXML private ListView<List<Product>> productsListView;
 
     /** Label that shows welcome text for the user. */
     @FXML private Label welcomeLabel;
@@ -55,7 +55,7 @@ public class CustomerController implements Initializable {
     @FXML private TextField searchField;
 
     /** Buttons for category filters and completing purchase. */
-    @FXML private Button btnAllProducts, btnVegetables, btnFruits, btnComplete;
+    @FXML private Button btnAllProducts, btnVegetables, btnFruits, btnComplete, btnMessageOwner;
 
     /** Cart of the current customer session. */
     private final Cart cart = new Cart();
@@ -63,15 +63,27 @@ public class CustomerController implements Initializable {
     /** List of all available products from database. */
     private final ObservableList<Product> productList = FXCollections.observableArrayList();
 
+    /** Product card grid, follows filteredData. */
+    private ProductTileGrid productGrid;
+
     /** Filtered view of product list (search + category). */
     private FilteredList<Product> filteredData;
 
     /** Current logged-in user. */
     private User currentUser;
 
+    /** Search index over productList, rebuilt (off the FX thread) when products are loaded. */
+    private ProductSearchIndex searchIndex = new ProductSearchIndex(List.of());
+
+    /** Waits until the user stops typing before the search runs. */
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(SEARCH_DELAY_MILLIS));
+
     /** Active category filter name. */
     private String activeCategory = "All";
 
+    /** Time without a keystroke before the search runs. */
+    private static final int SEARCH_DELAY_MILLIS = 150;
+
     /** Minimum order amount required to place an order. */
     private static final double MIN_ORDER_AMOUNT = 200.0;
 
@@ -109,8 +121,12 @@ public class CustomerController implements Initializable {
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupDeliveryUI();
-        loadProducts();
         setupSearchFilter();
+        productGrid = new ProductTileGrid(productsListView, filteredData, this::processAddToCart);
+        loadProducts();
+        if (StockLedger.isEnabled()) {
+            DbExecutor.run(StockLedger::getInstance); // loads the stock before the first checkout
+        }
         updateCategoryStyles(btnAllProducts);
         
         addClickEffect(btnAllProducts);
@@ -141,53 +157,52 @@ public class CustomerController implements Initializable {
 
     /**
      * Creates a filtered list for products.
-     * It listens to search text changes and applies filters.
+     * It listens to search text changes and applies filters
+     * when the user did not type for SEARCH_DELAY_MILLIS.
      */
     private void setupSearchFilter() {
         filteredData = new FilteredList<>(productList, p -> true);
-        searchField.textProperty().addListener((observable, oldValue, newValue) -> applyFilters());
+        searchDelay.setOnFinished(e -> applyFilters());
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> searchDelay.playFromStart());
     }
 
 
     /**
-     * Loads products from the database.
-     * It only loads products with stock > 0 and orders by name.
-     * After loading, it renders product cards.
+     * Loads products from the shared product catalog.
+     * It only shows products with stock > 0, ordered by name.
+     * The products are read on a database thread; the grid shows a loading state until they arrive.
+     * The product grid follows the filtered list, so it is updated automatically.
      */
     private void loadProducts() {
-        String sql = "SELECT * FROM productinfo WHERE stock > 0 ORDER BY name ASC";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            productList.clear();
-            while (rs.next()) {
-                productList.add(new Product(
-                        rs.getInt("id"), rs.getString("name"), rs.getString("type"),
-                        rs.getDouble("price"), rs.getDouble("stock"), rs.getBytes("image"),
-                        rs.getDouble("threshold")
-                ));
-            }
-            renderProductCards(productList);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        showProducts(ProductCatalog.getInstance().getAvailableProductsAsync());
+    }
+
+    /**
+     * Builds the search index on a database thread and shows the products when they arrive.
+     *
+     * @param products running product query
+     */
+    private void showProducts(CompletableFuture<List<Product>> products) {
+        FxAsync.load(productsListView, products.thenApply(ProductSearchIndex::new), index -> {
+            searchIndex = index;
+            productList.setAll(index.getProducts());
+            applyFilters();
+        });
     }
 
 
     /**
      * Applies search and category filters on the product list.
-     * It filters by product name/type and by active category.
+     * It filters by product name/type (using the search index) and by active category.
      */
     private void applyFilters() {
-        String searchText = searchField.getText() == null ? "" : searchField.getText().toLowerCase();
+        searchDelay.stop();
+        Predicate<Product> matchesSearch = searchIndex.matcher(searchField.getText());
         filteredData.setPredicate(product -> {
-            boolean matchesSearch = product.getName().toLowerCase().contains(searchText) || 
-                                    product.getType().toLowerCase().contains(searchText);
             boolean matchesCategory = activeCategory.equals("All") || 
                                       product.getType().equalsIgnoreCase(activeCategory);
-            return matchesSearch && matchesCategory;
+            return matchesCategory && matchesSearch.test(product);
         });
-        renderProductCards(filteredData);
     }
 
     /**
@@ -245,54 +260,6 @@ public class CustomerController implements Initializable {
         });
     }
 
-    /**
-     * Creates and shows product cards in the FlowPane.
-     * Each card has image, name, price, stock, and an "ADD" button.
-     *
-     * @param products list of products to render
-     */
-    private void renderProductCards(List<Product> products) {
-        productsFlowPane.getChildren().clear();
-        for (Product product : products) {
-            VBox card = new VBox(10);
-            card.setAlignment(Pos.CENTER);
-            card.setStyle("-fx-background-color: white; -fx-background-radius: 15; -fx-padding: 15; -fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.1), 10, 0, 0, 5);");
-            card.setPrefWidth(220);
-
-            ImageView iv = new ImageView();
-            if (product.getImage() != null) iv.setImage(new Image(new ByteArrayInputStream(product.getImage())));
-            iv.setFitWidth(120); iv.setFitHeight(120); iv.setPreserveRatio(true);
-
-            Label name = new Label(product.getName()); name.setStyle("-fx-font-weight: bold; -fx-font-size: 16px;");
-            Label price = new Label(String.format("%.2f ₺/kg", product.getPrice())); price.setStyle("-fx-text-fill: #2e7d32; -fx-font-weight: bold;");
-            Label stock = new Label("Stock: " + product.getStock() + " kg"); stock.setStyle("-fx-font-size: 11px; -fx-text-fill: gray;");
-
-            TextField qty = new TextField(); qty.setPromptText("kg"); qty.setPrefWidth(60); qty.setStyle("-fx-background-radius: 10;");
-
-            Button addBtn = new Button("ADD");
-            String normalGreen = "-fx-background-color: #2ecc71; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 10; -fx-cursor: hand;";
-            String pressedGreen = "-fx-background-color: #1b5e20; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 10;";
-            
-            addBtn.setStyle(normalGreen);
-            addBtn.setOnMousePressed(e -> {
-                addBtn.setStyle(pressedGreen);
-                addBtn.setScaleX(0.9);
-                addBtn.setScaleY(0.9);
-            });
-            addBtn.setOnMouseReleased(e -> {
-                addBtn.setStyle(normalGreen);
-                addBtn.setScaleX(1.0);
-                addBtn.setScaleY(1.0);
-            });
-            addBtn.setOnAction(e -> processAddToCart(product, qty));
-
-            HBox actions = new HBox(10, qty, addBtn); actions.setAlignment(Pos.CENTER);
-            card.getChildren().addAll(iv, name, price, stock, actions);
-            productsFlowPane.getChildren().add(card);
-        }
-    }
-
-
     /**
      * Adds a product to the cart with the given quantity.
      * It checks quantity is numeric, positive, and not more than stock.
@@ -303,7 +270,7 @@ public class CustomerController implements Initializable {
     private void processAddToCart(Product p, TextField q) {
         try {
             double amount = Double.parseDouble(q.getText());
-            if (amount <= 0 || amount > p.getStock()) { 
+            if (amount <= 0 || amount > StockLedger.availableStock(p)) { 
                 Alertutil.showWarningMessage("Invalid amount or stock."); 
                 return; 
             }
@@ -333,7 +300,8 @@ public class CustomerController implements Initializable {
      * Reloads products and resets search and filter.
      */
     @FXML private void handleRefresh() {
-        loadProducts();
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        showProducts(catalog.refreshAsync().thenCompose(v -> catalog.getAvailableProductsAsync()));
         searchField.clear();
         handleFilterAll();
     }
@@ -377,10 +345,8 @@ public class CustomerController implements Initializable {
         );
 
 
-        // Siparişi ver
-        boolean success = new OrderDAO().placeOrderWithTransaction(currentUser, cart, dt);
-
-        if (success) {
+        // Siparişi ver (saved by the checkout pipeline on a background thread)
+        FxAsync.load(btnComplete, CheckoutPipeline.getInstance().submit(currentUser, cart, dt), orderId -> {
             // Başarılıysa kullanıcıya detaylı bilgi ver
             StringBuilder message = new StringBuilder("Order placed successfully!");
 
@@ -396,9 +362,19 @@ public class CustomerController implements Initializable {
 
             cart.clear(); // sepeti temizle
             loadProducts(); // ürünleri yenile
-        } else {
-            Alertutil.showErrorMessage("Failed to complete the order. Please try again.");
-        }
+        }, error -> {
+            if (error instanceof InsufficientStockException) {
+                StringBuilder message = new StringBuilder("Some products do not have enough stock:\n");
+                for (InsufficientStockException.Shortfall shortfall : ((InsufficientStockException) error).getShortfalls()) {
+                    message.append("\n- ").append(shortfall);
+                }
+                message.append("\n\nPlease change your cart and try again.");
+                Alertutil.showWarningMessage(message.toString());
+                loadProducts(); // show the current stock
+            } else {
+                Alertutil.showErrorMessage("Failed to complete the order. Please try again.");
+            }
+        });
     }
 
 
@@ -410,7 +386,7 @@ public class CustomerController implements Initializable {
         if (Alertutil.showConfirmation("Logout", "Are you sure you want to log out?")) {
             try {
                 Parent r = FXMLLoader.load(getClass().getResource("/resources/Login.fxml"));
-                Stage s = (Stage) productsFlowPane.getScene().getWindow();
+                Stage s = (Stage) productsListView.getScene().getWindow();
                 s.setScene(new Scene(r)); s.centerOnScreen();
             } catch (IOException e) { 
                 e.printStackTrace(); 
@@ -421,43 +397,28 @@ public class CustomerController implements Initializable {
 
     /**
      * Opens the message window to send a message to the owner.
-     * It finds the owner user from database and sets both users in controller.
+     * It finds the owner user on a database thread and sets both users in controller.
      */
     @FXML
     private void handleMessageOwner() {
-        try {
-            FXMLLoader l = new FXMLLoader(getClass().getResource("/resources/MessageView.fxml"));
-            Stage s = new Stage();
-            s.setScene(new Scene(l.load()));
-
-            User owner = findOwner();
-            ((MessageController) l.getController()).setUsers(currentUser, owner);
+        FxAsync.load(btnMessageOwner, new UserDAO().findFirstByRoleAsync("owner"), owner -> {
+            if (owner == null) {
+                Alertutil.showWarningMessage("Owner not found.");
+                return;
+            }
+            try {
+                FXMLLoader l = new FXMLLoader(getClass().getResource("/resources/MessageView.fxml"));
+                Stage s = new Stage();
+                s.setScene(new Scene(l.load()));
 
-            s.setTitle("Message Owner");
-            s.show();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
+                ((MessageController) l.getController()).setUsers(currentUser, owner);
 
-    /**
-     * Finds the owner user from the database.
-     * It searches userinfo table with role 'owner'.
-     *
-     * @return the owner user
-     * @throws Exception if database error happens
-     */
-    private User findOwner() throws Exception {
-        String sql = "SELECT * FROM userinfo WHERE role='owner' LIMIT 1";
-        try (var c = DatabaseConnection.getConnection();
-             var ps = c.prepareStatement(sql);
-             var rs = ps.executeQuery()) {
-
-            if (rs.next())
-                return new User(rs.getInt("id"), rs.getString("username"),
-                        null, rs.getString("role"), rs.getString("address"));
-        }
-        throw new RuntimeException("Owner not found");
+                s.setTitle("Message Owner");
+                s.show();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
     }
 
 }
\ No newline at end of file
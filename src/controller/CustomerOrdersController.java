@@ -8,9 +8,9 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
-import javafx.collections.FXCollections;
 import javafx.beans.property.SimpleStringProperty;
-import util.InvoiceUtil;
+import service.InvoiceService;
+import util.FxAsync;
 import java.awt.Desktop;
 import java.nio.file.Path;
 import model.Order;
@@ -27,9 +27,35 @@ public class CustomerOrdersController {
     @FXML private TableColumn<Order, String> deliveryTimeColumn;
     @FXML private TableColumn<Order, String> statusColumn;
     @FXML private TableColumn<Order, Double> totalColumn;
+    @FXML private Button btnCancelOrder, btnRateCarrier;
 
     private final OrderDAO orderDAO = new OrderDAO();
     private User currentUser;
+    private PagedTableLoader<Order> orderPages;
+
+    /**
+     * Sets up the table columns and the page loader.
+     * This method runs automatically when the FXML is loaded.
+     */
+    @FXML
+    public void initialize() {
+        idColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleObjectProperty<>(c.getValue().getId()));
+        productsColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(c.getValue().getProducts()));
+        orderTimeColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(c.getValue().getOrderTime().toString()));
+        deliveryTimeColumn.setCellValueFactory(c -> {
+            if (c.getValue().getDeliveryTime() == null)
+                return new SimpleStringProperty("-");
+            return new SimpleStringProperty(
+                    c.getValue().getDeliveryTime().toString()
+            );
+        });
+
+        statusColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(getStatusText(c.getValue())));
+        totalColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleObjectProperty<>(c.getValue().getTotalCost()));
+
+        orderPages = new PagedTableLoader<>(ordersTable,
+                (after, limit) -> orderDAO.getOrdersByUserPageAsync(currentUser.getId(), after, limit));
+    }
 
     /**
      * Sets the current logged-in user and loads their orders.
@@ -41,30 +67,12 @@ public class CustomerOrdersController {
     }
 
     /**
-     * Loads all orders of the current user into the table.
+     * Loads the newest orders of the current user into the table.
+     * Older orders are loaded page by page while scrolling.
      */
     private void loadOrders() {
-        try {
-            var orders = FXCollections.observableArrayList(orderDAO.getOrdersByUser(currentUser.getId()));
-            ordersTable.setItems(orders);
-
-            idColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleObjectProperty<>(c.getValue().getId()));
-            productsColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(c.getValue().getProducts()));
-            orderTimeColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(c.getValue().getOrderTime().toString()));
-            deliveryTimeColumn.setCellValueFactory(c -> {
-                if (c.getValue().getDeliveryTime() == null)
-                    return new SimpleStringProperty("-");
-                return new SimpleStringProperty(
-                        c.getValue().getDeliveryTime().toString()
-                );
-            });
-
-            statusColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleStringProperty(getStatusText(c.getValue())));
-            totalColumn.setCellValueFactory(c -> new javafx.beans.property.SimpleObjectProperty<>(c.getValue().getTotalCost()));
-
-        } catch (Exception e) {
-            Alertutil.showErrorMessage("Failed to load orders: " + e.getMessage());
-        }
+        if (currentUser == null) return;
+        orderPages.reload();
     }
     @FXML
     private void handleDownloadInvoice() {
@@ -82,23 +90,20 @@ public class CustomerOrdersController {
             return;
         }
 
-        try {
-            String filePath = "invoice_" + selected.getId() + ".pdf";
-
-            InvoiceUtil.generateInvoice(selected, filePath);
-
+        // the PDF is made (or found) on an invoice worker, not on the JavaFX thread
+        // no busy node: the table has its own page loads, which must not drop this result
+        FxAsync.load(null, InvoiceService.getInstance().getInvoice(selected.getId()), path -> {
             Alertutil.showSuccessMessage(
-                    "Invoice generated:\n" + filePath
+                    "Invoice generated:\n" + path
             );
-
-            java.awt.Desktop.getDesktop().open(new java.io.File(filePath));
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            Alertutil.showErrorMessage(
-                    "Failed to generate invoice."
-            );
-        }
+            try {
+                Desktop.getDesktop().open(path.toFile());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, error -> Alertutil.showErrorMessage(
+                "Failed to generate invoice.\n" + error.getMessage()
+        ));
     }
 
     /**
@@ -134,16 +139,24 @@ public class CustomerOrdersController {
             return;
         }
 
-        RatingDAO ratingDAO = new RatingDAO();
-
-        // Daha önce puanlanmış mı?
-        if (ratingDAO.hasRatingForOrder(selected.getId())) {
-            Alertutil.showWarningMessage(
-                    "This order has already been rated."
-            );
-            return;
-        }
+        // Daha önce puanlanmış mı? (checked on a database thread)
+        FxAsync.load(btnRateCarrier, new RatingDAO().hasRatingForOrderAsync(selected.getId()), rated -> {
+            if (rated) {
+                Alertutil.showWarningMessage(
+                        "This order has already been rated."
+                );
+                return;
+            }
+            openRateWindow(selected);
+        });
+    }
 
+    /**
+     * Opens the rating window for a delivered order.
+     *
+     * @param selected order to rate
+     */
+    private void openRateWindow(Order selected) {
         try {
             FXMLLoader loader = new FXMLLoader(
                     getClass().getResource("/resources/RateCarrierView.fxml")
@@ -207,14 +220,15 @@ public class CustomerOrdersController {
         confirm.setContentText("Are you sure you want to cancel this order?");
         if (confirm.showAndWait().get() != ButtonType.OK) return;
 
-        boolean success = orderDAO.cancelOrder(selected.getId());
-
-        if (success) {
-            Alertutil.showSuccessMessage("Order cancelled successfully and stock restored.");
-            loadOrders(); // tabloyu yenile
-        } else {
-            Alertutil.showErrorMessage("Failed to cancel order.");
-        }
+        // the cancel and the restock run in one transaction on a database thread
+        FxAsync.load(btnCancelOrder, orderDAO.cancelOrderAsync(selected.getId()), success -> {
+            if (success) {
+                Alertutil.showSuccessMessage("Order cancelled successfully and stock restored.");
+                loadOrders(); // tabloyu yenile
+            } else {
+                Alertutil.showErrorMessage("Failed to cancel order.");
+            }
+        });
     }
 
     /**
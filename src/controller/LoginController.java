@@ -11,12 +11,10 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.util.Duration;
-import database.DatabaseConnection;
+import dao.UserDAO;
 import model.User;
+import util.FxAsync;
 import util.PasswordUtil;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 
 
 /**
@@ -38,6 +36,9 @@ public class LoginController {
     /** Label used to show error messages to the user. */
     @FXML private Label errorLabel;
 
+    /** DAO used to find the user. */
+    private final UserDAO userDAO = new UserDAO();
+
     /** Default style for input fields. */
     private final String defaultStyle =
             "-fx-border-color: #dcdcdc; -fx-border-radius: 10; -fx-background-radius: 10;";
@@ -52,6 +53,7 @@ public class LoginController {
      * - fields are not empty
      * - user exists in database
      * - password hash matches the stored password
+     * The user is read on a database thread, the login form is disabled meanwhile.
      * If login is successful, it opens the user dashboard.
      */
     @FXML
@@ -66,38 +68,25 @@ public class LoginController {
             return;
         }
 
-        String sql = "SELECT * FROM userinfo WHERE username = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                String dbPassword = rs.getString("password");
-                String inputHash = PasswordUtil.hashPassword(password);
-
-                if (inputHash != null && inputHash.equals(dbPassword)) {
-                    User user = new User(
-                            rs.getInt("id"),
-                            rs.getString("username"),
-                            rs.getString("password"),
-                            rs.getString("role"),
-                            rs.getString("address")
-                    );
-                    loadDashboard(user);
-                } else {
-                    showError("Incorrect password!");
-                }
-            } else {
+        FxAsync.load(loginBox, userDAO.findByUsernameAsync(username), user -> {
+            if (user == null) {
                 showError("Invalid credentials!");
+                return;
             }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            showError("Connection error occurred!");
-        }
+            String inputHash = PasswordUtil.hashPassword(password);
+            if (inputHash == null || !inputHash.equals(user.getPassword())) {
+                showError("Incorrect password!");
+                return;
+            }
+
+            try {
+                loadDashboard(user);
+            } catch (Exception e) {
+                e.printStackTrace();
+                showError("Connection error occurred!");
+            }
+        }, error -> showError("Connection error occurred!"));
     }
 
 
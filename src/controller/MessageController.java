@@ -1,17 +1,28 @@
 package controller;
 
 import dao.MessageDAO;
+import database.DbExecutor;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import model.Message;
 import model.User;
+import util.FxAsync;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.Label;
 import javafx.scene.layout.HBox;
+import javafx.stage.WindowEvent;
+import service.MessageBus;
+
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -27,6 +38,29 @@ public class MessageController {
     /** Text field where the user writes a message. */
     @FXML private TextField messageField;
 
+    /** Button above the list that loads older messages. */
+    @FXML private Button btnLoadOlder;
+
+    /** Number of messages read per page. */
+    private static final int PAGE_SIZE = 50;
+
+    /** Rows of the message list. New messages are added, the list is never rebuilt. */
+    private final ObservableList<String> items = FXCollections.observableArrayList();
+
+    /** New message notices of this conversation. */
+    private MessageBus.Subscription subscription;
+
+    /** IDs of the oldest and the newest shown message. */
+    private int firstId = Integer.MAX_VALUE;
+    private int lastId = 0;
+
+    /**
+     * False until the first page is shown. Until then lastId is not known, so a notice
+     * only sets newerPending and the newer messages are read once after the first page.
+     */
+    private boolean firstPageLoaded;
+    private boolean newerPending;
+
     /** The logged-in user. */
     private User currentUser;
 
@@ -43,6 +77,9 @@ public class MessageController {
      */
     @FXML
     private void initialize() {
+        messageList.setItems(items);
+        btnLoadOlder.setVisible(false);
+        btnLoadOlder.setManaged(false);
         messageList.setCellFactory(list -> new ListCell<>() {
             @Override
             protected void updateItem(String msg, boolean empty) {
@@ -93,7 +130,7 @@ public class MessageController {
 
     /**
      * Sets the users in the conversation.
-     * It also loads previous messages.
+     * It also loads the latest messages and listens for new ones until the window closes.
      *
      * @param currentUser the logged-in user
      * @param partner the other user
@@ -101,41 +138,143 @@ public class MessageController {
     public void setUsers(User currentUser, User partner) {
         this.currentUser = currentUser;
         this.partner = partner;
-        loadMessages();
+
+        if (subscription != null) subscription.close();
+        subscription = MessageBus.getInstance().subscribe(currentUser.getId(), partner.getId(),
+                notice -> Platform.runLater(this::onNotice));
+        Scene scene = messageList.getScene();
+        if (scene != null && scene.getWindow() != null) {
+            scene.getWindow().addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> subscription.close());
+        }
+
+        loadLatestMessages();
     }
 
     /**
-     * Loads all messages between the two users.
+     * Loads the latest page of messages between the two users.
      * Messages are shown as "Me" or "Them".
+     * Messages are read on a database thread.
      * After loading, it scrolls to the last message.
      */
-    private void loadMessages() {
-        var msgs = dao.getConversation(currentUser.getId(), partner.getId());
-
-        messageList.setItems(FXCollections.observableArrayList(
-                msgs.stream()
-                        .filter(m -> m.getMessage() != null)
-                        .map(m ->
-                                (m.getSenderId() == currentUser.getId() ? "Me: " : "Them: ")
-                                        + m.getMessage()
-                        )
-                        .toList()
-        ));
-
-        if (!messageList.getItems().isEmpty()) {
-            messageList.scrollTo(messageList.getItems().size() - 1);
-        }
+    private void loadLatestMessages() {
+        firstPageLoaded = false;
+        newerPending = false;
+        FxAsync.load(messageList,
+                dao.getMessagesBeforeAsync(currentUser.getId(), partner.getId(), Integer.MAX_VALUE, PAGE_SIZE), msgs -> {
+            items.clear();
+            firstId = Integer.MAX_VALUE;
+            lastId = 0;
+            addOlder(msgs);
+
+            if (!items.isEmpty()) {
+                messageList.scrollTo(items.size() - 1);
+            }
+
+            firstPageLoaded = true;
+            if (newerPending) {
+                newerPending = false;
+                loadNewerMessages(); // a notice came while the first page was loading
+            }
+        });
+    }
+
+    /**
+     * Loads the page of messages before the oldest shown message
+     * and puts it on top of the list.
+     */
+    @FXML
+    private void handleLoadOlder() {
+        FxAsync.load(btnLoadOlder,
+                dao.getMessagesBeforeAsync(currentUser.getId(), partner.getId(), firstId, PAGE_SIZE), msgs -> {
+            int added = addOlder(msgs);
+            messageList.scrollTo(Math.max(0, added - 1));
+        });
     }
 
     /**
      * Sends a new message to the other user.
-     * It saves the message in the database and reloads the list.
+     * It saves the message on a database thread. The message bus then tells this window
+     * (and the partner's window) to read the new messages.
      */
     @FXML
     private void handleSend() {
         if (messageField.getText().isBlank()) return;
-        dao.sendMessage(currentUser.getId(), partner.getId(), messageField.getText());
+        String text = messageField.getText();
         messageField.clear();
-        loadMessages();
+        FxAsync.load(messageField,
+                DbExecutor.run(() -> dao.sendMessage(currentUser.getId(), partner.getId(), text)),
+                v -> { });
+    }
+
+    /**
+     * Handles a notice of the message bus (on the JavaFX thread).
+     * Before the first page is shown, it only remembers that newer messages must be read.
+     */
+    private void onNotice() {
+        if (firstPageLoaded) {
+            loadNewerMessages();
+        } else {
+            newerPending = true;
+        }
+    }
+
+    /**
+     * Reads the messages after the last shown one and adds them to the list.
+     * Called when the message bus reports a new message in this conversation.
+     */
+    private void loadNewerMessages() {
+        FxAsync.load(null, dao.getMessagesSinceAsync(currentUser.getId(), partner.getId(), lastId), this::addNewer);
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Puts a page of older messages on top of the list.
+     *
+     * @param msgs messages older than the shown ones, oldest first
+     * @return number of added rows
+     */
+    private int addOlder(List<Message> msgs) {
+        List<String> rows = new ArrayList<>(msgs.size());
+        for (Message m : msgs) {
+            if (m.getId() >= firstId) continue;
+            if (m.getMessage() != null) rows.add(format(m));
+            lastId = Math.max(lastId, m.getId());
+        }
+        if (!msgs.isEmpty()) firstId = Math.min(firstId, msgs.get(0).getId());
+        items.addAll(0, rows);
+
+        boolean hasOlder = msgs.size() == PAGE_SIZE;
+        btnLoadOlder.setVisible(hasOlder);
+        btnLoadOlder.setManaged(hasOlder);
+        return rows.size();
+    }
+
+    /**
+     * Adds new messages at the end of the list and scrolls to the last one.
+     * Messages that are shown already are skipped.
+     *
+     * @param msgs messages newer than the shown ones, oldest first
+     */
+    private void addNewer(List<Message> msgs) {
+        for (Message m : msgs) {
+            if (m.getId() <= lastId) continue;
+            if (m.getMessage() != null) items.add(format(m));
+            lastId = m.getId();
+            firstId = Math.min(firstId, m.getId());
+        }
+        if (!items.isEmpty()) {
+            messageList.scrollTo(items.size() - 1);
+        }
+    }
+
+    /**
+     * Gets the text of a message row.
+     *
+     * @param m message
+     * @return "Me: ..." or "Them: ..."
+     */
+    private String format(Message m) {
+        return (m.getSenderId() == currentUser.getId() ? "Me: " : "Them: ") + m.getMessage();
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import dao.OrderDAO;
 import dao.ProductDAO;
 import dao.UserDAO;
 import dao.CouponDAO;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -19,23 +20,30 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import model.Coupon;
+import model.DailySummary;
 import model.Order;
 import model.Product;
+import model.RatingSummary;
 import model.User;
+import service.InvoiceExport;
+import service.ProductCatalog;
+import service.ProductImageStore;
+import service.ReportingService;
 import util.Alertutil;
+import util.FxAsync;
+import util.ImageUtil;
 
 import javafx.scene.layout.VBox;
 
 
 import java.io.IOException;
-import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
-import database.DatabaseConnection;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
@@ -98,6 +106,11 @@ public class OwnerController {
     @FXML private BarChart<String, Number> salesChart;
     /** Status chart. */
     @FXML private PieChart statusPieChart; // YENİ EKLENDİ
+
+    /** Invoice export (Reports tab). */
+    @FXML private DatePicker dpInvoiceFrom, dpInvoiceTo;
+    @FXML private Button btnExportInvoices;
+    @FXML private Label lblExportStatus;
     /** Customer selector for messaging. */
     @FXML private ComboBox<User> customerBox;
 
@@ -112,10 +125,15 @@ public class OwnerController {
     /** Coupon input fields. */
     @FXML private TextField txtCouponCode, txtCouponRate, txtCouponDays, txtCouponMin;
 
+    /** Action buttons; each one is disabled while its database work runs. */
+    @FXML private Button btnAddProduct, btnUpdateProduct, btnDeleteProduct, btnOpenMessages;
+    @FXML private Button btnEmployCarrier, btnFireCarrier, btnViewReviews, btnCreateCoupon;
+
     @FXML private javafx.scene.image.ImageView productImageView;
     @FXML private Label imageInfoLabel;
 
     private byte[] selectedImageBytes; // seçilen / mevcut resim
+    private byte[] selectedThumbnailBytes; // thumbnail of a newly chosen image
 
 
 
@@ -126,6 +144,11 @@ public class OwnerController {
     private CouponDAO couponDAO = new CouponDAO();
     private RatingDAO ratingDAO = new RatingDAO();
 
+    /** Loads the order table page by page. */
+    private PagedTableLoader<Order> orderPages;
+    /** Rating summaries by carrier ID, shown in the carrier table. */
+    private Map<Integer, RatingSummary> ratingSummaries = Map.of();
+
     /**
      * Runs when the view is loaded.
      * It sets columns and loads data.
@@ -140,6 +163,8 @@ public class OwnerController {
         if (comboProductType != null) {
             comboProductType.setItems(FXCollections.observableArrayList("vegetable", "fruit"));
         }
+        dpInvoiceFrom.setValue(LocalDate.now().withDayOfMonth(1));
+        dpInvoiceTo.setValue(LocalDate.now());
 
         productImageView.setOnDragOver(e -> {
             Dragboard db = e.getDragboard();
@@ -172,14 +197,17 @@ public class OwnerController {
             txtProductThreshold.setText(String.valueOf(newP.getThreshold()));
             comboProductType.setValue(newP.getType());
 
-            byte[] img = newP.getImage();
-            if (img != null && img.length > 0) {
-                productImageView.setImage(new Image(new ByteArrayInputStream(img)));
-                selectedImageBytes = img;
-            } else {
-                productImageView.setImage(null);
-                selectedImageBytes = null;
-            }
+            productImageView.setImage(null);
+            selectedImageBytes = null;
+            selectedThumbnailBytes = null;
+            FxAsync.load(productImageView, ProductImageStore.getInstance().getImageAsync(newP), img -> {
+                // the user may have selected another product meanwhile
+                if (tableProducts.getSelectionModel().getSelectedItem() != newP) return;
+                if (img != null && img.length > 0) {
+                    productImageView.setImage(new Image(new ByteArrayInputStream(img)));
+                    selectedImageBytes = img;
+                }
+            });
         });
 
     }
@@ -196,25 +224,24 @@ public class OwnerController {
             return;
         }
 
-        List<String> comments =
-                ratingDAO.getCommentsForCarrier(selected.getId());
-
-        if (comments.isEmpty()) {
-            Alertutil.showInfoMessage("No comments for this carrier.");
-            return;
-        }
+        FxAsync.load(btnViewReviews, ratingDAO.getCommentsForCarrierAsync(selected.getId()), comments -> {
+            if (comments.isEmpty()) {
+                Alertutil.showInfoMessage("No comments for this carrier.");
+                return;
+            }
 
-        TextArea area = new TextArea();
-        area.setEditable(false);
-        area.setWrapText(true);
+            TextArea area = new TextArea();
+            area.setEditable(false);
+            area.setWrapText(true);
 
-        comments.forEach(c -> area.appendText("• " + c + "\n\n"));
+            comments.forEach(c -> area.appendText("• " + c + "\n\n"));
 
-        Stage stage = new Stage();
-        stage.setTitle("Carrier Reviews");
+            Stage stage = new Stage();
+            stage.setTitle("Carrier Reviews");
 
-        stage.setScene(new Scene(new VBox(area), 450, 300));
-        stage.show();
+            stage.setScene(new Scene(new VBox(area), 450, 300));
+            stage.show();
+        });
     }
 
     /** Sets columns for product, carrier, and order tables. */
@@ -231,21 +258,19 @@ public class OwnerController {
         colCarrUser.setCellValueFactory(new PropertyValueFactory<>("username"));
         colCarrAddress.setCellValueFactory(new PropertyValueFactory<>("address"));
 
+        // the summaries are loaded together with the carriers, so a cell never runs a query
         colCarrRating.setCellValueFactory(cell -> {
             User carrier = cell.getValue();
+            RatingSummary summary = ratingSummaries.get(carrier.getId());
 
-            double avg = ratingDAO.getAverageRatingForCarrier(carrier.getId());
-            int count = ratingDAO.getRatingCountForCarrier(carrier.getId());
-            int commentCount = ratingDAO.getCommentsForCarrier(carrier.getId()).size();
-
-            if (count == 0) {
+            if (summary == null || summary.getCount() == 0) {
                 return new SimpleStringProperty("No ratings");
             }
 
-            String commentIcon = commentCount > 0 ? " 💬" : "";
+            String commentIcon = summary.getCommentCount() > 0 ? " 💬" : "";
 
             return new SimpleStringProperty(
-                    String.format("⭐ %.1f (%d)%s", avg, count, commentIcon)
+                    String.format("⭐ %.1f (%d)%s", summary.getAverage(), summary.getCount(), commentIcon)
             );
         });
 
@@ -262,7 +287,7 @@ public class OwnerController {
         );
     }
 
-    /** Loads all tables and updates charts. */
+    /** Loads all tables and updates charts. Every part is read on database threads. */
     private void loadAllData() {
         refreshProductTable();
         refreshCarrierTable();
@@ -270,43 +295,47 @@ public class OwnerController {
         updateReports(); // Özet kartları ve grafikleri günceller
     }
 
-    /** Updates summary labels and charts. */
+    /** Reads the daily order numbers and carriers on database threads, then updates summary labels and charts. */
     private void updateReports() {
-        List<Order> allOrders = orderDAO.getAllOrdersWithDetails();
-        List<User> carriers = userDAO.getUsersByRole("carrier");
+        CompletableFuture<List<DailySummary>> days = ReportingService.getInstance().getDailySummariesAsync();
+        CompletableFuture<List<User>> carriers = userDAO.getUsersByRoleAsync("carrier");
+        FxAsync.load(salesChart, days.thenCombine(carriers, (d, c) -> (Runnable) () -> showReports(d, c)),
+                Runnable::run);
+    }
 
+    /**
+     * Updates summary labels and charts.
+     *
+     * @param days order numbers per order date, oldest first
+     * @param carriers all carriers
+     */
+    private void showReports(List<DailySummary> days, List<User> carriers) {
         double totalRev = 0;
-        int delivered = 0, pending = 0, cancelled = 0;
+        int total = 0, delivered = 0, pending = 0, cancelled = 0;
 
         // İstatistikleri Hesapla
-        for (Order o : allOrders) {
-            if (o.isCancelled()) {
-                cancelled++;
-            } else if (o.isDelivered()) {
-                delivered++;
-                totalRev += o.getTotalCost();
-            } else {
-                pending++;
-            }
+        for (DailySummary d : days) {
+            total += d.getOrderCount();
+            delivered += d.getDeliveredCount();
+            pending += d.getPendingCount();
+            cancelled += d.getCancelledCount();
+            totalRev += d.getDeliveredRevenue();
         }
 
         // Kartları Güncelle
         lblTotalRevenue.setText(String.format("₺ %.2f", totalRev));
-        lblTotalOrders.setText(String.valueOf(allOrders.size()));
+        lblTotalOrders.setText(String.valueOf(total));
         lblActiveCarriers.setText(String.valueOf(carriers.size()));
 
         // BarChart Güncelle (Günlük Kazanç)
         salesChart.getData().clear();
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("Daily Revenue");
-        Map<String, Double> dailyRevenue = new TreeMap<>();
-        for (Order o : allOrders) {
-            if (o.isDelivered() && !o.isCancelled()) {
-                String date = o.getOrderTime().toLocalDateTime().toLocalDate().toString();
-                dailyRevenue.put(date, dailyRevenue.getOrDefault(date, 0.0) + o.getTotalCost());
+        for (DailySummary d : days) {
+            if (d.getDeliveredCount() > 0) {
+                series.getData().add(new XYChart.Data<>(d.getDate().toString(), d.getDeliveredRevenue()));
             }
         }
-        dailyRevenue.forEach((date, val) -> series.getData().add(new XYChart.Data<>(date, val)));
         salesChart.getData().add(series);
 
         // PieChart Güncelle (Sipariş Durumu)
@@ -337,16 +366,14 @@ public class OwnerController {
 
         if (showConfirm("Employ Carrier", "Hire " + username + " as a new carrier?")) {
             User newCarrier = new User(0, username, password, "carrier", address);
-            try {
-                if (userDAO.addUser(newCarrier)) {
+            FxAsync.load(btnEmployCarrier, userDAO.addUserAsync(newCarrier), added -> {
+                if (added) {
                     refreshCarrierTable();
                     updateReports();
                     clearCarrierFields();
                     Alertutil.showSuccessMessage("Carrier employed successfully.");
                 }
-            } catch (SQLException e) {
-                Alertutil.showErrorMessage("Database error: Username might be taken.");
-            }
+            }, error -> Alertutil.showErrorMessage("Database error: Username might be taken."));
         }
     }
 
@@ -359,11 +386,13 @@ public class OwnerController {
             return;
         }
         if (showConfirm("Fire Carrier", "Terminate employment for " + selected.getUsername() + "?")) {
-            if (userDAO.deleteUser(selected.getId())) {
-                refreshCarrierTable();
-                updateReports();
-                Alertutil.showSuccessMessage("Carrier fired.");
-            }
+            FxAsync.load(btnFireCarrier, userDAO.deleteUserAsync(selected.getId()), deleted -> {
+                if (deleted) {
+                    refreshCarrierTable();
+                    updateReports();
+                    Alertutil.showSuccessMessage("Carrier fired.");
+                }
+            });
         }
     }
 
@@ -390,11 +419,14 @@ public class OwnerController {
                     selectedImageBytes,
                     threshold
             );
-            if (productDAO.addProduct(p)) {
-                refreshProductTable();
-                clearProductFields();
-                Alertutil.showSuccessMessage("Product added.");
-            }
+            p.setThumbnail(selectedThumbnailBytes);
+            FxAsync.load(btnAddProduct, productDAO.addProductAsync(p), added -> {
+                if (added) {
+                    refreshProductTable();
+                    clearProductFields();
+                    Alertutil.showSuccessMessage("Product added.");
+                }
+            });
         }
     }
 
@@ -415,12 +447,15 @@ public class OwnerController {
             selected.setThreshold(Double.parseDouble(txtProductThreshold.getText()));
             selected.setType(comboProductType.getValue());
             selected.setImage(selectedImageBytes);
+            selected.setThumbnail(selectedThumbnailBytes);
 
 
-            if (productDAO.updateProduct(selected)) {
-                refreshProductTable();
-                Alertutil.showSuccessMessage("Product updated.");
-            }
+            FxAsync.load(btnUpdateProduct, productDAO.updateProductAsync(selected), updated -> {
+                if (updated) {
+                    refreshProductTable();
+                    Alertutil.showSuccessMessage("Product updated.");
+                }
+            });
         }
     }
 
@@ -429,10 +464,12 @@ public class OwnerController {
     private void handleDeleteProduct() {
         Product selected = tableProducts.getSelectionModel().getSelectedItem();
         if (selected != null && showConfirm("Delete", "Delete " + selected.getName() + "?")) {
-            if (productDAO.deleteProduct(selected.getId())) {
-                refreshProductTable();
-                Alertutil.showSuccessMessage("Product deleted.");
-            }
+            FxAsync.load(btnDeleteProduct, productDAO.deleteProductAsync(selected.getId()), deleted -> {
+                if (deleted) {
+                    refreshProductTable();
+                    Alertutil.showSuccessMessage("Product deleted.");
+                }
+            });
         }
     }
 
@@ -452,17 +489,26 @@ public class OwnerController {
     }
 
     // --- HELPERS ---
-    /** Reloads product table from database. */
+    /** Reloads product table from the shared product catalog (only changed rows are read). */
     private void refreshProductTable() {
-        tableProducts.setItems(FXCollections.observableArrayList(productDAO.getAllProducts()));
+        FxAsync.load(tableProducts, ProductCatalog.getInstance().getAllProductsAsync(),
+                products -> tableProducts.setItems(FXCollections.observableArrayList(products)));
     }
-    /** Reloads carrier table from database. */
+    /** Reloads carrier table and rating summaries from database. */
     private void refreshCarrierTable() {
-        tableCarriers.setItems(FXCollections.observableArrayList(userDAO.getUsersByRole("carrier")));
+        CompletableFuture<List<User>> carriers = userDAO.getUsersByRoleAsync("carrier");
+        CompletableFuture<Map<Integer, RatingSummary>> ratings = ratingDAO.getRatingSummariesAsync();
+        FxAsync.load(tableCarriers, carriers.thenCombine(ratings, (c, r) -> (Runnable) () -> {
+            ratingSummaries = r;
+            tableCarriers.setItems(FXCollections.observableArrayList(c));
+        }), Runnable::run);
     }
-    /** Reloads order table from database. */
+    /** Reloads order table from database (first page; more pages are loaded while scrolling). */
     private void refreshOrderTable() {
-        tableOrders.setItems(FXCollections.observableArrayList(orderDAO.getAllOrdersWithDetails()));
+        if (orderPages == null) {
+            orderPages = new PagedTableLoader<>(tableOrders, orderDAO::getAllOrdersWithDetailsPageAsync);
+        }
+        orderPages.reload();
     }
 
     /** Checks product inputs are valid. */
@@ -492,15 +538,36 @@ public class OwnerController {
         productImageView.setImage(null);
         imageInfoLabel.setText("Drag & drop image or choose.");
         selectedImageBytes = null;
+        selectedThumbnailBytes = null;
     }
     /** Clears carrier form fields. */
     private void clearCarrierFields() {
         txtCarrierUser.clear(); txtCarrierPass.clear(); txtCarrierAddress.clear();
     }
 
-    /** Opens the message window for owner and a customer. */
+    /**
+     * Opens the message window for owner and a customer.
+     * Both users are read on database threads before the window opens.
+     */
     @FXML
     private void handleOpenMessages() {
+        CompletableFuture<User> owner = userDAO.findFirstByRoleAsync("owner");
+        CompletableFuture<User> customer = userDAO.findFirstByRoleAsync("customer");
+        FxAsync.load(btnOpenMessages, owner.thenCombine(customer, (o, c) -> (Runnable) () -> openMessages(o, c)),
+                Runnable::run);
+    }
+
+    /**
+     * Opens the message window for two users.
+     *
+     * @param owner the owner, or null if not found
+     * @param customer the customer, or null if not found
+     */
+    private void openMessages(User owner, User customer) {
+        if (owner == null || customer == null) {
+            Alertutil.showWarningMessage(owner == null ? "Owner not found." : "Customer not found.");
+            return;
+        }
         try {
             FXMLLoader loader = new FXMLLoader(
                     getClass().getResource("/resources/MessageView.fxml")
@@ -509,9 +576,6 @@ public class OwnerController {
             stage.setScene(new Scene(loader.load()));
             stage.setTitle("Customer Messages");
 
-            User owner = getCurrentOwner();
-            User customer = findFirstCustomer();
-
             ((MessageController) loader.getController())
                     .setUsers(owner, customer);
 
@@ -522,47 +586,42 @@ public class OwnerController {
         }
     }
 
-
-    /** Finds the owner user in the database. */
-    private User getCurrentOwner() throws Exception {
-        String sql = "SELECT * FROM userinfo WHERE role='owner' LIMIT 1";
-
-        try (var c = DatabaseConnection.getConnection();
-             var ps = c.prepareStatement(sql);
-             var rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return new User(
-                        rs.getInt("id"),
-                        rs.getString("username"),
-                        null,
-                        rs.getString("role"),
-                        rs.getString("address")
-                );
-            }
+    /**
+     * Exports the invoices of the orders delivered in the chosen days into one ZIP file.
+     * The invoices are made on several threads; the label shows the progress.
+     */
+    @FXML
+    private void handleExportInvoices() {
+        LocalDate from = dpInvoiceFrom.getValue();
+        LocalDate to = dpInvoiceTo.getValue();
+        if (from == null || to == null || to.isBefore(from)) {
+            Alertutil.showWarningMessage("Please choose a valid date range!");
+            return;
         }
-        throw new RuntimeException("Owner not found");
-    }
 
-    /** Finds one customer user in the database. */
-    private User findFirstCustomer() throws Exception {
-        String sql = "SELECT * FROM userinfo WHERE role='customer' LIMIT 1";
-
-        try (var c = DatabaseConnection.getConnection();
-             var ps = c.prepareStatement(sql);
-             var rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return new User(
-                        rs.getInt("id"),
-                        rs.getString("username"),
-                        null,
-                        rs.getString("role"),
-                        rs.getString("address")
-                );
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Save Invoices");
+        fc.setInitialFileName("invoices_" + from + "_" + to + ".zip");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("ZIP files", "*.zip"));
+        File file = fc.showSaveDialog(btnExportInvoices.getScene().getWindow());
+        if (file == null) return;
+
+        lblExportStatus.setText("Exporting...");
+        CompletableFuture<InvoiceExport.Result> job = new InvoiceExport().exportAsync(from, to, file.toPath(),
+                r -> Platform.runLater(() -> lblExportStatus.setText(
+                        String.format("%d invoices, %.1f pages/s", r.getOrders(), r.getPagesPerSecond()))));
+
+        FxAsync.load(btnExportInvoices, job, result -> {
+            lblExportStatus.setText(result.toString());
+            if (result.getFailed() > 0) {
+                Alertutil.showWarningMessage(result.getFailed() + " invoices could not be made. See the log for details.");
+            } else {
+                Alertutil.showSuccessMessage(result.getOrders() + " invoices saved to " + file.getName());
             }
-        }
-        throw new RuntimeException("Customer not found");
+        }, error -> {
+            lblExportStatus.setText("Export failed.");
+            Alertutil.showErrorMessage("Invoice export failed:\n" + error.getMessage());
+        });
     }
 
     // kupon için
@@ -572,7 +631,8 @@ public class OwnerController {
      */
     @FXML
     private void handleRefreshCoupons() {
-        tableCoupons.setItems(FXCollections.observableArrayList(couponDAO.getUserCoupons(0))); // 0 = show all
+        FxAsync.load(tableCoupons, couponDAO.getAllCouponsAsync(),
+                coupons -> tableCoupons.setItems(FXCollections.observableArrayList(coupons)));
     }
 
     /**
@@ -611,14 +671,15 @@ public class OwnerController {
             }
 
             if (showConfirm("Create Coupon", "Add new coupon: " + code + "?")) {
-                boolean created = couponDAO.createCoupon(code, rate, days, minValue, null);
-                if (created) {
-                    handleRefreshCoupons();
-                    clearCouponFields();
-                    Alertutil.showSuccessMessage("Coupon created successfully.");
-                } else {
-                    Alertutil.showErrorMessage("Error creating coupon.");
-                }
+                FxAsync.load(btnCreateCoupon, couponDAO.createCouponAsync(code, rate, days, minValue, null), created -> {
+                    if (created) {
+                        handleRefreshCoupons();
+                        clearCouponFields();
+                        Alertutil.showSuccessMessage("Coupon created successfully.");
+                    } else {
+                        Alertutil.showErrorMessage("Error creating coupon.");
+                    }
+                });
             }
 
         } catch (NumberFormatException e) {
@@ -650,42 +711,20 @@ public class OwnerController {
     }
 
 
-    /** Loads customers into the ComboBox. */
+    /** Loads customers into the ComboBox (read on a database thread). */
     private void loadCustomers() {
-        try {
-            String sql = "SELECT * FROM userinfo WHERE role='customer'";
-            var list = FXCollections.<User>observableArrayList();
-
-            try (var c = DatabaseConnection.getConnection();
-                 var ps = c.prepareStatement(sql);
-                 var rs = ps.executeQuery()) {
-
-                while (rs.next()) {
-                    list.add(new User(
-                            rs.getInt("id"),
-                            rs.getString("username"),
-                            null,
-                            rs.getString("role"),
-                            rs.getString("address")
-                    ));
-                }
+        // ComboBox’ta username görünsün
+        customerBox.setCellFactory(cb -> new ListCell<>() {
+            @Override
+            protected void updateItem(User u, boolean empty) {
+                super.updateItem(u, empty);
+                setText(empty || u == null ? "" : u.getUsername());
             }
+        });
+        customerBox.setButtonCell(customerBox.getCellFactory().call(null));
 
-            customerBox.setItems(list);
-
-            // ComboBox’ta username görünsün
-            customerBox.setCellFactory(cb -> new ListCell<>() {
-                @Override
-                protected void updateItem(User u, boolean empty) {
-                    super.updateItem(u, empty);
-                    setText(empty || u == null ? "" : u.getUsername());
-                }
-            });
-            customerBox.setButtonCell(customerBox.getCellFactory().call(null));
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        FxAsync.load(customerBox, userDAO.getUsersByRoleAsync("customer"),
+                customers -> customerBox.setItems(FXCollections.observableArrayList(customers)));
     }
 
     /**
@@ -703,7 +742,7 @@ public class OwnerController {
 
     /**
      * Loads an image from a file and shows it in the ImageView.
-     * Also saves the image bytes for later use.
+     * Also saves the image bytes and a card thumbnail for later use.
      *
      * @param file The image file to load.
      */
@@ -713,9 +752,11 @@ public class OwnerController {
             productImageView.setImage(img);
 
             selectedImageBytes = Files.readAllBytes(file.toPath());
+            selectedThumbnailBytes = ImageUtil.createThumbnail(selectedImageBytes, ImageUtil.THUMBNAIL_SIZE);
             imageInfoLabel.setText(file.getName() + " (" + selectedImageBytes.length / 1024 + " KB)");
         } catch (Exception e) {
             selectedImageBytes = null;
+            selectedThumbnailBytes = null;
             imageInfoLabel.setText("Image load failed.");
         }
     }
@@ -0,0 +1,156 @@
+package controller;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+import util.Alertutil;
+import util.FxAsync;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * Loads a table page by page (keyset paging).
+ * The first page is loaded by reload(); the next page is loaded when the user
+ * scrolls near the end of the table. Each page starts after the last loaded row,
+ * so the database never reads the rows of earlier pages again.
+ *
+ * @param <T> row type
+ */
+class PagedTableLoader<T> {
+
+    /** Rows per page. */
+    static final int PAGE_SIZE = 100;
+
+    /** Scroll position (0..1) from which the next page is loaded. */
+    private static final double LOAD_AT = 0.9;
+
+    private final TableView<T> table;
+    private final BiFunction<T, Integer, CompletableFuture<List<T>>> fetch;
+    private final ObservableList<T> rows = FXCollections.observableArrayList();
+
+    /** Last row of the last loaded page (the table may be sorted differently). */
+    private T lastRow;
+    private boolean hasMore;
+    private boolean loading;
+    /** Number of the current reload; pages of older reloads are dropped. */
+    private long generation;
+
+    /**
+     * Connects the loader to a table.
+     *
+     * @param table table that shows the rows
+     * @param fetch loads a page: (last row of the previous page or null, page size) → rows
+     */
+    PagedTableLoader(TableView<T> table, BiFunction<T, Integer, CompletableFuture<List<T>>> fetch) {
+        this.table = table;
+        this.fetch = fetch;
+        table.setItems(rows);
+
+        // the scroll bar only exists after the table skin is created
+        if (table.getSkin() != null) {
+            watchScrollBar();
+        } else {
+            table.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+                if (newSkin != null) Platform.runLater(this::watchScrollBar);
+            });
+        }
+    }
+
+    /**
+     * Drops the loaded rows and loads the first page again.
+     */
+    void reload() {
+        long current = ++generation;
+        loading = true;
+        FxAsync.load(table, fetch.apply(null, PAGE_SIZE), page -> {
+            if (current != generation) return;
+            lastRow = null;
+            rows.setAll(page);
+            pageLoaded(page);
+        }, error -> {
+            if (current == generation) loading = false;
+            Alertutil.showErrorMessage("Database error:\n" + error.getMessage());
+        });
+    }
+
+    /**
+     * Gets the loaded rows.
+     *
+     * @return rows shown in the table
+     */
+    ObservableList<T> getRows() {
+        return rows;
+    }
+
+    // --- HELPERS ---
+
+    /** Loads the page after the last loaded row, if there is one and no load is running. */
+    private void loadNextPage() {
+        if (loading || !hasMore || lastRow == null) return;
+        long current = generation;
+        loading = true;
+        // no busy node: the table stays usable while the next page loads
+        FxAsync.load(null, fetch.apply(lastRow, PAGE_SIZE), page -> {
+            if (current != generation) return;
+            rows.addAll(page);
+            pageLoaded(page);
+        }, error -> {
+            if (current == generation) loading = false;
+            error.printStackTrace();
+        });
+    }
+
+    /**
+     * Updates the paging state after a page was added.
+     * If the table is not full yet (no scroll bar), the next page is loaded at once.
+     *
+     * @param page loaded page
+     */
+    private void pageLoaded(List<T> page) {
+        loading = false;
+        hasMore = page.size() == PAGE_SIZE;
+        if (!page.isEmpty()) lastRow = page.get(page.size() - 1);
+        if (hasMore) {
+            Platform.runLater(() -> {
+                ScrollBar bar = verticalScrollBar();
+                if (bar != null && !bar.isVisible()) loadNextPage();
+            });
+        }
+    }
+
+    /** Loads the next page when the user scrolls near the end, or when the table is not full. */
+    private void watchScrollBar() {
+        ScrollBar bar = verticalScrollBar();
+        if (bar == null) return;
+        if (!bar.isVisible()) loadNextPage();
+        bar.visibleProperty().addListener((obs, wasVisible, visible) -> {
+            if (!visible) loadNextPage();
+        });
+        bar.valueProperty().addListener((obs, oldValue, newValue) -> {
+            double range = bar.getMax() - bar.getMin();
+            if (range > 0 && (newValue.doubleValue() - bar.getMin()) / range >= LOAD_AT) {
+                loadNextPage();
+            }
+        });
+    }
+
+    /**
+     * Finds the vertical scroll bar of the table.
+     *
+     * @return scroll bar, or null if the table has none yet
+     */
+    private ScrollBar verticalScrollBar() {
+        for (Node n : table.lookupAll(".scroll-bar")) {
+            if (n instanceof ScrollBar && ((ScrollBar) n).getOrientation() == Orientation.VERTICAL) {
+                return (ScrollBar) n;
+            }
+        }
+        return null;
+    }
+}
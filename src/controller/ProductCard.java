@@ -0,0 +1,136 @@
+package controller;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import model.Product;
+import service.ProductThumbnailCache;
+import util.FxAsync;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * One product card of the customer screen (image, name, price, stock, quantity and "ADD" button).
+ * The card is reused for other products by calling show(), so its nodes are created only once.
+ */
+class ProductCard {
+
+    /** Card width and height in pixels (fixed, so the grid can compute rows without measuring). */
+    static final double WIDTH = 220;
+    static final double HEIGHT = 270;
+
+    private static final String CARD_STYLE = "-fx-background-color: white; -fx-background-radius: 15; -fx-padding: 15; -fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.1), 10, 0, 0, 5);";
+    private static final String NORMAL_GREEN = "-fx-background-color: #2ecc71; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 10; -fx-cursor: hand;";
+    private static final String PRESSED_GREEN = "-fx-background-color: #1b5e20; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 10;";
+
+    private final VBox root = new VBox(10);
+    private final ImageView image = new ImageView();
+    private final Label name = new Label();
+    private final Label price = new Label();
+    private final Label stock = new Label();
+    private final TextField qty = new TextField();
+    private final Button addBtn = new Button("ADD");
+
+    /** Product shown at the moment. */
+    private Product product;
+
+    /**
+     * Creates an empty card.
+     *
+     * @param onAdd called when "ADD" is clicked, with the shown product and the quantity field
+     */
+    ProductCard(BiConsumer<Product, TextField> onAdd) {
+        root.setAlignment(Pos.CENTER);
+        root.setStyle(CARD_STYLE);
+        root.setPrefWidth(WIDTH);
+        root.setMinSize(WIDTH, HEIGHT);
+        root.setMaxSize(WIDTH, HEIGHT);
+
+        image.setFitWidth(120); image.setFitHeight(120); image.setPreserveRatio(true);
+        name.setStyle("-fx-font-weight: bold; -fx-font-size: 16px;");
+        price.setStyle("-fx-text-fill: #2e7d32; -fx-font-weight: bold;");
+        stock.setStyle("-fx-font-size: 11px; -fx-text-fill: gray;");
+        qty.setPromptText("kg"); qty.setPrefWidth(60); qty.setStyle("-fx-background-radius: 10;");
+
+        addBtn.setStyle(NORMAL_GREEN);
+        addBtn.setOnMousePressed(e -> {
+            addBtn.setStyle(PRESSED_GREEN);
+            addBtn.setScaleX(0.9);
+            addBtn.setScaleY(0.9);
+        });
+        addBtn.setOnMouseReleased(e -> {
+            addBtn.setStyle(NORMAL_GREEN);
+            addBtn.setScaleX(1.0);
+            addBtn.setScaleY(1.0);
+        });
+        addBtn.setOnAction(e -> onAdd.accept(product, qty));
+
+        HBox actions = new HBox(10, qty, addBtn); actions.setAlignment(Pos.CENTER);
+        root.getChildren().addAll(image, name, price, stock, actions);
+    }
+
+    /** @return root node of the card */
+    VBox getRoot() {
+        return root;
+    }
+
+    /**
+     * Shows a product on this card. Only changed parts are set again.
+     *
+     * @param p product to show
+     */
+    void show(Product p) {
+        Product old = this.product;
+        this.product = p;
+
+        boolean sameProduct = old != null && old.getId() == p.getId();
+        if (!sameProduct) {
+            qty.clear(); // the typed amount belonged to the other product
+        }
+        if (!sameProduct || !Objects.equals(old.getImageHash(), p.getImageHash())) {
+            showThumbnail(p);
+        }
+        if (!sameProduct || !old.getName().equals(p.getName())) {
+            name.setText(p.getName());
+        }
+        if (!sameProduct || old.getPrice() != p.getPrice()) {
+            price.setText(String.format("%.2f ₺/kg", p.getPrice()));
+        }
+        if (!sameProduct || old.getStock() != p.getStock()) {
+            stock.setText("Stock: " + p.getStock() + " kg");
+        }
+    }
+
+    /**
+     * Shows the thumbnail of a product. A cached thumbnail is shown at once,
+     * others are loaded on a database thread and shown if the card still shows the same product.
+     *
+     * @param p product whose thumbnail is shown
+     */
+    private void showThumbnail(Product p) {
+        ProductThumbnailCache thumbnails = ProductThumbnailCache.getInstance();
+        Image cached = thumbnails.getCachedImage(p);
+        image.setImage(cached);
+        if (cached != null) return;
+
+        FxAsync.load(null, thumbnails.getImageAsync(p), img -> {
+            if (product == p) image.setImage(img);
+        }, Throwable::printStackTrace);
+    }
+
+    /**
+     * Shows or hides the card. A hidden card takes no space.
+     *
+     * @param shown true to show the card
+     */
+    void setShown(boolean shown) {
+        root.setVisible(shown);
+        root.setManaged(shown);
+    }
+}
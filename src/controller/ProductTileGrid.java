@@ -0,0 +1,148 @@
+package controller;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Pos;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import model.Product;
+import service.ProductThumbnailCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Virtualized product grid of the customer screen.
+ * The products are split into rows of cards, and the rows are shown in a ListView.
+ * The ListView only creates cells for the rows on screen and reuses them while scrolling,
+ * so a catalog with thousands of products still has only a few dozen card nodes,
+ * and thumbnails are only loaded for cards that are shown (plus OVERSCAN_ROWS rows below).
+ * The grid follows the given product list, so filtering the list updates the grid.
+ */
+class ProductTileGrid {
+
+    /** Space between cards in pixels. */
+    private static final double GAP = 25;
+
+    /** Space for the vertical scroll bar and the list padding in pixels. */
+    private static final double RESERVED_WIDTH = 40;
+
+    /** Rows after a shown row whose thumbnails are loaded in advance. */
+    private static final int OVERSCAN_ROWS = 1;
+
+    /** Inline style beats the default list cell style, also for the selected and hovered cell. */
+    private static final String CELL_STYLE = "-fx-background-color: transparent; -fx-padding: 0;";
+
+    private final ListView<List<Product>> view;
+    private final ObservableList<Product> products;
+    private final BiConsumer<Product, TextField> onAdd;
+
+    private int columns = 1;
+
+    /**
+     * One row of cards. Cells are reused by the ListView for other rows.
+     */
+    private class TileRow extends ListCell<List<Product>> {
+        private final HBox box = new HBox(GAP);
+        private final List<ProductCard> cards = new ArrayList<>();
+
+        TileRow() {
+            box.setAlignment(Pos.CENTER);
+            setStyle(CELL_STYLE);
+        }
+
+        @Override
+        protected void updateItem(List<Product> row, boolean empty) {
+            super.updateItem(row, empty);
+            if (empty || row == null) {
+                setGraphic(null);
+                return;
+            }
+
+            while (cards.size() < row.size()) {
+                ProductCard card = new ProductCard(onAdd);
+                cards.add(card);
+                box.getChildren().add(card.getRoot());
+            }
+            for (int i = 0; i < cards.size(); i++) {
+                ProductCard card = cards.get(i);
+                if (i < row.size()) {
+                    card.show(row.get(i));
+                    card.setShown(true);
+                } else {
+                    card.setShown(false);
+                }
+            }
+            setGraphic(box);
+            prefetch(getIndex());
+        }
+    }
+
+    /**
+     * Creates the grid.
+     *
+     * @param view list view that shows the rows
+     * @param products products to show (for example a FilteredList); the grid follows its changes
+     * @param onAdd called when "ADD" is clicked, with the product and its quantity field
+     */
+    ProductTileGrid(ListView<List<Product>> view, ObservableList<Product> products,
+                    BiConsumer<Product, TextField> onAdd) {
+        this.view = view;
+        this.products = products;
+        this.onAdd = onAdd;
+
+        view.setCellFactory(v -> new TileRow());
+        // all rows have the same height, so the ListView does not need to measure cells
+        view.setFixedCellSize(ProductCard.HEIGHT + GAP);
+        view.setFocusTraversable(false);
+
+        products.addListener((ListChangeListener<Product>) c -> rebuildRows());
+        view.widthProperty().addListener((obs, oldW, newW) -> {
+            if (columnsFor(newW.doubleValue()) != columns) rebuildRows();
+        });
+        rebuildRows();
+    }
+
+    /**
+     * Splits the products into rows that fit the current width.
+     * Only the row lists are created here; cells are updated by the ListView.
+     */
+    private void rebuildRows() {
+        columns = columnsFor(view.getWidth());
+        List<Product> snapshot = new ArrayList<>(products);
+        List<List<Product>> rows = new ArrayList<>((snapshot.size() + columns - 1) / columns);
+        for (int i = 0; i < snapshot.size(); i += columns) {
+            rows.add(snapshot.subList(i, Math.min(i + columns, snapshot.size())));
+        }
+        view.getItems().setAll(rows);
+    }
+
+    /**
+     * Gets how many cards fit next to each other.
+     *
+     * @param width list view width
+     * @return number of columns (at least 1)
+     */
+    private static int columnsFor(double width) {
+        int n = (int) ((width - RESERVED_WIDTH + GAP) / (ProductCard.WIDTH + GAP));
+        return Math.max(1, n);
+    }
+
+    /**
+     * Loads the thumbnails of the rows after a shown row into the cache (on a database thread),
+     * so they are ready when the user scrolls down.
+     *
+     * @param rowIndex index of the shown row
+     */
+    private void prefetch(int rowIndex) {
+        List<List<Product>> rows = view.getItems();
+        for (int r = rowIndex + 1; r <= rowIndex + OVERSCAN_ROWS && r < rows.size(); r++) {
+            for (Product p : rows.get(r)) {
+                ProductThumbnailCache.getInstance().getImageAsync(p);
+            }
+        }
+    }
+}
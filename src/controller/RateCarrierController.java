@@ -2,10 +2,12 @@ package controller;
 
 import dao.RatingDAO;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TextArea;
 import javafx.stage.Stage;
 import util.Alertutil;
+import util.FxAsync;
 
 /**
  * Controller for rating a carrier.
@@ -17,6 +19,8 @@ public class RateCarrierController {
     @FXML private ComboBox<Integer> ratingBox;
     /** Text area for optional comment. */
     @FXML private TextArea commentArea;
+    /** Submit button (disabled while the rating is saved). */
+    @FXML private Button btnSubmit;
 
     /** Customer ID. */
     private int customerId;
@@ -62,7 +66,7 @@ public class RateCarrierController {
 
     /**
      * Submits the rating and comment.
-     * It saves data to the database.
+     * It saves data to the database on a database thread.
      */
     @FXML
     private void handleSubmit() {
@@ -76,26 +80,26 @@ public class RateCarrierController {
         String comment = commentArea.getText();
 
         RatingDAO dao = new RatingDAO();
-        boolean ok = dao.addRating(
+        FxAsync.load(btnSubmit, dao.addRatingAsync(
                 orderId,
                 customerId,
                 carrierId,
                 rating,
                 comment
-        );
-
-        if (ok) {
-            Alertutil.showSuccessMessage(
-                    "Thank you for your feedback!"
-            );
-            if (onSuccessRefresh != null)
-                onSuccessRefresh.run();
-            handleClose();
-        } else {
-            Alertutil.showErrorMessage(
-                    "Rating could not be saved."
-            );
-        }
+        ), ok -> {
+            if (ok) {
+                Alertutil.showSuccessMessage(
+                        "Thank you for your feedback!"
+                );
+                if (onSuccessRefresh != null)
+                    onSuccessRefresh.run();
+                handleClose();
+            } else {
+                Alertutil.showErrorMessage(
+                        "Rating could not be saved."
+                );
+            }
+        });
     }
 
     /**
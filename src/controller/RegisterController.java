@@ -9,11 +9,12 @@ import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Control;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import model.User;
 import util.Alertutil;
+import util.FxAsync;
 import util.PasswordUtil;
-import java.sql.SQLException;
 
 /**
  * Controller for the register screen.
@@ -36,6 +37,9 @@ public class RegisterController {
     /** Label for showing errors. */
     @FXML private Label errorLabel;
 
+    /** Main box of the register form (disabled while the account is saved). */
+    @FXML private VBox registerBox;
+
     /** DAO for user database actions. */
     private final UserDAO userDAO = new UserDAO();
 
@@ -49,7 +53,7 @@ public class RegisterController {
 
     /**
      * Called when the user clicks Register.
-     * It validates inputs and saves the new customer in the database.
+     * It validates inputs and saves the new customer in the database (on a database thread).
      */
     @FXML
     private void handleRegister() {
@@ -89,21 +93,21 @@ public class RegisterController {
         }
 
 
-        try {
-            User user = new User(0, username, password , "customer", address);
-            if (userDAO.registerCustomer(user)) {
+        User user = new User(0, username, password , "customer", address);
+        FxAsync.load(registerBox, userDAO.registerCustomerAsync(user), registered -> {
+            if (registered) {
                 Alertutil.showAlert("Success", null, "Registration successful!", Alert.AlertType.INFORMATION);
                 goBackToLogin();
             }
-        } catch (SQLException e) {
-            String msg = e.getMessage();
+        }, error -> {
+            String msg = error.getMessage();
             if (msg != null && (msg.toLowerCase().contains("duplicate") || msg.toLowerCase().contains("unique"))) {
                 markAsError(usernameField);
                 errorLabel.setText("Username already exists.");
             } else {
                 errorLabel.setText("Database error occurred.");
             }
-        }
+        });
     }
 
     /**
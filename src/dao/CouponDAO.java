@@ -1,10 +1,13 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.DbExecutor;
 import model.Coupon;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class manages coupon data between the application and the database.
@@ -13,6 +16,21 @@ import java.util.List;
  */
 public class CouponDAO {
 
+    /**
+     * Query of getUserCoupons.
+     * Two index lookups (user_id = ?, user_id IS NULL) instead of an OR that reads the whole table.
+     */
+    public static final String COUPONS_OF_USER_SQL = "SELECT * FROM couponinfo WHERE user_id = ? "
+            + "UNION ALL SELECT * FROM couponinfo WHERE user_id IS NULL ORDER BY expiration_date";
+
+    /** Query of getCouponByCode. */
+    public static final String ACTIVE_COUPON_SQL = "SELECT * FROM couponinfo WHERE code = ? AND is_active = 1";
+
+    /** Query of validateCoupon. */
+    public static final String VALID_COUPON_SQL = "SELECT * FROM couponinfo WHERE code = ? AND is_active = 1 "
+            + "AND expiration_date > NOW() AND min_cart_value <= ? "
+            + "AND (user_id IS NULL OR user_id = ?)";
+
     /**
      * Get all coupons that belong to a specific user.
      * If a coupon has user_id = NULL, it means it is general (for all users).
@@ -22,10 +40,8 @@ public class CouponDAO {
      */
     public List<Coupon> getUserCoupons(int userId) {
         List<Coupon> coupons = new ArrayList<>();
-        String sql = "SELECT * FROM couponinfo WHERE user_id = ? OR user_id IS NULL ORDER BY expiration_date";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(COUPONS_OF_USER_SQL)) {
 
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
@@ -49,6 +65,37 @@ public class CouponDAO {
         return coupons;
     }
 
+    /**
+     * Get all coupons, general and user-specific, for the owner's coupon table.
+     *
+     * @return a list of all Coupon objects, soonest expiration first
+     */
+    public List<Coupon> getAllCoupons() {
+        String sql = "SELECT * FROM couponinfo ORDER BY expiration_date";
+        List<Coupon> coupons = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                coupons.add(new Coupon(
+                        rs.getInt("id"),
+                        rs.getString("code"),
+                        rs.getDouble("discount_rate"),
+                        rs.getTimestamp("expiration_date"),
+                        rs.getDouble("min_cart_value"),
+                        rs.getBoolean("is_active"),
+                        rs.getInt("user_id")
+                ));
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return coupons;
+    }
+
 
     /**
      * Get a specific coupon object by its code.
@@ -58,10 +105,8 @@ public class CouponDAO {
      * @return Coupon object if found and active, otherwise null
      */
     public Coupon getCouponByCode(String code) {
-        String sql = "SELECT * FROM couponinfo WHERE code = ? AND is_active = 1";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(ACTIVE_COUPON_SQL)) {
 
             stmt.setString(1, code);
             ResultSet rs = stmt.executeQuery();
@@ -118,12 +163,8 @@ public class CouponDAO {
      * @return discount rate if valid, otherwise -1
      */
     public double validateCoupon(String code, int userId, double cartTotal) {
-        String sql = "SELECT * FROM couponinfo WHERE code = ? AND is_active = 1 " +
-                "AND expiration_date > NOW() AND min_cart_value <= ? " +
-                "AND (user_id IS NULL OR user_id = ?)";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(VALID_COUPON_SQL)) {
 
             stmt.setString(1, code);
             stmt.setDouble(2, cartTotal);
@@ -176,14 +217,15 @@ public class CouponDAO {
      */
     public boolean createCoupon(String code, double rate, int daysValid, double minValue, Integer userId) {
         String sql = "INSERT INTO couponinfo (code, discount_rate, expiration_date, min_cart_value, is_active, user_id) " +
-                "VALUES (?, ?, DATE_ADD(NOW(), INTERVAL ? DAY), ?, 1, ?)";
+                "VALUES (?, ?, ?, ?, 1, ?)";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, code);
             stmt.setDouble(2, rate);
-            stmt.setInt(3, daysValid);
+            // expiration is calculated here so the SQL also runs on the embedded database
+            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now().plusDays(daysValid)));
             stmt.setDouble(4, minValue);
 
             if (userId == null)
@@ -198,4 +240,37 @@ public class CouponDAO {
         }
         return false;
     }
+
+    /**
+     * Get all coupons on a database thread.
+     *
+     * @return future with the coupons
+     */
+    public CompletableFuture<List<Coupon>> getAllCouponsAsync() {
+        return DbExecutor.supply(this::getAllCoupons);
+    }
+
+    /**
+     * Get an active coupon by its code on a database thread.
+     *
+     * @param code the coupon code
+     * @return future with the coupon, or null if not found or not active
+     */
+    public CompletableFuture<Coupon> getCouponByCodeAsync(String code) {
+        return DbExecutor.supply(() -> getCouponByCode(code));
+    }
+
+    /**
+     * Create a new coupon on a database thread.
+     *
+     * @param code coupon code
+     * @param rate discount rate
+     * @param daysValid number of days the coupon is valid
+     * @param minValue minimum cart value
+     * @param userId owner of the coupon, or null for a general coupon
+     * @return future with true if the coupon was created
+     */
+    public CompletableFuture<Boolean> createCouponAsync(String code, double rate, int daysValid, double minValue, Integer userId) {
+        return DbExecutor.supply(() -> createCoupon(code, rate, daysValid, minValue, userId));
+    }
 }
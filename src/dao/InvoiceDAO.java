@@ -0,0 +1,94 @@
+package dao;
+
+import database.DatabaseConnection;
+import util.ImageUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Stores invoice PDFs as raw bytes in the order_invoices table (one row per order).
+ * The bytes are written and read as streams, so an invoice is never turned into a
+ * Base64 String, and orderinfo stays small.
+ * Every invoice has a SHA-256 content hash, which is checked when it is read back.
+ */
+public class InvoiceDAO {
+
+    /**
+     * Saves (or replaces) the invoice of an order.
+     *
+     * @param orderId ID of the order
+     * @param pdf PDF bytes
+     * @return true if the invoice was saved
+     */
+    public boolean saveInvoice(int orderId, byte[] pdf) {
+        String sql = """
+            INSERT INTO order_invoices (order_id, content_hash, size, pdf) VALUES (?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE content_hash = VALUES(content_hash), size = VALUES(size), pdf = VALUES(pdf)
+        """;
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, orderId);
+            stmt.setString(2, ImageUtil.hash(pdf));
+            stmt.setInt(3, pdf.length);
+            stmt.setBinaryStream(4, new ByteArrayInputStream(pdf), pdf.length);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Streams the saved invoice of an order into a file.
+     * If the bytes do not match the stored hash, the file is deleted and false is returned,
+     * so the caller can build the invoice again.
+     *
+     * @param orderId ID of the order
+     * @param target file to write (replaced if it exists)
+     * @return true if the invoice was written, false if there is no (valid) invoice
+     * @throws IOException if the file can not be written
+     */
+    public boolean copyInvoiceTo(int orderId, Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target)) {
+            if (writeInvoice(orderId, out)) return true;
+        }
+        Files.deleteIfExists(target);
+        return false;
+    }
+
+    /**
+     * Streams the saved invoice of an order into a stream.
+     *
+     * @param orderId ID of the order
+     * @param out target stream (not closed)
+     * @return true if the invoice was written and matches its hash
+     * @throws IOException if the stream can not be written
+     */
+    public boolean writeInvoice(int orderId, OutputStream out) throws IOException {
+        String sql = "SELECT content_hash, pdf FROM order_invoices WHERE order_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return false;
+                String expectedHash = rs.getString("content_hash");
+                try (DigestInputStream in = new DigestInputStream(rs.getBinaryStream("pdf"), ImageUtil.sha256())) {
+                    in.transferTo(out);
+                    return expectedHash.equals(ImageUtil.hex(in.getMessageDigest().digest()));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -1,79 +1,189 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.DbExecutor;
 import model.Message;
+import service.MessageBus;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Data Access Object for messages.
- * It sends messages and gets conversations from the database.
+ * It sends messages and reads conversations page by page from the database.
+ * Messages are ordered by ID (the order in which they were saved).
  */
 public class MessageDAO {
 
+    /** Query of getMessagesSince. */
+    public static final String NEW_MESSAGES_SQL = """
+            SELECT * FROM messages WHERE sender_id=? AND receiver_id=? AND id > ?
+            UNION
+            SELECT * FROM messages WHERE sender_id=? AND receiver_id=? AND id > ?
+            ORDER BY id
+            """;
+
+    /**
+     * Query of getMessagesBefore.
+     * Each direction gives at most limit rows, then the newest limit of both are kept.
+     */
+    public static final String OLDER_MESSAGES_SQL = """
+            SELECT * FROM (
+                (SELECT * FROM messages WHERE sender_id=? AND receiver_id=? AND id < ? ORDER BY id DESC LIMIT ?)
+                UNION
+                (SELECT * FROM messages WHERE sender_id=? AND receiver_id=? AND id < ? ORDER BY id DESC LIMIT ?)
+            ) m
+            ORDER BY id DESC LIMIT ?
+            """;
+
     /**
-     * Saves a new message to the database.
+     * Saves a new message to the database and tells the open chat windows about it.
      *
      * @param senderId sender user ID
      * @param receiverId receiver user ID
      * @param text message content
+     * @return ID of the new message, or 0 if it could not be saved
      */
-    public void sendMessage(int senderId, int receiverId, String text) {
+    public int sendMessage(int senderId, int receiverId, String text) {
         String sql = "INSERT INTO messages (sender_id, receiver_id, message) VALUES (?, ?, ?)";
+        int id = 0;
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setInt(1, senderId);
             ps.setInt(2, receiverId);
             ps.setString(3, text);
             ps.executeUpdate();
 
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) id = keys.getInt(1);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        if (id > 0) {
+            MessageBus.getInstance().publish(senderId, receiverId, id);
+        }
+        return id;
     }
 
     /**
-     * Gets all messages between two users.
-     * Messages are ordered by send time.
+     * Gets the messages between two users that are newer than a known message.
+     * Used after sending and for refreshing an open conversation,
+     * so only the new rows are read, however long the conversation is.
+     * Each direction is read with the (sender_id, receiver_id, id) index.
      *
      * @param userA first user ID
      * @param userB second user ID
-     * @return list of messages between users
+     * @param lastId ID of the newest message the caller has (0 for none)
+     * @return newer messages, oldest first
      */
-    public List<Message> getConversation(int userA, int userB) {
+    public List<Message> getMessagesSince(int userA, int userB, int lastId) {
         List<Message> list = new ArrayList<>();
-        String sql = """
-            SELECT * FROM messages
-            WHERE (sender_id=? AND receiver_id=?)
-               OR (sender_id=? AND receiver_id=?)
-            ORDER BY sent_at
-        """;
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(NEW_MESSAGES_SQL)) {
+
+            ps.setInt(1, userA);
+            ps.setInt(2, userB);
+            ps.setInt(3, lastId);
+            ps.setInt(4, userB);
+            ps.setInt(5, userA);
+            ps.setInt(6, lastId);
 
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapMessage(rs));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /**
+     * Gets one page of older messages between two users.
+     * The first page (the latest messages) is read with beforeId = Integer.MAX_VALUE.
+     *
+     * @param userA first user ID
+     * @param userB second user ID
+     * @param beforeId ID of the oldest message the caller has
+     * @param limit page size
+     * @return up to limit messages older than beforeId, oldest first (fewer means there are no older ones)
+     */
+    public List<Message> getMessagesBefore(int userA, int userB, int beforeId, int limit) {
+        List<Message> list = new ArrayList<>();
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(OLDER_MESSAGES_SQL)) {
 
             ps.setInt(1, userA);
             ps.setInt(2, userB);
-            ps.setInt(3, userB);
-            ps.setInt(4, userA);
-
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                list.add(new Message(
-                        rs.getInt("id"),
-                        rs.getInt("sender_id"),
-                        rs.getInt("receiver_id"),
-                        rs.getString("message"),
-                        rs.getTimestamp("sent_at").toLocalDateTime(),
-                        rs.getBoolean("is_read")
-                ));
+            ps.setInt(3, beforeId);
+            ps.setInt(4, limit);
+            ps.setInt(5, userB);
+            ps.setInt(6, userA);
+            ps.setInt(7, beforeId);
+            ps.setInt(8, limit);
+            ps.setInt(9, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapMessage(rs));
+                }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        Collections.reverse(list);
         return list;
     }
+
+    /**
+     * Gets newer messages on a database thread.
+     *
+     * @param userA first user ID
+     * @param userB second user ID
+     * @param lastId ID of the newest message the caller has (0 for none)
+     * @return future with the newer messages, oldest first
+     */
+    public CompletableFuture<List<Message>> getMessagesSinceAsync(int userA, int userB, int lastId) {
+        return DbExecutor.supply(() -> getMessagesSince(userA, userB, lastId));
+    }
+
+    /**
+     * Gets one page of older messages on a database thread.
+     *
+     * @param userA first user ID
+     * @param userB second user ID
+     * @param beforeId ID of the oldest message the caller has
+     * @param limit page size
+     * @return future with the messages, oldest first
+     */
+    public CompletableFuture<List<Message>> getMessagesBeforeAsync(int userA, int userB, int beforeId, int limit) {
+        return DbExecutor.supply(() -> getMessagesBefore(userA, userB, beforeId, limit));
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Creates a message from the current row.
+     *
+     * @param rs result set on a messages row
+     * @return message
+     * @throws SQLException if a column can not be read
+     */
+    private static Message mapMessage(ResultSet rs) throws SQLException {
+        return new Message(
+                rs.getInt("id"),
+                rs.getInt("sender_id"),
+                rs.getInt("receiver_id"),
+                rs.getString("message"),
+                rs.getTimestamp("sent_at").toLocalDateTime(),
+                rs.getBoolean("is_read")
+        );
+    }
 }
@@ -1,11 +1,20 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.DbExecutor;
 import model.*;
+import service.InsufficientStockException;
+import service.ProductCatalog;
+import service.ReportingService;
+import service.StockLedger;
+import service.StockReservation;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class is responsible for managing order data in the database.
@@ -14,163 +23,259 @@ import java.util.List;
  */
 public class OrderDAO {
 
+    /**
+     * orderinfo columns that the order lists need (table alias o).
+     * Invoices are not part of orderinfo; they are read one at a time with InvoiceDAO.
+     */
+    public static final String ORDER_COLUMNS =
+            "o.id, o.ordertime, o.deliverytime, o.products, o.user_id, o.carrier_id, o.isdelivered, o.totalcost, o.iscancelled";
+
+    // --- QUERIES (public, so database.QueryPlanCheck can EXPLAIN the same text) ---
+
+    /** Query of getOrderItems. */
+    public static final String ORDER_ITEMS_SQL =
+            "SELECT order_id, product_id, product_name, quantity, unit_price FROM order_items WHERE order_id = ? ORDER BY id";
+
+    /** Query of cancelOrder that reads the stock to give back. */
+    public static final String ORDER_STOCK_LINES_SQL =
+            "SELECT product_id, quantity FROM order_items WHERE order_id = ? AND product_id IS NOT NULL";
+
+    /** Query of getOrderWithDetails. */
+    public static final String ORDER_WITH_DETAILS_SQL = """
+            SELECT %s,
+                   u.username AS customerName,
+                   u.address AS customerAddress,
+                   c.username AS carrierName
+            FROM orderinfo o
+            JOIN userinfo u ON o.user_id = u.id
+            LEFT JOIN userinfo c ON o.carrier_id = c.id
+            WHERE o.id = ?
+            """.formatted(ORDER_COLUMNS);
+
+    /** Query of getAssignedOrdersForCarrier. */
+    public static final String ASSIGNED_ORDERS_SQL = """
+            SELECT %s, u.username AS customerName, u.address AS customerAddress
+            FROM orderinfo o
+            JOIN userinfo u ON o.user_id = u.id
+            WHERE o.isdelivered = 0
+              AND o.iscancelled = 0
+              AND o.carrier_id = ?
+            ORDER BY o.deliverytime ASC
+            """.formatted(ORDER_COLUMNS);
+
+    /** Keeps the daily report numbers in step with the orders. */
+    private final ReportDAO reportDAO = new ReportDAO();
+
     /**
      * Place a new order and use a transaction for safety.
+     * The stock of all products is taken in the same transaction,
+     * so the order is only saved if every product has enough stock.
      * If there is a coupon code, it will be marked as used.
      *
      * @param user The user who makes the order.
      * @param cart The shopping cart of the user.
      * @param deliveryTime The expected delivery time.
      * @return true if the order was placed successfully, false if there was an error.
+     * @throws InsufficientStockException if some products do not have enough stock (nothing is saved).
      */
-    public boolean placeOrderWithTransaction(User user, Cart cart, LocalDateTime deliveryTime) {
-        String insertOrder = "INSERT INTO orderinfo (user_id, totalcost, products, ordertime, deliverytime) VALUES (?, ?, ?, NOW(), ?)";
+    public boolean placeOrderWithTransaction(User user, Cart cart, LocalDateTime deliveryTime)
+            throws InsufficientStockException {
+        OrderRequest request = new OrderRequest(user, cart, deliveryTime);
+        try {
+            placeOrders(List.of(request));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (request.getFailure() instanceof InsufficientStockException) {
+            throw (InsufficientStockException) request.getFailure();
+        }
+        if (request.getFailure() != null) {
+            System.err.println("Order not placed: " + request.getFailure().getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Place several orders in one transaction (group commit).
+     * Each order is checked on its own: an order without enough stock or with an already used coupon
+     * is not saved, but the other orders are. Coupons, stock, order rows, order lines and report numbers
+     * are written with JDBC batches, and the whole group is committed once.
+     * The result of each order (new order ID or failure) is set on its request.
+     *
+     * @param requests The orders to save.
+     * @throws SQLException if the group could not be saved (then no order is saved).
+     */
+    public void placeOrders(List<OrderRequest> requests) throws SQLException {
+        // carrier_id 0 means "not assigned", like in the carrier and cancel queries
+        String insertOrder = "INSERT INTO orderinfo (user_id, totalcost, products, ordertime, deliverytime, carrier_id, used_coupon_code) VALUES (?, ?, ?, NOW(), ?, 0, ?)";
+        String redeemCoupon = "UPDATE couponinfo SET is_active = 0, used_date = NOW() WHERE code = ? AND is_active = 1";
+
+        StockLedger ledger = StockLedger.getInstance();
+        List<OrderRequest> accepted = new ArrayList<>();
         Connection conn = null;
 
         try {
             conn = DatabaseConnection.getConnection();
+            if (conn == null) throw new SQLException("No database connection for placing orders");
             conn.setAutoCommit(false);
 
-            double total = cart.getTotalPrice();
-            String products = cart.getCartContentAsString();
+            // 1. stock: from the ledger in memory, or from the locked productinfo rows
+            StockReservation.Allocation allocation = null;
+            if (ledger != null) {
+                for (OrderRequest r : requests) {
+                    try {
+                        ledger.reserve(r.getItems());
+                        accepted.add(r);
+                    } catch (InsufficientStockException e) {
+                        r.setFailure(e);
+                    }
+                }
+            } else {
+                List<List<CartItem>> carts = new ArrayList<>();
+                for (OrderRequest r : requests) carts.add(r.getItems());
+                allocation = StockReservation.getInstance().allocate(conn, carts);
+                for (int i = 0; i < requests.size(); i++) {
+                    if (allocation.isReserved(i)) accepted.add(requests.get(i));
+                    else requests.get(i).setFailure(new InsufficientStockException(allocation.getShortfalls(i)));
+                }
+            }
 
-            PreparedStatement stmt = conn.prepareStatement(insertOrder);
-            stmt.setInt(1, user.getId());
-            stmt.setDouble(2, total);
-            stmt.setString(3, products);
-            stmt.setTimestamp(4, Timestamp.valueOf(deliveryTime));
-            stmt.executeUpdate();
+            // 2. coupons: a coupon can only be used once, also by two orders of the same group
+            List<OrderRequest> withCoupon = new ArrayList<>();
+            for (OrderRequest r : accepted) {
+                if (r.getCouponCode() != null) withCoupon.add(r);
+            }
+            if (!withCoupon.isEmpty()) {
+                int[] counts;
+                try (PreparedStatement stmt = conn.prepareStatement(redeemCoupon)) {
+                    for (OrderRequest r : withCoupon) {
+                        stmt.setString(1, r.getCouponCode());
+                        stmt.addBatch();
+                    }
+                    counts = stmt.executeBatch();
+                }
+                for (int i = 0; i < withCoupon.size(); i++) {
+                    if (counts[i] != 0) continue;
+                    OrderRequest r = withCoupon.get(i);
+                    r.setFailure(new IllegalStateException("Coupon " + r.getCouponCode() + " is not active anymore."));
+                    accepted.remove(r);
+                    if (ledger != null) ledger.release(r.getItems());
+                    else allocation.reject(requests.indexOf(r));
+                }
+            }
 
+            if (allocation != null) {
+                StockReservation.getInstance().apply(conn, allocation);
+            }
 
-            conn.commit();
-            return true;
+            // 3. order rows
+            if (!accepted.isEmpty()) {
+                try (PreparedStatement stmt = conn.prepareStatement(insertOrder, Statement.RETURN_GENERATED_KEYS)) {
+                    for (OrderRequest r : accepted) {
+                        stmt.setInt(1, r.getUser().getId());
+                        stmt.setDouble(2, r.getTotalCost());
+                        // the text is only kept for showing the order; the lines are in order_items
+                        stmt.setString(3, r.getProducts());
+                        stmt.setTimestamp(4, Timestamp.valueOf(r.getDeliveryTime()));
+                        stmt.setString(5, r.getCouponCode());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            try { if (conn != null) conn.rollback(); } catch (Exception ex) { ex.printStackTrace(); }
-        } finally {
-            try { if (conn != null) conn.setAutoCommit(true); } catch (Exception e) { e.printStackTrace(); }
-        }
-        return false;
-    }
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        for (OrderRequest r : accepted) {
+                            if (!keys.next()) throw new SQLException("No ID was returned for a new order");
+                            r.setOrderId(keys.getInt(1));
+                        }
+                    }
+                }
 
-    /**
-     * Get one order with all details (customer and carrier info).
-     *
-     * @param orderId The ID of the order.
-     * @return An Order object with details, or null if not found.
-     */
-    public Order getOrderWithDetails(int orderId) {
-        String sql = """
-            SELECT o.*,
-                   u.username AS customerName,
-                   u.address AS customerAddress,
-                   c.username AS carrierName
-            FROM orderinfo o
-            JOIN userinfo u ON o.user_id = u.id
-            LEFT JOIN userinfo c ON o.carrier_id = c.id
-            WHERE o.id = ?
-        """;
+                // 4. order lines
+                List<OrderItem> items = new ArrayList<>();
+                for (OrderRequest r : accepted) {
+                    for (CartItem item : r.getItems()) {
+                        Product p = item.getProduct();
+                        items.add(new OrderItem(r.getOrderId(), p.getId(), p.getName(), item.getQuantity(), p.getPrice()));
+                    }
+                }
+                insertOrderItems(conn, items);
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+                // 5. report numbers of the order dates
+                List<Integer> orderIds = new ArrayList<>();
+                for (OrderRequest r : accepted) orderIds.add(r.getOrderId());
+                reportDAO.recordPlaced(conn, orderIds);
+            }
 
-            stmt.setInt(1, orderId);
-            ResultSet rs = stmt.executeQuery();
+            conn.commit();
+            if (!accepted.isEmpty()) ReportingService.getInstance().invalidate();
 
-            if (rs.next()) {
-                Order o = new Order(
-                        rs.getInt("id"),
-                        rs.getTimestamp("ordertime"),
-                        rs.getTimestamp("deliverytime"),
-                        rs.getString("products"),
-                        rs.getInt("user_id"),
-                        rs.getInt("carrier_id"),
-                        rs.getBoolean("isdelivered"),
-                        rs.getDouble("totalcost"),
-                        ""
-                );
+            if (ledger == null) {
+                for (OrderRequest r : accepted) {
+                    for (CartItem item : r.getItems()) {
+                        ProductCatalog.getInstance().invalidate(item.getProduct().getId()); // stock changed
+                    }
+                }
+            }
 
-                o.setCancelled(rs.getBoolean("iscancelled"));
-                o.setCustomerName(rs.getString("customerName"));
-                o.setCustomerAddress(rs.getString("customerAddress"));
-                o.setCarrierName(rs.getString("carrierName"));
-                return o;
+        } catch (SQLException | RuntimeException e) {
+            // also on a RuntimeException: the ledger must not keep the stock of orders that were not saved
+            if (conn != null) {
+                try { conn.rollback(); } catch (SQLException ex) { ex.printStackTrace(); }
+            }
+            for (OrderRequest r : accepted) {
+                r.setOrderId(0);
+                if (ledger != null) ledger.release(r.getItems()); // the order was not saved
             }
+            throw e;
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+        } finally {
+            // close() gives the connection back to the pool
+            if (conn != null) {
+                try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) { e.printStackTrace(); }
+            }
         }
-        return null;
     }
 
     /**
-     * Get all orders with customer and carrier information.
+     * Get the lines (products and quantities) of an order.
      *
-     * @return A list of all orders with details.
+     * @param orderId The ID of the order.
+     * @return A list of order lines (empty if not found or on error).
      */
-    public List<Order> getAllOrdersWithDetails() {
-        List<Order> orders = new ArrayList<>();
-        String sql = """
-            SELECT o.*, u.username AS customerName, c.username AS carrierName
-            FROM orderinfo o
-            JOIN userinfo u ON o.user_id = u.id
-            LEFT JOIN userinfo c ON o.carrier_id = c.id
-            ORDER BY o.ordertime DESC
-        """;
+    public List<OrderItem> getOrderItems(int orderId) {
+        List<OrderItem> items = new ArrayList<>();
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                Order o = new Order(
-                        rs.getInt("id"),
-                        rs.getTimestamp("ordertime"),
-                        rs.getTimestamp("deliverytime"),
-                        rs.getString("products"),
-                        rs.getInt("user_id"),
-                        rs.getInt("carrier_id"),
-                        rs.getBoolean("isdelivered"),
-                        rs.getDouble("totalcost"),
-                        ""
-                );
-
-                o.setCancelled(rs.getBoolean("iscancelled"));
-                o.setCustomerName(rs.getString("customerName"));
-                o.setCarrierName(rs.getString("carrierName") != null ? rs.getString("carrierName") : "Not Assigned");
-                orders.add(o);
+             PreparedStatement stmt = conn.prepareStatement(ORDER_ITEMS_SQL)) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    items.add(mapOrderItem(rs));
+                }
             }
-
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return orders;
+        return items;
     }
 
     /**
-     * Get all orders that do not have a carrier assigned yet.
+     * Get one order with all details (customer and carrier info).
      *
-     * @return A list of unassigned orders with customer info.
+     * @param orderId The ID of the order.
+     * @return An Order object with details, or null if not found.
      */
-    public List<Order> getUnassignedOrdersWithCustomerInfo() {
-        List<Order> orders = new ArrayList<>();
-        String sql = """
-            SELECT o.*, u.username AS customerName, u.address AS customerAddress
-            FROM orderinfo o
-            JOIN userinfo u ON o.user_id = u.id
-            WHERE o.isdelivered = 0 
-              AND o.carrier_id = 0 
-              AND o.iscancelled = 0
-            ORDER BY o.deliverytime ASC
-        """;
-
+    public Order getOrderWithDetails(int orderId) {
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = conn.prepareStatement(ORDER_WITH_DETAILS_SQL)) {
+
+            stmt.setInt(1, orderId);
+            ResultSet rs = stmt.executeQuery();
 
-            while (rs.next()) {
+            if (rs.next()) {
                 Order o = new Order(
                         rs.getInt("id"),
                         rs.getTimestamp("ordertime"),
@@ -186,12 +291,14 @@ public class OrderDAO {
                 o.setCancelled(rs.getBoolean("iscancelled"));
                 o.setCustomerName(rs.getString("customerName"));
                 o.setCustomerAddress(rs.getString("customerAddress"));
-                orders.add(o);
+                o.setCarrierName(rs.getString("carrierName"));
+                return o;
             }
 
-        } catch (SQLException e) { e.printStackTrace(); }
-
-        return orders;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
     }
 
     /**
@@ -222,18 +329,8 @@ public class OrderDAO {
      */
     public List<Order> getAssignedOrdersForCarrier(int carrierId) {
         List<Order> orders = new ArrayList<>();
-        String sql = """
-            SELECT o.*, u.username AS customerName, u.address AS customerAddress
-            FROM orderinfo o
-            JOIN userinfo u ON o.user_id = u.id
-            WHERE o.isdelivered = 0 
-              AND o.iscancelled = 0
-              AND o.carrier_id = ?
-            ORDER BY o.deliverytime ASC
-        """;
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(ASSIGNED_ORDERS_SQL)) {
             stmt.setInt(1, carrierId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -259,7 +356,7 @@ public class OrderDAO {
     }
 
     /**
-     * Mark an order as delivered by a carrier.
+     * Mark an order as delivered by a carrier, and add it to the daily report numbers.
      *
      * @param orderId The order ID.
      * @param carrierId The carrier ID.
@@ -268,114 +365,91 @@ public class OrderDAO {
      */
     public boolean completeDelivery(int orderId, int carrierId, LocalDateTime deliveredTime) {
         String sql = "UPDATE orderinfo SET isdelivered = 1, deliverytime = ? WHERE id = ? AND carrier_id = ? AND isdelivered = 0";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setTimestamp(1, Timestamp.valueOf(deliveredTime));
-            stmt.setInt(2, orderId);
-            stmt.setInt(3, carrierId);
-            return stmt.executeUpdate() > 0;
-        } catch (SQLException e) { e.printStackTrace(); return false; }
-    }
-
-    /**
-     * Get all orders that were delivered by a specific carrier.
-     *
-     * @param carrierId The carrier ID.
-     * @return A list of delivered orders.
-     */
-    public List<Order> getDeliveredOrdersForCarrier(int carrierId) {
-        List<Order> orders = new ArrayList<>();
-        String sql = "SELECT o.*, u.username AS customerName, u.address AS customerAddress FROM orderinfo o JOIN userinfo u ON o.user_id = u.id WHERE o.isdelivered = 1 AND o.carrier_id = ? ORDER BY o.deliverytime DESC";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, carrierId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Order o = new Order(
-                            rs.getInt("id"),
-                            rs.getTimestamp("ordertime"),
-                            rs.getTimestamp("deliverytime"),
-                            rs.getString("products"),
-                            rs.getInt("user_id"),
-                            rs.getInt("carrier_id"),
-                            rs.getBoolean("isdelivered"),
-                            rs.getDouble("totalcost"),
-                            ""
-                    );
-                    o.setCustomerName(rs.getString("customerName"));
-                    o.setCustomerAddress(rs.getString("customerAddress"));
-                    orders.add(o);
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setTimestamp(1, Timestamp.valueOf(deliveredTime));
+                stmt.setInt(2, orderId);
+                stmt.setInt(3, carrierId);
+                if (stmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
                 }
+                reportDAO.recordDelivered(conn, orderId);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        } catch (SQLException e) { e.printStackTrace(); }
-
-        return orders;
+            ReportingService.getInstance().invalidate();
+            return true;
+        } catch (SQLException e) { e.printStackTrace(); return false; }
     }
 
     /**
      * Cancel an order if it is not delivered and not assigned.
-     * Also returns product quantities back to stock.
+     * Also returns product quantities back to stock (by product ID, from order_items)
+     * and counts the order as cancelled in the daily report numbers.
      *
      * @param orderId The order ID to cancel.
      * @return true if cancelled, false otherwise.
      */
     public boolean cancelOrder(int orderId) {
-        String getProductsSQL = "SELECT products FROM orderinfo WHERE id = ? AND isdelivered = 0 AND iscancelled = 0 AND carrier_id = 0";
-        String cancelOrderSQL = "UPDATE orderinfo SET iscancelled = 1 WHERE id = ?";
-        String updateStockSQL = "UPDATE productinfo SET stock = stock + ? WHERE LOWER(TRIM(name)) = LOWER(TRIM(?))";
+        // the conditions are checked in the UPDATE itself, so an order can not be cancelled twice
+        String cancelOrderSQL = "UPDATE orderinfo SET iscancelled = 1 WHERE id = ? AND isdelivered = 0 AND iscancelled = 0 AND (carrier_id = 0 OR carrier_id IS NULL)";
+        String updateStockSQL = "UPDATE productinfo SET stock = stock + ? WHERE id = ?";
 
         Connection conn = null;
+        Map<Integer, Double> restocked = new TreeMap<>();
 
         try {
+            StockLedger ledger = StockLedger.getInstance();
             conn = DatabaseConnection.getConnection();
             if (conn == null) return false;
 
             conn.setAutoCommit(false);
 
-            String productsString = null;
-
-            try (PreparedStatement stmt = conn.prepareStatement(getProductsSQL)) {
-                stmt.setInt(1, orderId);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        productsString = rs.getString("products");
-                    }
+            try (PreparedStatement cancelStmt = conn.prepareStatement(cancelOrderSQL)) {
+                cancelStmt.setInt(1, orderId);
+                if (cancelStmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
                 }
             }
+            reportDAO.recordCancelled(conn, orderId);
 
-            if (productsString == null || productsString.isEmpty()) {
-                conn.rollback();
-                return false;
-            }
-
-            String[] items = productsString.split(";");
-            try (PreparedStatement updateStockStmt = conn.prepareStatement(updateStockSQL)) {
-                for (String item : items) {
-                    item = item.trim();
-                    if (item.isEmpty() || !item.contains("x")) continue;
-
-                    String[] parts = item.split("x");
-                    if (parts.length == 2) {
-                        String name = parts[0].trim();
-                        try {
-                            double quantity = Double.parseDouble(parts[1].trim().replace(",", "."));
-                            updateStockStmt.setDouble(1, quantity);
-                            updateStockStmt.setString(2, name);
-                            updateStockStmt.executeUpdate();
-                        } catch (NumberFormatException e) {
-                            System.err.println("Could not parse quantity for item: " + item);
-                        }
+            try (PreparedStatement itemsStmt = conn.prepareStatement(ORDER_STOCK_LINES_SQL)) {
+                itemsStmt.setInt(1, orderId);
+                try (ResultSet rs = itemsStmt.executeQuery()) {
+                    while (rs.next()) {
+                        restocked.merge(rs.getInt("product_id"), rs.getDouble("quantity"), Double::sum);
                     }
                 }
             }
 
-            try (PreparedStatement cancelStmt = conn.prepareStatement(cancelOrderSQL)) {
-                cancelStmt.setInt(1, orderId);
-                cancelStmt.executeUpdate();
+            // with the stock ledger the stock is given back in memory after the commit
+            if (ledger == null && !restocked.isEmpty()) {
+                try (PreparedStatement updateStockStmt = conn.prepareStatement(updateStockSQL)) {
+                    for (Map.Entry<Integer, Double> e : restocked.entrySet()) {
+                        updateStockStmt.setDouble(1, e.getValue());
+                        updateStockStmt.setInt(2, e.getKey());
+                        updateStockStmt.addBatch();
+                    }
+                    updateStockStmt.executeBatch();
+                }
             }
 
             conn.commit();
+            ReportingService.getInstance().invalidate();
+            if (ledger != null) {
+                ledger.release(restocked);
+            } else {
+                for (int productId : restocked.keySet()) {
+                    ProductCatalog.getInstance().invalidate(productId); // stock changed
+                }
+            }
             return true;
 
         } catch (SQLException e) {
@@ -392,63 +466,430 @@ public class OrderDAO {
         }
     }
 
+    // --- KEYSET PAGES (the next page starts after the last row of the previous page) ---
+    // Rows without a sort time (ordertime/deliverytime are nullable) are left out of the pages:
+    // "time < NULL" is never true, so paging would stop at such a row. The application always
+    // sets both times (ordertime on insert, deliverytime at checkout and on delivery).
+
     /**
-     * Get all orders of a specific user.
+     * Query of getAllOrdersWithDetailsPage.
      *
-     * @param userId The user ID.
-     * @return A list of the user's orders.
+     * @param next true for a page after the first one (adds the keyset condition)
+     * @return SQL text
      */
-    public List<Order> getOrdersByUser(int userId) {
-        List<Order> orders = new ArrayList<>();
-        String sql = "SELECT * FROM orderinfo WHERE user_id = ? ORDER BY ordertime DESC";
+    public static String allOrdersPageSql(boolean next) {
+        return """
+            SELECT %s, u.username AS customerName, c.username AS carrierName
+            FROM orderinfo o
+            JOIN userinfo u ON o.user_id = u.id
+            LEFT JOIN userinfo c ON o.carrier_id = c.id
+            WHERE o.ordertime IS NOT NULL
+        """.formatted(ORDER_COLUMNS) + keyset(next, "o.ordertime", false) + " ORDER BY o.ordertime DESC, o.id DESC LIMIT ?";
+    }
+
+    /**
+     * Query of getUnassignedOrdersWithCustomerInfoPage.
+     *
+     * @param next true for a page after the first one (adds the keyset condition)
+     * @return SQL text
+     */
+    public static String unassignedOrdersPageSql(boolean next) {
+        return """
+            SELECT %s, u.username AS customerName, u.address AS customerAddress
+            FROM orderinfo o
+            JOIN userinfo u ON o.user_id = u.id
+            WHERE o.carrier_id = 0
+              AND o.isdelivered = 0
+              AND o.iscancelled = 0
+              AND o.deliverytime IS NOT NULL
+        """.formatted(ORDER_COLUMNS) + keyset(next, "o.deliverytime", true) + " ORDER BY o.deliverytime ASC, o.id ASC LIMIT ?";
+    }
+
+    /**
+     * Query of getDeliveredOrdersForCarrierPage.
+     *
+     * @param next true for a page after the first one (adds the keyset condition)
+     * @return SQL text
+     */
+    public static String deliveredOrdersOfCarrierPageSql(boolean next) {
+        return """
+            SELECT %s, u.username AS customerName, u.address AS customerAddress
+            FROM orderinfo o
+            JOIN userinfo u ON o.user_id = u.id
+            WHERE o.carrier_id = ?
+              AND o.isdelivered = 1
+              AND o.deliverytime IS NOT NULL
+        """.formatted(ORDER_COLUMNS) + keyset(next, "o.deliverytime", false) + " ORDER BY o.deliverytime DESC, o.id DESC LIMIT ?";
+    }
+
+    /**
+     * Query of getDeliveredOrdersBetweenPage.
+     *
+     * @param next true for a page after the first one (adds the keyset condition)
+     * @return SQL text
+     */
+    public static String deliveredOrdersBetweenPageSql(boolean next) {
+        return """
+            SELECT %s,
+                   u.username AS customerName,
+                   u.address AS customerAddress,
+                   c.username AS carrierName
+            FROM orderinfo o
+            JOIN userinfo u ON o.user_id = u.id
+            LEFT JOIN userinfo c ON o.carrier_id = c.id
+            WHERE o.isdelivered = 1
+              AND o.iscancelled = 0
+              AND o.deliverytime >= ? AND o.deliverytime < ?
+        """.formatted(ORDER_COLUMNS) + keyset(next, "o.deliverytime", true) + " ORDER BY o.deliverytime ASC, o.id ASC LIMIT ?";
+    }
+
+    /**
+     * Query of getOrdersByUserPage.
+     *
+     * @param next true for a page after the first one (adds the keyset condition)
+     * @return SQL text
+     */
+    public static String ordersOfUserPageSql(boolean next) {
+        return """
+            SELECT %s FROM orderinfo o
+            WHERE o.user_id = ?
+              AND o.ordertime IS NOT NULL
+        """.formatted(ORDER_COLUMNS) + keyset(next, "o.ordertime", false) + " ORDER BY o.ordertime DESC, o.id DESC LIMIT ?";
+    }
 
+    /**
+     * Get one page of all orders with customer and carrier information, newest first.
+     * Orders without an order time are not listed.
+     *
+     * @param after The last order of the previous page, or null for the first page.
+     * @param limit The page size.
+     * @return Up to limit orders (fewer means this was the last page).
+     */
+    public List<Order> getAllOrdersWithDetailsPage(Order after, int limit) {
+        List<Order> orders = new ArrayList<>();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
+             PreparedStatement stmt = conn.prepareStatement(allOrdersPageSql(after != null))) {
+            setKeyset(stmt, 1, after, after == null ? null : after.getOrderTime(), limit);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Order o = new Order(
-                            rs.getInt("id"),
-                            rs.getTimestamp("ordertime"),
-                            rs.getTimestamp("deliverytime"),
-                            rs.getString("products"),
-                            rs.getInt("user_id"),
-                            rs.getInt("carrier_id"),
-                            rs.getBoolean("isdelivered"),
-                            rs.getDouble("totalcost"),
-                            ""
-                    );
-                    o.setCancelled(rs.getBoolean("iscancelled"));
+                    Order o = mapOrder(rs);
+                    o.setCustomerName(rs.getString("customerName"));
+                    o.setCarrierName(rs.getString("carrierName") != null ? rs.getString("carrierName") : "Not Assigned");
                     orders.add(o);
                 }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return orders;
+    }
 
+    /**
+     * Get one page of the orders without a carrier, earliest delivery time first.
+     * Orders without a delivery time are not listed.
+     *
+     * @param after The last order of the previous page, or null for the first page.
+     * @param limit The page size.
+     * @return Up to limit orders (fewer means this was the last page).
+     */
+    public List<Order> getUnassignedOrdersWithCustomerInfoPage(Order after, int limit) {
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(unassignedOrdersPageSql(after != null))) {
+            setKeyset(stmt, 1, after, after == null ? null : after.getDeliveryTime(), limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Order o = mapOrder(rs);
+                    o.setCustomerName(rs.getString("customerName"));
+                    o.setCustomerAddress(rs.getString("customerAddress"));
+                    orders.add(o);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
         return orders;
     }
 
+    /**
+     * Get one page of the orders delivered by a carrier, latest delivery first.
+     * Orders without a delivery time are not listed.
+     *
+     * @param carrierId The carrier ID.
+     * @param after The last order of the previous page, or null for the first page.
+     * @param limit The page size.
+     * @return Up to limit orders (fewer means this was the last page).
+     */
+    public List<Order> getDeliveredOrdersForCarrierPage(int carrierId, Order after, int limit) {
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(deliveredOrdersOfCarrierPageSql(after != null))) {
+            stmt.setInt(1, carrierId);
+            setKeyset(stmt, 2, after, after == null ? null : after.getDeliveryTime(), limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Order o = mapOrder(rs);
+                    o.setCustomerName(rs.getString("customerName"));
+                    o.setCustomerAddress(rs.getString("customerAddress"));
+                    orders.add(o);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return orders;
+    }
 
+    /**
+     * Get one page of the orders delivered in a time range, oldest delivery first.
+     * Cancelled orders are left out. Used by the invoice export.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @param after The last order of the previous page, or null for the first page.
+     * @param limit The page size.
+     * @return Up to limit orders with customer and carrier names (fewer means this was the last page).
+     * @throws SQLException if the page could not be read (an empty page would look like the end of the range).
+     */
+    public List<Order> getDeliveredOrdersBetweenPage(LocalDateTime from, LocalDateTime to, Order after, int limit)
+            throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(deliveredOrdersBetweenPageSql(after != null))) {
+            stmt.setTimestamp(1, Timestamp.valueOf(from));
+            stmt.setTimestamp(2, Timestamp.valueOf(to));
+            setKeyset(stmt, 3, after, after == null ? null : after.getDeliveryTime(), limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Order o = mapOrder(rs);
+                    o.setCustomerName(rs.getString("customerName"));
+                    o.setCustomerAddress(rs.getString("customerAddress"));
+                    o.setCarrierName(rs.getString("carrierName"));
+                    orders.add(o);
+                }
+            }
+        }
+        return orders;
+    }
 
     /**
-     * Saves the Base64-encoded invoice into the invoice_content column.
+     * Get one page of the orders of a user, newest first.
+     * Orders without an order time are not listed.
      *
-     * @param orderId ID of the order
-     * @param base64Invoice Base64 encoded string of the invoice PDF
-     * @return true if update was successful
+     * @param userId The user ID.
+     * @param after The last order of the previous page, or null for the first page.
+     * @param limit The page size.
+     * @return Up to limit orders (fewer means this was the last page).
      */
-    public boolean saveInvoiceContent(int orderId, String base64Invoice) {
-        String sql = "UPDATE orderinfo SET invoice_content = ? WHERE id = ?";
+    public List<Order> getOrdersByUserPage(int userId, Order after, int limit) {
+        List<Order> orders = new ArrayList<>();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, base64Invoice);
-            stmt.setInt(2, orderId);
-            return stmt.executeUpdate() > 0;
+             PreparedStatement stmt = conn.prepareStatement(ordersOfUserPageSql(after != null))) {
+            stmt.setInt(1, userId);
+            setKeyset(stmt, 2, after, after == null ? null : after.getOrderTime(), limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapOrder(rs));
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
         }
+        return orders;
     }
 
+    // --- HELPERS ---
+
+    /**
+     * Builds the keyset condition of a page query: rows after the last row of the previous page,
+     * in (sort time, id) order. The first page has no condition.
+     * The query must leave out rows whose sort time is NULL.
+     * The leading "time <= ?" (or ">=") is a plain range, so the database can start the index scan there;
+     * "time < ? OR (time = ? AND id < ?)" alone makes some databases scan the whole table.
+     *
+     * @param next true for a page after the first one
+     * @param timeColumn sort time column
+     * @param ascending true if the page is sorted from old to new
+     * @return condition that starts with AND, or an empty text
+     */
+    private static String keyset(boolean next, String timeColumn, boolean ascending) {
+        if (!next) return "";
+        String op = ascending ? ">" : "<";
+        return " AND " + timeColumn + " " + op + "= ? AND (" + timeColumn + " " + op + " ? OR o.id " + op + " ?)";
+    }
+
+    /**
+     * Sets the parameters of the keyset condition (if there is one) and the page size.
+     *
+     * @param stmt page query
+     * @param index index of the first keyset parameter
+     * @param after last order of the previous page, or null for the first page
+     * @param time sort time of that order
+     * @param limit page size
+     * @throws SQLException if a parameter can not be set
+     */
+    private static void setKeyset(PreparedStatement stmt, int index, Order after, Timestamp time, int limit)
+            throws SQLException {
+        if (after != null) {
+            stmt.setTimestamp(index++, time);
+            stmt.setTimestamp(index++, time);
+            stmt.setInt(index++, after.getId());
+        }
+        stmt.setInt(index, limit);
+    }
+
+    /**
+     * Creates an order from the orderinfo columns of the current row.
+     *
+     * @param rs result set on an orderinfo row
+     * @return order without customer and carrier names
+     * @throws SQLException if a column can not be read
+     */
+    private static Order mapOrder(ResultSet rs) throws SQLException {
+        Order o = new Order(
+                rs.getInt("id"),
+                rs.getTimestamp("ordertime"),
+                rs.getTimestamp("deliverytime"),
+                rs.getString("products"),
+                rs.getInt("user_id"),
+                rs.getInt("carrier_id"),
+                rs.getBoolean("isdelivered"),
+                rs.getDouble("totalcost"),
+                ""
+        );
+        o.setCancelled(rs.getBoolean("iscancelled"));
+        return o;
+    }
+
+    /**
+     * Inserts order lines in one batch, using the caller's transaction.
+     *
+     * @param conn connection of the running transaction
+     * @param items order lines
+     * @throws SQLException if the insert fails
+     */
+    private void insertOrderItems(Connection conn, List<OrderItem> items) throws SQLException {
+        if (items.isEmpty()) return;
+        String sql = "INSERT INTO order_items (order_id, product_id, product_name, quantity, unit_price) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (OrderItem item : items) {
+                stmt.setInt(1, item.getOrderId());
+                stmt.setInt(2, item.getProductId());
+                stmt.setString(3, item.getProductName());
+                stmt.setDouble(4, item.getQuantity());
+                stmt.setDouble(5, item.getUnitPrice());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Creates an order line from the current row.
+     * NULL product_id and unit_price (old orders) become 0.
+     *
+     * @param rs result set on an order_items row
+     * @return order line
+     * @throws SQLException if a column can not be read
+     */
+    private OrderItem mapOrderItem(ResultSet rs) throws SQLException {
+        return new OrderItem(
+                rs.getInt("order_id"),
+                rs.getInt("product_id"),
+                rs.getString("product_name"),
+                rs.getDouble("quantity"),
+                rs.getDouble("unit_price")
+        );
+    }
+
+    // --- ASYNC (run on DbExecutor, never on the JavaFX thread) ---
+
+    /**
+     * Gets the open orders of a carrier on a database thread.
+     *
+     * @param carrierId carrier ID
+     * @return future with the orders
+     */
+    public CompletableFuture<List<Order>> getAssignedOrdersForCarrierAsync(int carrierId) {
+        return DbExecutor.supply(() -> getAssignedOrdersForCarrier(carrierId));
+    }
+
+    /**
+     * Gets one page of all orders with details on a database thread.
+     *
+     * @param after last order of the previous page, or null for the first page
+     * @param limit page size
+     * @return future with the orders
+     */
+    public CompletableFuture<List<Order>> getAllOrdersWithDetailsPageAsync(Order after, int limit) {
+        return DbExecutor.supply(() -> getAllOrdersWithDetailsPage(after, limit));
+    }
+
+    /**
+     * Gets one page of the orders without a carrier on a database thread.
+     *
+     * @param after last order of the previous page, or null for the first page
+     * @param limit page size
+     * @return future with the orders
+     */
+    public CompletableFuture<List<Order>> getUnassignedOrdersWithCustomerInfoPageAsync(Order after, int limit) {
+        return DbExecutor.supply(() -> getUnassignedOrdersWithCustomerInfoPage(after, limit));
+    }
+
+    /**
+     * Gets one page of the orders delivered by a carrier on a database thread.
+     *
+     * @param carrierId carrier ID
+     * @param after last order of the previous page, or null for the first page
+     * @param limit page size
+     * @return future with the orders
+     */
+    public CompletableFuture<List<Order>> getDeliveredOrdersForCarrierPageAsync(int carrierId, Order after, int limit) {
+        return DbExecutor.supply(() -> getDeliveredOrdersForCarrierPage(carrierId, after, limit));
+    }
+
+    /**
+     * Gets one page of the orders of a user on a database thread.
+     *
+     * @param userId user ID
+     * @param after last order of the previous page, or null for the first page
+     * @param limit page size
+     * @return future with the orders
+     */
+    public CompletableFuture<List<Order>> getOrdersByUserPageAsync(int userId, Order after, int limit) {
+        return DbExecutor.supply(() -> getOrdersByUserPage(userId, after, limit));
+    }
+
+    /**
+     * Gives an order to a carrier on a database thread.
+     *
+     * @param orderId order ID
+     * @param carrierId carrier ID
+     * @return future with true if the order was still free and is now assigned
+     */
+    public CompletableFuture<Boolean> assignOrderToCarrierAsync(int orderId, int carrierId) {
+        return DbExecutor.supply(() -> assignOrderToCarrier(orderId, carrierId));
+    }
+
+    /**
+     * Marks an order as delivered on a database thread.
+     *
+     * @param orderId order ID
+     * @param carrierId carrier ID
+     * @param deliveredTime delivery time
+     * @return future with true if the order was marked as delivered
+     */
+    public CompletableFuture<Boolean> completeDeliveryAsync(int orderId, int carrierId, LocalDateTime deliveredTime) {
+        return DbExecutor.supply(() -> completeDelivery(orderId, carrierId, deliveredTime));
+    }
+
+    /**
+     * Cancels an order and gives its stock back on a database thread.
+     *
+     * @param orderId order ID
+     * @return future with true if the order was cancelled
+     */
+    public CompletableFuture<Boolean> cancelOrderAsync(int orderId) {
+        return DbExecutor.supply(() -> cancelOrder(orderId));
+    }
 }
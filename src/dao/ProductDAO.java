@@ -1,28 +1,46 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.DbExecutor;
 import model.Product;
+import model.ProductImage;
+import service.ProductCatalog;
+import service.ProductImageStore;
+import service.StockLedger;
 import util.Alertutil;
+import util.ImageUtil;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * Data Access Object for products.
  * It manages product data in the database.
+ * Every change tells the ProductCatalog cache which rows are stale.
+ * Product lists do not read the image column; images are loaded one by one through ProductImageStore.
  */
 public class ProductDAO {
 
+    /** Columns of a product list row (everything except the image bytes). */
+    private static final String PRODUCT_COLUMNS = "id, name, type, price, stock, threshold, image_hash, updated_at";
+
     /**
      * Reduces product stock after a sale.
+     * The stock is only reduced if there is enough of it.
      *
      * @param productId product ID
      * @param quantitySold sold quantity
-     * @return true if update is successful
+     * @return true if update is successful, false if there is not enough stock
      */
     public boolean reduceStock(int productId, double quantitySold) {
-        String sql = "UPDATE productinfo SET stock = stock - ? WHERE id = ?";
+        // never sell more than there is in stock
+        String sql = "UPDATE productinfo SET stock = stock - ? WHERE id = ? AND stock >= ?";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -31,7 +49,13 @@ public class ProductDAO {
 
             stmt.setDouble(1, quantitySold);
             stmt.setInt(2, productId);
-            return stmt.executeUpdate() > 0;
+            stmt.setDouble(3, quantitySold);
+            boolean updated = stmt.executeUpdate() > 0;
+            if (updated) {
+                ProductCatalog.getInstance().invalidate(productId);
+                StockLedger.productChanged(productId);
+            }
+            return updated;
 
         } catch (SQLException e) {
             Alertutil.showErrorMessage("Database error while reducing stock:\n" + e.getMessage());
@@ -40,29 +64,20 @@ public class ProductDAO {
     }
 
     /**
-     * Gets all products from the database.
+     * Gets all products from the database, without image bytes.
      *
      * @return list of products
      */
     public List<Product> getAllProducts() {
         List<Product> products = new ArrayList<>();
-        String sql = "SELECT * FROM productinfo";
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM productinfo";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                Product p = new Product(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("type"),
-                        rs.getDouble("price"),
-                        rs.getDouble("stock"),
-                        rs.getBytes("image"),
-                        rs.getDouble("threshold")
-                );
-                products.add(p);
+                products.add(mapVersionedProduct(rs));
             }
 
         } catch (SQLException e) {
@@ -79,7 +94,8 @@ public class ProductDAO {
      * @return true if product is added
      */
     public boolean addProduct(Product product) {
-        String sql = "INSERT INTO productinfo (name, type, price, stock, image, threshold) VALUES (?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO productinfo (name, type, price, stock, image, threshold, image_hash, thumbnail) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -90,8 +106,11 @@ public class ProductDAO {
             stmt.setDouble(4, product.getStock());
             stmt.setBytes(5, product.getImage());
             stmt.setDouble(6, product.getThreshold());
+            stmt.setString(7, ImageUtil.hash(product.getImage()));
+            stmt.setBytes(8, thumbnailOf(product));
 
             stmt.executeUpdate();
+            ProductCatalog.getInstance().invalidateAll();
             return true;
 
         } catch (SQLIntegrityConstraintViolationException e) {
@@ -107,6 +126,7 @@ public class ProductDAO {
 
     /**
      * Updates an existing product.
+     * The image is only written if it is different from the stored one (compared by hash).
      *
      * @param product product to update
      * @return true if update is successful
@@ -114,10 +134,12 @@ public class ProductDAO {
 
     public boolean updateProduct(Product product) {
 
-        boolean hasImage = product.getImage() != null;
+        String newHash = ImageUtil.hash(product.getImage());
+        boolean hasImage = product.getImage() != null
+                && (newHash == null || !newHash.equals(product.getImageHash()));
 
         String sqlWithImage =
-                "UPDATE productinfo SET name=?, type=?, price=?, stock=?, image=?, threshold=? WHERE id=?";
+                "UPDATE productinfo SET name=?, type=?, price=?, stock=?, image=?, threshold=?, image_hash=?, thumbnail=? WHERE id=?";
 
         String sqlWithoutImage =
                 "UPDATE productinfo SET name=?, type=?, price=?, stock=?, threshold=? WHERE id=?";
@@ -135,20 +157,28 @@ public class ProductDAO {
             if (hasImage) {
                 stmt.setBytes(5, product.getImage());
                 stmt.setDouble(6, product.getThreshold());
-                stmt.setInt(7, product.getId());
+                stmt.setString(7, newHash);
+                stmt.setBytes(8, thumbnailOf(product));
+                stmt.setInt(9, product.getId());
             } else {
                 stmt.setDouble(5, product.getThreshold());
                 stmt.setInt(6, product.getId());
             }
 
             stmt.executeUpdate();
+            ProductCatalog.getInstance().invalidate(product.getId());
+            StockLedger.productChanged(product.getId());
+            if (hasImage) ProductImageStore.getInstance().invalidate(product.getId());
             return true;
 
         } catch (SQLIntegrityConstraintViolationException e) {
+            // the caller already changed the product object, so the cached row must be read again
+            ProductCatalog.getInstance().invalidate(product.getId());
             Alertutil.showErrorMessage("Cannot update — a product with this name already exists!");
             return false;
 
         } catch (SQLException e) {
+            ProductCatalog.getInstance().invalidate(product.getId());
             Alertutil.showErrorMessage("Database error while updating product:\n" + e.getMessage());
             return false;
         }
@@ -169,6 +199,8 @@ public class ProductDAO {
 
             stmt.setInt(1, id);
             stmt.executeUpdate();
+            ProductCatalog.getInstance().invalidate(id);
+            ProductImageStore.getInstance().invalidate(id);
             return true;
 
         } catch (SQLException e) {
@@ -176,4 +208,217 @@ public class ProductDAO {
             return false;
         }
     }
+
+    /**
+     * Gets products that were added or changed after the given time.
+     * Used by the product catalog cache for delta refresh.
+     * Errors are only logged, because this can run on a background thread.
+     *
+     * @param since only rows with updated_at after this time are returned
+     * @return changed products with their version set, or null if the query failed
+     */
+    public List<Product> getProductsChangedSince(Timestamp since) {
+        List<Product> products = new ArrayList<>();
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM productinfo WHERE updated_at > ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, since);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(mapVersionedProduct(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return products;
+    }
+
+    /**
+     * Gets products by their IDs.
+     * IDs that do not exist anymore are not in the result.
+     *
+     * @param ids product IDs
+     * @return found products with their version set, or null if the query failed
+     */
+    public List<Product> getProductsByIds(Collection<Integer> ids) {
+        List<Product> products = new ArrayList<>();
+        if (ids.isEmpty()) return products;
+
+        String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(", "));
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM productinfo WHERE id IN (" + placeholders + ")";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            for (int id : ids) {
+                stmt.setInt(i++, id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(mapVersionedProduct(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return products;
+    }
+
+    /**
+     * Gets the IDs of all products.
+     * Used by the catalog cache to find deleted products.
+     *
+     * @return product IDs, or null if the query failed
+     */
+    public Set<Integer> getAllProductIds() {
+        Set<Integer> ids = new HashSet<>();
+        String sql = "SELECT id FROM productinfo";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return ids;
+    }
+
+    /**
+     * Loads the image of one product.
+     * If knownHash is still the stored hash, the bytes are not sent again
+     * and the result is marked as not modified.
+     * Errors are only logged, because this can run on a background thread.
+     *
+     * @param productId product ID
+     * @param knownHash hash of the image the caller already has, or null
+     * @return product image, or null if the product does not exist or the query failed
+     */
+    public ProductImage getImage(int productId, String knownHash) {
+        return loadImage(productId, knownHash, "image");
+    }
+
+    /**
+     * Loads the card thumbnail of one product, in the same way as getImage.
+     * The thumbnail has the same hash as the full image.
+     * If no thumbnail was saved, the full image is returned instead.
+     *
+     * @param productId product ID
+     * @param knownHash hash of the thumbnail the caller already has, or null
+     * @return thumbnail, or null if the product does not exist or the query failed
+     */
+    public ProductImage getThumbnail(int productId, String knownHash) {
+        return loadImage(productId, knownHash, "COALESCE(thumbnail, image)");
+    }
+
+    /**
+     * Runs the image query for getImage and getThumbnail.
+     *
+     * @param productId product ID
+     * @param knownHash hash the caller already has, or null
+     * @param column column expression of the bytes (fixed text, never user input)
+     * @return product image, or null if the product does not exist or the query failed
+     */
+    private ProductImage loadImage(int productId, String knownHash, String column) {
+        String sql = "SELECT image_hash, CASE WHEN image_hash = ? THEN NULL ELSE " + column + " END AS image "
+                + "FROM productinfo WHERE id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, knownHash);
+            stmt.setInt(2, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+
+                String hash = rs.getString("image_hash");
+                boolean modified = knownHash == null || !knownHash.equals(hash);
+                return new ProductImage(productId, hash, modified ? rs.getBytes("image") : null, modified);
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Gets the thumbnail to save with a product image.
+     * Uses the one made when the image was chosen, or makes a new one.
+     *
+     * @param product product with image bytes
+     * @return thumbnail bytes, or null if there is no image
+     */
+    private byte[] thumbnailOf(Product product) {
+        if (product.getThumbnail() != null) return product.getThumbnail();
+        return ImageUtil.createThumbnail(product.getImage(), ImageUtil.THUMBNAIL_SIZE);
+    }
+
+    /**
+     * Creates a product from the current row (PRODUCT_COLUMNS), including its version.
+     * The image bytes are not read.
+     *
+     * @param rs result set on a productinfo row
+     * @return product
+     * @throws SQLException if a column cannot be read
+     */
+    private Product mapVersionedProduct(ResultSet rs) throws SQLException {
+        Product p = new Product(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("type"),
+                rs.getDouble("price"),
+                rs.getDouble("stock"),
+                null,
+                rs.getDouble("threshold")
+        );
+        p.setImageHash(rs.getString("image_hash"));
+        p.setVersion(rs.getTimestamp("updated_at").getTime());
+        return p;
+    }
+
+    // --- ASYNC (run on DbExecutor, never on the JavaFX thread) ---
+
+    /**
+     * Adds a new product on a database thread.
+     *
+     * @param product product to add
+     * @return future with true if the product is added
+     */
+    public CompletableFuture<Boolean> addProductAsync(Product product) {
+        return DbExecutor.supply(() -> addProduct(product));
+    }
+
+    /**
+     * Updates a product on a database thread.
+     *
+     * @param product product with the new values
+     * @return future with true if the product is updated
+     */
+    public CompletableFuture<Boolean> updateProductAsync(Product product) {
+        return DbExecutor.supply(() -> updateProduct(product));
+    }
+
+    /**
+     * Deletes a product on a database thread.
+     *
+     * @param id product ID
+     * @return future with true if the product is deleted
+     */
+    public CompletableFuture<Boolean> deleteProductAsync(int id) {
+        return DbExecutor.supply(() -> deleteProduct(id));
+    }
 }
@@ -1,9 +1,14 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.DbExecutor;
+import model.RatingSummary;
 import java.sql.*;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -12,6 +17,30 @@ import java.util.ArrayList;
  */
 public class RatingDAO {
 
+    /** Rating summaries of all carriers, shared by all RatingDAO objects (null = not loaded). */
+    private static Map<Integer, RatingSummary> summaryCache;
+    private static long summaryLoadedAt;
+
+    /** Raised by invalidateSummaries; a read that started before it is not cached. */
+    private static long summaryGeneration;
+
+    /** How long the summaries are kept before they are read again (ratings of other clients). */
+    private static final long SUMMARY_MAX_AGE_MILLIS =
+            DatabaseConnection.getConfig().getLong("ratings.cacheMillis", 30_000L);
+
+    /** Query of hasRatingForOrder. */
+    public static final String RATING_OF_ORDER_SQL = "SELECT 1 FROM carrier_ratings WHERE order_id = ?";
+
+    /** Query of getCommentsForCarrier. */
+    public static final String COMMENTS_OF_CARRIER_SQL = """
+            SELECT comment
+            FROM carrier_ratings
+            WHERE carrier_id = ?
+              AND comment IS NOT NULL
+              AND comment <> ''
+            ORDER BY created_at DESC
+            """;
+
     /**
      * Checks if an order already has a rating.
      *
@@ -19,10 +48,8 @@ public class RatingDAO {
      * @return true if rating exists
      */
     public boolean hasRatingForOrder(int orderId) {
-        String sql = "SELECT 1 FROM carrier_ratings WHERE order_id = ?";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(RATING_OF_ORDER_SQL)) {
 
             stmt.setInt(1, orderId);
             ResultSet rs = stmt.executeQuery();
@@ -43,17 +70,8 @@ public class RatingDAO {
     public List<String> getCommentsForCarrier(int carrierId) {
         List<String> comments = new ArrayList<>();
 
-        String sql = """
-        SELECT comment
-        FROM carrier_ratings
-        WHERE carrier_id = ?
-          AND comment IS NOT NULL
-          AND comment <> ''
-        ORDER BY created_at DESC
-    """;
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(COMMENTS_OF_CARRIER_SQL)) {
 
             stmt.setInt(1, carrierId);
             ResultSet rs = stmt.executeQuery();
@@ -97,7 +115,9 @@ public class RatingDAO {
             stmt.setInt(4, rating);
             stmt.setString(5, comment);
 
-            return stmt.executeUpdate() > 0;
+            boolean saved = stmt.executeUpdate() > 0;
+            if (saved) invalidateSummaries();
+            return saved;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -106,60 +126,109 @@ public class RatingDAO {
     }
 
     /**
-     * Gets average rating of a carrier.
+     * Gets the rating summary (average, count, comment count) of every carrier that has ratings.
+     * All carriers are read with one grouped query, and the result is cached
+     * until a new rating is added or ratings.cacheMillis has passed.
      *
-     * @param carrierId carrier ID
-     * @return average rating value
+     * @return summaries by carrier ID (carriers without ratings are missing)
      */
-    public double getAverageRatingForCarrier(int carrierId) {
+    public Map<Integer, RatingSummary> getRatingSummaries() {
+        long generation;
+        synchronized (RatingDAO.class) {
+            long now = System.currentTimeMillis();
+            if (summaryCache != null && now - summaryLoadedAt <= SUMMARY_MAX_AGE_MILLIS) {
+                return summaryCache;
+            }
+            generation = summaryGeneration;
+        }
+
         String sql = """
-            SELECT AVG(rating)
+            SELECT carrier_id,
+                   AVG(rating) AS average,
+                   COUNT(*) AS total,
+                   SUM(CASE WHEN comment IS NOT NULL AND comment <> '' THEN 1 ELSE 0 END) AS comments
             FROM carrier_ratings
-            WHERE carrier_id = ?
+            GROUP BY carrier_id
         """;
 
+        Map<Integer, RatingSummary> summaries = new HashMap<>();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, carrierId);
-            ResultSet rs = stmt.executeQuery();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
 
-            if (rs.next()) {
-                return rs.getDouble(1);
+            while (rs.next()) {
+                int carrierId = rs.getInt("carrier_id");
+                summaries.put(carrierId, new RatingSummary(
+                        carrierId, rs.getDouble("average"), rs.getInt("total"), rs.getInt("comments")));
             }
 
         } catch (SQLException e) {
             e.printStackTrace();
+            return Map.of(); // not cached, the next call tries again
         }
-        return 0.0;
+
+        Map<Integer, RatingSummary> result = Map.copyOf(summaries);
+        synchronized (RatingDAO.class) {
+            // a rating added during the query may be missing from the result, so it is not cached then
+            if (generation == summaryGeneration) {
+                summaryCache = result;
+                summaryLoadedAt = System.currentTimeMillis();
+            }
+        }
+        return result;
     }
 
     /**
-     * Gets total rating count of a carrier.
+     * Gets the rating summaries of all carriers on a database thread.
      *
-     * @param carrierId carrier ID
-     * @return number of ratings
+     * @return future with the summaries by carrier ID
      */
-    public int getRatingCountForCarrier(int carrierId) {
-        String sql = """
-            SELECT COUNT(*)
-            FROM carrier_ratings
-            WHERE carrier_id = ?
-        """;
+    public CompletableFuture<Map<Integer, RatingSummary>> getRatingSummariesAsync() {
+        return DbExecutor.supply(this::getRatingSummaries);
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Checks on a database thread if an order already has a rating.
+     *
+     * @param orderId order ID
+     * @return future with true if rating exists
+     */
+    public CompletableFuture<Boolean> hasRatingForOrderAsync(int orderId) {
+        return DbExecutor.supply(() -> hasRatingForOrder(orderId));
+    }
 
-            stmt.setInt(1, carrierId);
-            ResultSet rs = stmt.executeQuery();
+    /**
+     * Gets all comments for a carrier on a database thread.
+     *
+     * @param carrierId carrier ID
+     * @return future with the comments
+     */
+    public CompletableFuture<List<String>> getCommentsForCarrierAsync(int carrierId) {
+        return DbExecutor.supply(() -> getCommentsForCarrier(carrierId));
+    }
 
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
+    /**
+     * Adds a new rating for a carrier on a database thread.
+     *
+     * @param orderId order ID
+     * @param customerId customer ID
+     * @param carrierId carrier ID
+     * @param rating rating value
+     * @param comment optional comment
+     * @return future with true if rating is saved
+     */
+    public CompletableFuture<Boolean> addRatingAsync(int orderId, int customerId, int carrierId,
+                                                     int rating, String comment) {
+        return DbExecutor.supply(() -> addRating(orderId, customerId, carrierId, rating, comment));
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Drops the cached rating summaries, so the next call reads them again.
+     */
+    public static void invalidateSummaries() {
+        synchronized (RatingDAO.class) {
+            summaryCache = null;
+            summaryGeneration++;
         }
-        return 0;
     }
 }
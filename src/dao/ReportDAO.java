@@ -0,0 +1,129 @@
+package dao;
+
+import database.DatabaseConnection;
+import model.DailySummary;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and updates the order_daily_summary table (one row per order date).
+ * OrderDAO updates the table in the same transaction as the order change,
+ * so the summary always matches the orders.
+ */
+public class ReportDAO {
+
+    /**
+     * Adds to the summary row of the order's date (the row is created if missing).
+     * The date and the total cost are taken from the order row itself.
+     * Parameters: order count, delivered count, cancelled count, revenue factor (0 or 1), order ID.
+     * The %s placeholder takes extra conditions on the order row (starting with AND), or nothing.
+     */
+    private static final String UPSERT_FROM_ORDER_TEMPLATE = """
+            INSERT INTO order_daily_summary (order_date, order_count, delivered_count, cancelled_count, delivered_revenue)
+            SELECT CAST(ordertime AS DATE), ?, ?, ?, ? * COALESCE(totalcost, 0)
+            FROM orderinfo WHERE id = ? AND ordertime IS NOT NULL %s
+            ON DUPLICATE KEY UPDATE
+                order_count = order_count + VALUES(order_count),
+                delivered_count = delivered_count + VALUES(delivered_count),
+                cancelled_count = cancelled_count + VALUES(cancelled_count),
+                delivered_revenue = delivered_revenue + VALUES(delivered_revenue)
+            """;
+
+    /** Upsert for every order. */
+    private static final String UPSERT_FROM_ORDER = UPSERT_FROM_ORDER_TEMPLATE.formatted("");
+
+    /** Upsert that skips cancelled orders: a cancelled order stays counted as cancelled. */
+    private static final String UPSERT_FROM_ACTIVE_ORDER = UPSERT_FROM_ORDER_TEMPLATE.formatted("AND iscancelled = 0");
+
+    /**
+     * Gets the summary of every order date, oldest first.
+     *
+     * @return daily summaries
+     */
+    public List<DailySummary> getDailySummaries() {
+        List<DailySummary> days = new ArrayList<>();
+        String sql = "SELECT order_date, order_count, delivered_count, cancelled_count, delivered_revenue "
+                + "FROM order_daily_summary ORDER BY order_date";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                days.add(new DailySummary(
+                        rs.getDate("order_date").toLocalDate(),
+                        rs.getInt("order_count"),
+                        rs.getInt("delivered_count"),
+                        rs.getInt("cancelled_count"),
+                        rs.getDouble("delivered_revenue")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return days;
+    }
+
+    /**
+     * Counts new orders, using the caller's transaction.
+     *
+     * @param conn connection of the running transaction
+     * @param orderIds IDs of the inserted orders
+     * @throws SQLException if the update fails
+     */
+    void recordPlaced(Connection conn, List<Integer> orderIds) throws SQLException {
+        if (orderIds.isEmpty()) return;
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_FROM_ORDER)) {
+            for (int orderId : orderIds) {
+                setChange(stmt, orderId, 1, 0, 0, 0);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Counts a delivered order and its revenue, using the caller's transaction.
+     *
+     * @param conn connection of the running transaction
+     * @param orderId ID of the delivered order
+     * @throws SQLException if the update fails
+     */
+    void recordDelivered(Connection conn, int orderId) throws SQLException {
+        // a cancelled order stays counted as cancelled, like in the old report loop
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_FROM_ACTIVE_ORDER)) {
+            setChange(stmt, orderId, 0, 1, 0, 1);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Counts a cancelled order, using the caller's transaction.
+     * Only orders that are not delivered can be cancelled, so the revenue does not change.
+     *
+     * @param conn connection of the running transaction
+     * @param orderId ID of the cancelled order
+     * @throws SQLException if the update fails
+     */
+    void recordCancelled(Connection conn, int orderId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_FROM_ORDER)) {
+            setChange(stmt, orderId, 0, 0, 1, 0);
+            stmt.executeUpdate();
+        }
+    }
+
+    // --- HELPERS ---
+
+    private static void setChange(PreparedStatement stmt, int orderId, int placed, int delivered,
+                                  int cancelled, int revenueFactor) throws SQLException {
+        stmt.setInt(1, placed);
+        stmt.setInt(2, delivered);
+        stmt.setInt(3, cancelled);
+        stmt.setInt(4, revenueFactor);
+        stmt.setInt(5, orderId);
+    }
+}
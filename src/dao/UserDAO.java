@@ -1,6 +1,7 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.DbExecutor;
 import model.User;
 import util.PasswordUtil;
 import java.sql.Connection;
@@ -9,6 +10,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Data Access Object for users.
@@ -110,4 +113,129 @@ public class UserDAO {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Finds a user by username.
+     *
+     * @param username username
+     * @return user (with the password hash), or null if not found
+     * @throws SQLException if database error happens
+     */
+    public User findByUsername(String username) throws SQLException {
+        String sql = "SELECT * FROM userinfo WHERE username = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+                return new User(
+                    rs.getInt("id"), rs.getString("username"),
+                    rs.getString("password"), rs.getString("role"),
+                    rs.getString("address")
+                );
+            }
+        }
+    }
+
+    /**
+     * Finds the first user with a role (for example the owner, for messages).
+     * The password is not read.
+     *
+     * @param role user role (customer, carrier, owner)
+     * @return user, or null if there is no user with this role
+     * @throws SQLException if database error happens
+     */
+    public User findFirstByRole(String role) throws SQLException {
+        String sql = "SELECT id, username, role, address FROM userinfo WHERE role = ? ORDER BY id LIMIT 1";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, role);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+                return new User(
+                    rs.getInt("id"), rs.getString("username"),
+                    null, rs.getString("role"),
+                    rs.getString("address")
+                );
+            }
+        }
+    }
+
+    /**
+     * Finds a user by username on a database thread.
+     *
+     * @param username username
+     * @return future with the user (null if not found); completes exceptionally on database error
+     */
+    public CompletableFuture<User> findByUsernameAsync(String username) {
+        return DbExecutor.supply(() -> {
+            try {
+                return findByUsername(username);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Gets all users with a specific role on a database thread.
+     *
+     * @param role user role (customer, carrier, owner)
+     * @return future with the users
+     */
+    public CompletableFuture<List<User>> getUsersByRoleAsync(String role) {
+        return DbExecutor.supply(() -> getUsersByRole(role));
+    }
+
+    /**
+     * Adds a new user on a database thread.
+     *
+     * @param user user to add
+     * @return future with true if the user is added; completes exceptionally on database error
+     */
+    public CompletableFuture<Boolean> addUserAsync(User user) {
+        return DbExecutor.supply(() -> {
+            try {
+                return addUser(user);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Registers a new customer on a database thread.
+     *
+     * @param user customer user
+     * @return future with true if registration is successful; completes exceptionally on database error
+     */
+    public CompletableFuture<Boolean> registerCustomerAsync(User user) {
+        return addUserAsync(user);
+    }
+
+    /**
+     * Deletes a user on a database thread.
+     *
+     * @param id user ID
+     * @return future with true if delete is successful
+     */
+    public CompletableFuture<Boolean> deleteUserAsync(int id) {
+        return DbExecutor.supply(() -> deleteUser(id));
+    }
+
+    /**
+     * Finds the first user with a role on a database thread.
+     *
+     * @param role user role (customer, carrier, owner)
+     * @return future with the user (null if there is none); completes exceptionally on database error
+     */
+    public CompletableFuture<User> findFirstByRoleAsync(String role) {
+        return DbExecutor.supply(() -> {
+            try {
+                return findFirstByRole(role);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,444 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of JDBC connections.
+ * Connections are opened on demand up to the maximum size and are given back
+ * to the pool when the caller closes them.
+ * A background task closes connections that stay idle too long, keeps the
+ * minimum number of connections open, and reports connections that are not
+ * given back (leaks) together with the stack trace of the borrow call.
+ * Each connection keeps its own cache of prepared statements.
+ */
+public class ConnectionPool {
+
+    /** Connections used within this time are not checked again on borrow. */
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /** Timeout for Connection.isValid() in seconds. */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /** How often the background task runs. */
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    /** Idle connections. Most recently returned connections are at the front. */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    /** Connections that are borrowed right now. */
+    private final Set<PooledConnection> leased = new HashSet<>();
+
+    /** Idle + borrowed + currently being opened. */
+    private int totalCount;
+    private boolean closed;
+
+    private final PoolMetrics metrics = new PoolMetrics();
+    private final ScheduledExecutorService housekeeper;
+
+    /**
+     * Creates a connection pool.
+     * No connection is opened here; the background task fills the pool to the minimum size.
+     *
+     * @param url JDBC url
+     * @param user database user
+     * @param password database password
+     * @param minSize number of connections kept open when idle
+     * @param maxSize maximum number of open connections
+     * @param maxWaitMillis how long a caller waits for a free connection
+     * @param idleTimeoutMillis idle connections above the minimum are closed after this time
+     * @param leakThresholdMillis borrowed connections older than this are reported (0 = off)
+     * @param statementCacheSize prepared statements cached per connection (0 = off)
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                          int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool.
+     * The caller must close the returned connection to give it back.
+     *
+     * @return a connection
+     * @throws SQLException if no connection could be opened or the wait timed out
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mustCreate = false;
+
+            lock.lock();
+            try {
+                while (candidate == null && !mustCreate) {
+                    if (closed) throw new SQLException("Connection pool is closed.");
+
+                    candidate = idle.pollFirst();
+                    if (candidate == null && totalCount < maxSize) {
+                        totalCount++;
+                        mustCreate = true;
+                    } else if (candidate == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            metrics.recordTimeout();
+                            throw new SQLTimeoutException("Timed out after " + maxWaitMillis
+                                    + " ms waiting for a database connection (max pool size " + maxSize + ").");
+                        }
+                        available.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection.", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (mustCreate) {
+                candidate = open();
+            } else if (!isUsable(candidate)) {
+                metrics.recordValidationFailure();
+                discard(candidate);
+                continue;
+            }
+
+            return lease(candidate, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool.
+     * Called by the proxy connection when the caller closes it.
+     *
+     * @param pc pool entry of the connection
+     */
+    void release(PooledConnection pc) {
+        boolean reusable = pc.reset();
+
+        lock.lock();
+        try {
+            leased.remove(pc);
+            metrics.recordReturn(pc.leaseNanos());
+            if (reusable && !closed) {
+                idle.addFirst(pc);
+                available.signal();
+                return;
+            }
+            totalCount--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        pc.closeQuietly();
+        metrics.recordDestroyed();
+    }
+
+    /**
+     * Closes all idle connections and stops the background task.
+     * Borrowed connections are closed when they are given back.
+     */
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            totalCount -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PooledConnection pc : toClose) {
+            pc.closeQuietly();
+            metrics.recordDestroyed();
+        }
+    }
+
+    /** @return pool metrics */
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** @return number of borrowed connections */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return leased.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return number of idle connections */
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return number of open connections (idle and borrowed) */
+    public int getTotalCount() {
+        lock.lock();
+        try {
+            return totalCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return maximum pool size */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns a one-line status of the pool.
+     *
+     * @return pool status as text
+     */
+    @Override
+    public String toString() {
+        return "ConnectionPool[active=" + getActiveCount() + ", idle=" + getIdleCount()
+                + ", max=" + maxSize + ", " + metrics + "]";
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Opens a new physical connection. The slot in totalCount is already reserved.
+     *
+     * @return new pool entry
+     * @throws SQLException if the database cannot be reached
+     */
+    private PooledConnection open() throws SQLException {
+        try {
+            Connection raw = DriverManager.getConnection(url, user, password);
+            metrics.recordCreated();
+            return new PooledConnection(this, raw, statementCacheSize, metrics);
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                totalCount--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks an idle connection before it is borrowed.
+     * Connections used very recently are not checked again.
+     *
+     * @param pc idle pool entry
+     * @return true if the connection works
+     */
+    private boolean isUsable(PooledConnection pc) {
+        if (pc.idleNanos() < VALIDATION_BYPASS_NANOS) return true;
+        try {
+            return pc.getRaw().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Registers a connection as borrowed and returns its proxy.
+     *
+     * @param pc pool entry
+     * @param waitNanos time the caller waited
+     * @return proxy connection
+     */
+    private Connection lease(PooledConnection pc, long waitNanos) {
+        Throwable stack = leakThresholdMillis > 0
+                ? new Throwable("Connection borrowed here (thread " + Thread.currentThread().getName() + ")")
+                : null;
+
+        Connection handle;
+        lock.lock();
+        try {
+            handle = pc.lease(stack);
+            leased.add(pc);
+        } finally {
+            lock.unlock();
+        }
+        metrics.recordBorrow(waitNanos);
+        return handle;
+    }
+
+    /**
+     * Closes a connection that is not in the idle or borrowed list anymore.
+     *
+     * @param pc pool entry
+     */
+    private void discard(PooledConnection pc) {
+        lock.lock();
+        try {
+            totalCount--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        pc.closeQuietly();
+        metrics.recordDestroyed();
+    }
+
+    /** Background task: idle eviction, minimum size, and leak detection. */
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Closes idle connections above the minimum size that were unused for too long. */
+    private void evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+
+        lock.lock();
+        try {
+            // the oldest idle connections are at the end of the deque
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalCount > minSize) {
+                PooledConnection pc = it.next();
+                if (pc.idleNanos() < timeoutNanos) break;
+                it.remove();
+                totalCount--;
+                evicted.add(pc);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : evicted) {
+            pc.closeQuietly();
+            metrics.recordDestroyed();
+        }
+    }
+
+    /** Opens connections until the pool has at least the minimum size. */
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || totalCount >= minSize) return;
+                totalCount++;
+            } finally {
+                lock.unlock();
+            }
+
+            PooledConnection pc;
+            try {
+                pc = open();
+            } catch (SQLException e) {
+                // database is not reachable now, try again on the next run
+                return;
+            }
+
+            lock.lock();
+            try {
+                if (closed) {
+                    totalCount--;
+                } else {
+                    idle.addLast(pc);
+                    available.signal();
+                    pc = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (pc != null) {
+                pc.closeQuietly();
+                metrics.recordDestroyed();
+            }
+        }
+    }
+
+    /** Reports borrowed connections that are older than the leak threshold. */
+    private void detectLeaks() {
+        if (leakThresholdMillis <= 0) return;
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        List<PooledConnection> leaks = new ArrayList<>();
+
+        lock.lock();
+        try {
+            for (PooledConnection pc : leased) {
+                if (!pc.isLeakReported() && pc.leaseNanos() > thresholdNanos) {
+                    pc.markLeakReported();
+                    leaks.add(pc);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : leaks) {
+            metrics.recordLeak();
+            System.err.println("Possible connection leak: connection borrowed for "
+                    + TimeUnit.NANOSECONDS.toMillis(pc.leaseNanos()) + " ms and not closed.");
+            if (pc.getLeaseStack() != null) {
+                pc.getLeaseStack().printStackTrace();
+            }
+        }
+    }
+}
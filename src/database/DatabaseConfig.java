@@ -0,0 +1,191 @@
+package database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Reads database settings for the application.
+ * Settings come from database.properties and are grouped by named profiles
+ * (for example "mysql" or "embedded").
+ *
+ * A setting is looked up in this order:
+ * 1. system property "db.&lt;key&gt;" (for example -Ddb.url=...)
+ * 2. environment variable "GREENGROCER_DB_&lt;KEY&gt;" (for example GREENGROCER_DB_POOL_MAXSIZE)
+ * 3. "&lt;profile&gt;.&lt;key&gt;" in the properties file
+ * 4. "&lt;key&gt;" in the properties file
+ * 5. the default value given by the caller
+ *
+ * The active profile is read from "db.profile", GREENGROCER_DB_PROFILE, or "profile" in the file.
+ * An external properties file can be given with -Ddb.config=path; its values override the bundled file.
+ */
+public class DatabaseConfig {
+
+    /** Bundled properties file on the classpath. */
+    private static final String RESOURCE = "/resources/database.properties";
+
+    private static final String SYSTEM_PREFIX = "db.";
+    private static final String ENV_PREFIX = "GREENGROCER_DB_";
+
+    private final Properties properties;
+    private final String profile;
+
+    /**
+     * Creates a configuration from loaded properties.
+     *
+     * @param properties values from the properties file(s)
+     */
+    DatabaseConfig(Properties properties) {
+        this.properties = properties;
+        this.profile = lookup("profile", properties.getProperty("profile", "mysql"), false);
+    }
+
+    /**
+     * Loads the bundled properties file and the optional external file.
+     *
+     * @return loaded configuration
+     */
+    public static DatabaseConfig load() {
+        Properties props = new Properties();
+
+        try (InputStream in = DatabaseConfig.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) props.load(in);
+        } catch (IOException e) {
+            System.err.println("Could not read " + RESOURCE);
+            e.printStackTrace();
+        }
+
+        String external = System.getProperty(SYSTEM_PREFIX + "config", System.getenv(ENV_PREFIX + "CONFIG"));
+        if (external != null && !external.isBlank()) {
+            try (InputStream in = Files.newInputStream(Path.of(external))) {
+                props.load(in);
+            } catch (IOException e) {
+                System.err.println("Could not read database config file: " + external);
+                e.printStackTrace();
+            }
+        }
+
+        return new DatabaseConfig(props);
+    }
+
+    /** @return active profile name */
+    public String getProfile() {
+        return profile;
+    }
+
+    /** @return JDBC url of the active profile */
+    public String getUrl() {
+        return get("url", "jdbc:mysql://localhost:3306/greengrocerdb");
+    }
+
+    /** @return database user of the active profile */
+    public String getUser() {
+        return get("user", "");
+    }
+
+    /** @return database password of the active profile */
+    public String getPassword() {
+        return get("password", "");
+    }
+
+    /**
+     * Gets the SQL script that creates and fills the database on startup.
+     * Only the embedded profile uses this.
+     *
+     * @return script path, or null if no bootstrap is needed
+     */
+    public String getBootstrapScript() {
+        String script = get("bootstrap", "");
+        return script.isBlank() ? null : script;
+    }
+
+    /**
+     * Gets a text setting.
+     *
+     * @param key setting name without prefix
+     * @param defaultValue value used if the setting is missing
+     * @return setting value
+     */
+    public String get(String key, String defaultValue) {
+        return lookup(key, defaultValue, true);
+    }
+
+    /**
+     * Gets a whole number setting.
+     *
+     * @param key setting name without prefix
+     * @param defaultValue value used if the setting is missing or invalid
+     * @return setting value
+     */
+    public int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for database setting '" + key + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a long number setting.
+     *
+     * @param key setting name without prefix
+     * @param defaultValue value used if the setting is missing or invalid
+     * @return setting value
+     */
+    public long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for database setting '" + key + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a true/false setting.
+     *
+     * @param key setting name without prefix
+     * @param defaultValue value used if the setting is missing
+     * @return setting value
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)).trim());
+    }
+
+    /**
+     * Finds a setting in system properties, environment, and the properties file.
+     *
+     * @param key setting name
+     * @param defaultValue value used if nothing is found
+     * @param useProfile true to also check "&lt;profile&gt;.&lt;key&gt;" in the file
+     * @return setting value
+     */
+    private String lookup(String key, String defaultValue, boolean useProfile) {
+        String value = System.getProperty(SYSTEM_PREFIX + key);
+        if (value != null) return value;
+
+        value = System.getenv(ENV_PREFIX + key.toUpperCase(Locale.ROOT).replace('.', '_'));
+        if (value != null) return value;
+
+        if (useProfile) {
+            value = properties.getProperty(profile + "." + key);
+            if (value != null) return value;
+        }
+
+        return properties.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Returns the active profile and url (password is not shown).
+     *
+     * @return config summary
+     */
+    @Override
+    public String toString() {
+        return "DatabaseConfig[profile=" + profile + ", url=" + getUrl() + ", user=" + getUser() + "]";
+    }
+}
@@ -1,32 +1,107 @@
 package database;
 
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * Provides database connection.
- * It is used to connect to the MySQL database.
+ * It is used to connect to the database of the active profile
+ * (MySQL server or the embedded database, see DatabaseConfig).
+ * Connections are borrowed from a shared connection pool,
+ * so closing a connection gives it back to the pool.
  */
 public class DatabaseConnection {
 
 
-    private static final String URL = "jdbc:mysql://localhost:3306/greengrocerdb";
-    private static final String USER = "myuser";
-    private static final String PASSWORD = "1234";
+    /** Settings of the active profile (see database.properties). */
+    private static final DatabaseConfig CONFIG = DatabaseConfig.load();
+
+    /** Shared pool used by all DAO classes. */
+    private static final ConnectionPool POOL = createPool();
 
     /**
-     * Creates and returns a database connection.
+     * Borrows a database connection from the pool.
+     * The caller must close it to give it back.
      *
      * @return database connection
      */
     public static Connection getConnection() {
         try {
-            return DriverManager.getConnection(URL, USER, PASSWORD);
+            return POOL.borrow();
         } catch (SQLException e) {
             System.err.println("Database connection failed!");
             e.printStackTrace();
             return null;
         }
     }
+
+    /**
+     * Gets the shared connection pool.
+     * It can be used to read pool metrics.
+     *
+     * @return connection pool
+     */
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+
+    /**
+     * Gets the active database settings.
+     *
+     * @return database config
+     */
+    public static DatabaseConfig getConfig() {
+        return CONFIG;
+    }
+
+    /**
+     * Stops the database threads and closes all pooled connections.
+     * It is called when the application stops.
+     */
+    public static void shutdown() {
+        DbExecutor.shutdown();
+        POOL.shutdown();
+    }
+
+    /**
+     * Creates the pool for the active profile.
+     * If the profile has a bootstrap script, the database is created from it first.
+     * Then the schema migrations are applied.
+     *
+     * @return connection pool
+     * @throws IllegalStateException if a migration fails; the program must not run on a half migrated schema
+     */
+    private static ConnectionPool createPool() {
+        String script = CONFIG.getBootstrapScript();
+        if (script != null) {
+            try {
+                SqlScriptLoader.run(CONFIG.getUrl(), CONFIG.getUser(), CONFIG.getPassword(), Path.of(script));
+            } catch (Exception e) {
+                System.err.println("Embedded database bootstrap failed!");
+                e.printStackTrace();
+            }
+        }
+
+        ConnectionPool pool = new ConnectionPool(
+                CONFIG.getUrl(), CONFIG.getUser(), CONFIG.getPassword(),
+                CONFIG.getInt("pool.minSize", 2),
+                CONFIG.getInt("pool.maxSize", 10),
+                CONFIG.getLong("pool.maxWaitMillis", 5_000L),
+                CONFIG.getLong("pool.idleTimeoutMillis", 300_000L),
+                CONFIG.getLong("pool.leakThresholdMillis", 60_000L),
+                CONFIG.getInt("pool.statementCacheSize", 64)
+        );
+
+        if (CONFIG.getBoolean("migrate", true)) {
+            try (Connection conn = pool.borrow()) {
+                MigrationRunner.migrate(conn, Migrations.all());
+            } catch (SQLException e) {
+                System.err.println("Database migration failed!");
+                pool.shutdown();
+                throw new IllegalStateException("Database migration failed: " + e.getMessage(), e);
+            }
+        }
+        return pool;
+    }
 }
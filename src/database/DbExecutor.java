@@ -0,0 +1,73 @@
+package database;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs database work off the JavaFX application thread.
+ * All async DAO methods use this executor.
+ *
+ * The threads are normal daemon threads (Java 17 has no virtual threads).
+ * There are as many threads as pooled connections (async.threads, default pool.maxSize),
+ * because more threads would only wait for a free connection.
+ */
+public class DbExecutor {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            DatabaseConnection.getConfig().getInt("async.threads",
+                    DatabaseConnection.getConfig().getInt("pool.maxSize", 10)),
+            r -> {
+                Thread t = new Thread(r, "db-worker-" + THREAD_COUNT.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Runs a query on a database thread.
+     *
+     * @param task work that returns a result
+     * @param <T> result type
+     * @return future with the result (completes exceptionally if the task throws)
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, EXECUTOR);
+    }
+
+    /**
+     * Runs an update on a database thread.
+     *
+     * @param task work without a result
+     * @return future that completes when the work is done
+     */
+    public static CompletableFuture<Void> run(Runnable task) {
+        return CompletableFuture.runAsync(task, EXECUTOR);
+    }
+
+    /**
+     * Gets the executor, for example for thenApplyAsync.
+     *
+     * @return database executor
+     */
+    public static Executor getExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Stops the database threads. Running work may finish for a short time.
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+        try {
+            EXECUTOR.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
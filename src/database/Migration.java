@@ -0,0 +1,210 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * One versioned change of the database schema.
+ * Migrations run once, in version order, and are recorded in the schema_version table.
+ * A migration must be able to run again after it failed half way (see steps).
+ */
+public class Migration {
+
+    /**
+     * Code that changes the schema or moves data.
+     */
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * Applies the change.
+         *
+         * @param conn database connection
+         * @throws SQLException if the change fails
+         */
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+    private final Step step;
+
+    /**
+     * Creates a migration.
+     *
+     * @param version schema version after this migration
+     * @param description short description
+     * @param step code that applies the change
+     */
+    public Migration(int version, String description, Step step) {
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+
+    /**
+     * Creates a migration from steps that check the schema before they change it.
+     * MySQL commits every DDL statement at once, so a failed migration can not be rolled back;
+     * with checked steps it can run again and skips what was done the first time.
+     *
+     * @param version schema version after this migration
+     * @param description short description
+     * @param steps steps in run order (see ifMissingTable, ifMissingColumn, ifMissingIndex, ifIndex)
+     * @return migration
+     */
+    public static Migration steps(int version, String description, Step... steps) {
+        return new Migration(version, description, conn -> {
+            for (Step step : steps) {
+                step.apply(conn);
+            }
+        });
+    }
+
+    /**
+     * Runs a statement if a table does not exist yet.
+     *
+     * @param table table name
+     * @param sql statement that creates the table
+     * @return step
+     */
+    public static Step ifMissingTable(String table, String sql) {
+        return conn -> {
+            if (!hasTable(conn, table)) execute(conn, sql);
+        };
+    }
+
+    /**
+     * Runs a statement if a column does not exist yet.
+     *
+     * @param table table name
+     * @param column column name
+     * @param sql statement that adds the column
+     * @return step
+     */
+    public static Step ifMissingColumn(String table, String column, String sql) {
+        return conn -> {
+            if (!hasColumn(conn, table, column)) execute(conn, sql);
+        };
+    }
+
+    /**
+     * Runs a statement if an index does not exist yet.
+     *
+     * @param table table name
+     * @param index index name
+     * @param sql statement that creates the index
+     * @return step
+     */
+    public static Step ifMissingIndex(String table, String index, String sql) {
+        return conn -> {
+            if (!hasIndex(conn, table, index)) execute(conn, sql);
+        };
+    }
+
+    /**
+     * Runs a statement if an index exists, for example to drop it.
+     *
+     * @param table table name
+     * @param index index name
+     * @param sql statement that changes or drops the index
+     * @return step
+     */
+    public static Step ifIndex(String table, String index, String sql) {
+        return conn -> {
+            if (hasIndex(conn, table, index)) execute(conn, sql);
+        };
+    }
+
+    /**
+     * Runs a statement every time. Only for statements that can run twice,
+     * for example an insert with NOT EXISTS.
+     *
+     * @param sql SQL statement
+     * @return step
+     */
+    public static Step always(String sql) {
+        return conn -> execute(conn, sql);
+    }
+
+    /**
+     * Checks if a table exists.
+     *
+     * @param conn database connection
+     * @param table table name
+     * @return true if the table exists
+     * @throws SQLException if the metadata can not be read
+     */
+    public static boolean hasTable(Connection conn, String table) throws SQLException {
+        // the name is a pattern where '_' matches any character, so the names are compared again
+        try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                if (table.equalsIgnoreCase(rs.getString("TABLE_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a column exists.
+     *
+     * @param conn database connection
+     * @param table table name
+     * @param column column name
+     * @return true if the column exists
+     * @throws SQLException if the metadata can not be read
+     */
+    public static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, table, column)) {
+            while (rs.next()) {
+                if (table.equalsIgnoreCase(rs.getString("TABLE_NAME"))
+                        && column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if an index exists.
+     *
+     * @param conn database connection
+     * @param table table name
+     * @param index index name
+     * @return true if the table has the index
+     * @throws SQLException if the metadata can not be read
+     */
+    public static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    /** @return schema version after this migration */
+    public int getVersion() {
+        return version;
+    }
+
+    /** @return short description */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Applies the change.
+     *
+     * @param conn database connection
+     * @throws SQLException if the change fails
+     */
+    void apply(Connection conn) throws SQLException {
+        step.apply(conn);
+    }
+}
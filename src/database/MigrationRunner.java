@@ -0,0 +1,158 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Applies schema migrations when the application starts.
+ * The current version is stored in the schema_version table,
+ * so every migration runs only once per database.
+ *
+ * On MySQL the runner holds the named lock schema_migrate, so two copies of the program
+ * that start at the same time do not migrate the same database twice.
+ */
+public class MigrationRunner {
+
+    private static final String CREATE_VERSION_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INT NOT NULL PRIMARY KEY,
+                description VARCHAR(200) NOT NULL,
+                installed_at TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP
+            )
+            """;
+
+    /** Name of the MySQL lock held while migrating. */
+    private static final String LOCK_NAME = "schema_migrate";
+
+    /** Longest wait for another copy that is migrating. */
+    private static final int LOCK_TIMEOUT_SECONDS = 120;
+
+    /**
+     * Runs all migrations that are newer than the database version.
+     *
+     * @param conn database connection
+     * @param migrations known migrations
+     * @return number of applied migrations
+     * @throws SQLException if a migration fails (later migrations are not run)
+     *                      or the migration lock can not be taken
+     */
+    public static int migrate(Connection conn, List<Migration> migrations) throws SQLException {
+        boolean lock = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+        if (lock) lock(conn);
+        try {
+            return migrateLocked(conn, migrations);
+        } finally {
+            if (lock) unlock(conn);
+        }
+    }
+
+    /**
+     * Runs the migrations; the caller holds the migration lock.
+     */
+    private static int migrateLocked(Connection conn, List<Migration> migrations) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_VERSION_TABLE);
+        }
+
+        // read after the lock: another copy may have migrated while this one waited
+        int current = getCurrentVersion(conn);
+        int applied = 0;
+
+        List<Migration> ordered = migrations.stream()
+                .sorted(Comparator.comparingInt(Migration::getVersion))
+                .toList();
+
+        for (Migration m : ordered) {
+            if (m.getVersion() <= current) continue;
+
+            long start = System.nanoTime();
+            boolean autoCommit = conn.getAutoCommit();
+            try {
+                conn.setAutoCommit(false);
+                m.apply(conn);
+                recordVersion(conn, m);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Migration V" + m.getVersion() + " (" + m.getDescription() + ") failed: "
+                        + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+
+            applied++;
+            System.out.printf("Applied migration V%d - %s (%d ms)%n",
+                    m.getVersion(), m.getDescription(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return applied;
+    }
+
+    /**
+     * Reads the highest applied version.
+     *
+     * @param conn database connection
+     * @return schema version (0 if nothing was applied)
+     * @throws SQLException if the query fails
+     */
+    public static int getCurrentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Takes the MySQL migration lock, waiting for another copy that migrates.
+     *
+     * @param conn database connection
+     * @throws SQLException if the lock is not free within LOCK_TIMEOUT_SECONDS
+     */
+    private static void lock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Migration lock " + LOCK_NAME + " could not be taken in "
+                            + LOCK_TIMEOUT_SECONDS + " s; is another copy migrating?");
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives the MySQL migration lock back.
+     *
+     * @param conn database connection
+     */
+    private static void unlock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            e.printStackTrace(); // the lock ends with the session anyway
+        }
+    }
+
+    /**
+     * Saves a migration as applied.
+     *
+     * @param conn database connection
+     * @param m applied migration
+     * @throws SQLException if the insert fails
+     */
+    private static void recordVersion(Connection conn, Migration m) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            stmt.setInt(1, m.getVersion());
+            stmt.setString(2, m.getDescription());
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package database;
+
+import util.ImageUtil;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * List of all schema migrations of the application.
+ * New migrations are added at the end with the next version number.
+ * Old migrations must never change what they do, because they may already be applied.
+ * Every step checks the schema first, so a migration that failed half way (MySQL commits
+ * DDL at once) can run again.
+ */
+public class Migrations {
+
+    /**
+     * Gets all migrations in version order.
+     *
+     * @return migrations
+     */
+    public static List<Migration> all() {
+        return List.of(
+                Migration.steps(1, "productinfo.updated_at for catalog delta refresh",
+                        Migration.ifMissingColumn("productinfo", "updated_at",
+                                "ALTER TABLE productinfo ADD COLUMN updated_at TIMESTAMP(3) NOT NULL "
+                                        + "DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)"),
+                        Migration.ifMissingIndex("productinfo", "idx_productinfo_updated_at",
+                                "CREATE INDEX idx_productinfo_updated_at ON productinfo (updated_at)")),
+                new Migration(2, "productinfo.image_hash for image revalidation", Migrations::addImageHash),
+                new Migration(3, "productinfo.thumbnail for product cards", Migrations::addThumbnail),
+                new Migration(4, "order_items for order lines", Migrations::addOrderItems),
+                Migration.steps(5, "stock_ledger_state for the stock ledger journal",
+                        Migration.ifMissingTable("stock_ledger_state",
+                                "CREATE TABLE stock_ledger_state (id INT NOT NULL, last_seq BIGINT NOT NULL, PRIMARY KEY (id))"),
+                        Migration.always("INSERT INTO stock_ledger_state (id, last_seq) SELECT 1, 0 FROM DUAL "
+                                + "WHERE NOT EXISTS (SELECT 1 FROM stock_ledger_state WHERE id = 1)")),
+                Migration.steps(6, "orderinfo indexes for keyset paging",
+                        Migration.ifMissingIndex("orderinfo", "idx_orderinfo_ordertime",
+                                "CREATE INDEX idx_orderinfo_ordertime ON orderinfo (ordertime, id)"),
+                        Migration.ifMissingIndex("orderinfo", "idx_orderinfo_user_ordertime",
+                                "CREATE INDEX idx_orderinfo_user_ordertime ON orderinfo (user_id, ordertime, id)"),
+                        Migration.ifMissingIndex("orderinfo", "idx_orderinfo_carrier_delivery",
+                                "CREATE INDEX idx_orderinfo_carrier_delivery ON orderinfo (carrier_id, isdelivered, deliverytime, id)")),
+                Migration.steps(7, "indexes for message, rating, coupon and open order queries",
+                        Migration.ifMissingIndex("orderinfo", "idx_orderinfo_open_delivery",
+                                "CREATE INDEX idx_orderinfo_open_delivery ON orderinfo (isdelivered, iscancelled, carrier_id, deliverytime, id)"),
+                        Migration.ifMissingIndex("messages", "idx_messages_pair_sent",
+                                "CREATE INDEX idx_messages_pair_sent ON messages (sender_id, receiver_id, sent_at)"),
+                        Migration.ifMissingIndex("carrier_ratings", "idx_carrier_ratings_carrier_created",
+                                "CREATE INDEX idx_carrier_ratings_carrier_created ON carrier_ratings (carrier_id, created_at)"),
+                        Migration.ifMissingIndex("carrier_ratings", "idx_carrier_ratings_carrier_rating",
+                                "CREATE INDEX idx_carrier_ratings_carrier_rating ON carrier_ratings (carrier_id, rating)"),
+                        Migration.ifMissingIndex("couponinfo", "idx_couponinfo_user_expiration",
+                                "CREATE INDEX idx_couponinfo_user_expiration ON couponinfo (user_id, expiration_date)")),
+                Migration.steps(8, "order_daily_summary for owner reports",
+                        Migration.ifMissingTable("order_daily_summary",
+                                "CREATE TABLE order_daily_summary ("
+                                        + "order_date DATE NOT NULL, "
+                                        + "order_count INT NOT NULL DEFAULT 0, "
+                                        + "delivered_count INT NOT NULL DEFAULT 0, "
+                                        + "cancelled_count INT NOT NULL DEFAULT 0, "
+                                        + "delivered_revenue DOUBLE NOT NULL DEFAULT 0, "
+                                        + "PRIMARY KEY (order_date))"),
+                        // skipped if an earlier, failed run filled the table already
+                        Migration.always("INSERT INTO order_daily_summary "
+                                + "(order_date, order_count, delivered_count, cancelled_count, delivered_revenue) "
+                                + "SELECT CAST(ordertime AS DATE), COUNT(*), "
+                                + "SUM(CASE WHEN isdelivered = 1 AND iscancelled = 0 THEN 1 ELSE 0 END), "
+                                + "SUM(CASE WHEN iscancelled = 1 THEN 1 ELSE 0 END), "
+                                + "SUM(CASE WHEN isdelivered = 1 AND iscancelled = 0 THEN COALESCE(totalcost, 0) ELSE 0 END) "
+                                + "FROM orderinfo WHERE ordertime IS NOT NULL "
+                                + "AND NOT EXISTS (SELECT 1 FROM order_daily_summary) "
+                                + "GROUP BY CAST(ordertime AS DATE)")),
+                new Migration(9, "order_invoices for binary invoice PDFs", Migrations::moveInvoices),
+                Migration.steps(10, "messages index for incremental conversation reads",
+                        Migration.ifMissingIndex("messages", "idx_messages_pair_id",
+                                "CREATE INDEX idx_messages_pair_id ON messages (sender_id, receiver_id, id)"),
+                        Migration.ifIndex("messages", "idx_messages_pair_sent",
+                                "DROP INDEX idx_messages_pair_sent ON messages"))
+        );
+    }
+
+    /**
+     * V2: adds the image hash column and fills it for existing images.
+     * The hash is computed in Java, because MySQL and H2 have different hash functions.
+     *
+     * @param conn database connection
+     * @throws SQLException if the change fails
+     */
+    private static void addImageHash(Connection conn) throws SQLException {
+        Migration.ifMissingColumn("productinfo", "image_hash",
+                "ALTER TABLE productinfo ADD COLUMN image_hash CHAR(64) NULL").apply(conn);
+
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, image FROM productinfo WHERE image IS NOT NULL");
+             PreparedStatement update = conn.prepareStatement(
+                     // keep updated_at, the image itself did not change
+                     "UPDATE productinfo SET image_hash = ?, updated_at = updated_at WHERE id = ?")) {
+            while (rs.next()) {
+                update.setString(1, ImageUtil.hash(rs.getBytes("image")));
+                update.setInt(2, rs.getInt("id"));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
+    /**
+     * V3: adds the thumbnail column and creates thumbnails for existing images.
+     *
+     * @param conn database connection
+     * @throws SQLException if the change fails
+     */
+    private static void addThumbnail(Connection conn) throws SQLException {
+        Migration.ifMissingColumn("productinfo", "thumbnail",
+                "ALTER TABLE productinfo ADD COLUMN thumbnail MEDIUMBLOB NULL").apply(conn);
+
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, image FROM productinfo WHERE image IS NOT NULL");
+             PreparedStatement update = conn.prepareStatement(
+                     "UPDATE productinfo SET thumbnail = ?, updated_at = updated_at WHERE id = ?")) {
+            while (rs.next()) {
+                update.setBytes(1, ImageUtil.createThumbnail(rs.getBytes("image"), ImageUtil.THUMBNAIL_SIZE));
+                update.setInt(2, rs.getInt("id"));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
+    /** Old order line written by the cart: "Apple x 2.0". */
+    private static final Pattern CART_LINE = Pattern.compile("^(.+?)\\s+x\\s+([0-9]+(?:[.,][0-9]+)?)$");
+
+    /** Old order line from the sample data: "2kg Elma". */
+    private static final Pattern KG_LINE = Pattern.compile("^([0-9]+(?:[.,][0-9]+)?)\\s*kg\\s+(.+)$");
+
+    /**
+     * V4: adds the order_items table and fills it from the products text of existing orders.
+     * Old lines only have a name and a quantity, so the product is found by name
+     * (product_id stays NULL if no product has that name) and unit_price stays NULL.
+     *
+     * @param conn database connection
+     * @throws SQLException if the change fails
+     */
+    private static void addOrderItems(Connection conn) throws SQLException {
+        Migration.ifMissingTable("order_items", """
+                CREATE TABLE order_items (
+                  id INT NOT NULL AUTO_INCREMENT,
+                  order_id INT NOT NULL,
+                  product_id INT NULL,
+                  product_name VARCHAR(100) NOT NULL,
+                  quantity DOUBLE NOT NULL,
+                  unit_price DOUBLE NULL,
+                  PRIMARY KEY (id),
+                  CONSTRAINT fk_order_items_order FOREIGN KEY (order_id) REFERENCES orderinfo (id) ON DELETE CASCADE,
+                  CONSTRAINT fk_order_items_product FOREIGN KEY (product_id) REFERENCES productinfo (id) ON DELETE SET NULL
+                )""").apply(conn);
+        Migration.ifMissingIndex("order_items", "idx_order_items_order",
+                "CREATE INDEX idx_order_items_order ON order_items (order_id)").apply(conn);
+        Migration.ifMissingIndex("order_items", "idx_order_items_product",
+                "CREATE INDEX idx_order_items_product ON order_items (product_id)").apply(conn);
+
+        Map<String, Integer> productIds = new HashMap<>();
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, name FROM productinfo")) {
+            while (rs.next()) {
+                productIds.putIfAbsent(nameKey(rs.getString("name")), rs.getInt("id"));
+            }
+        }
+
+        try (Statement select = conn.createStatement();
+             // orders that got their lines in an earlier, failed run are skipped
+             ResultSet rs = select.executeQuery("SELECT id, products FROM orderinfo WHERE products IS NOT NULL "
+                     + "AND id NOT IN (SELECT order_id FROM order_items)");
+             PreparedStatement insert = conn.prepareStatement(
+                     "INSERT INTO order_items (order_id, product_id, product_name, quantity) VALUES (?, ?, ?, ?)")) {
+            while (rs.next()) {
+                int orderId = rs.getInt("id");
+                for (String line : rs.getString("products").split("[;,]")) {
+                    line = line.trim();
+                    String name;
+                    String quantity;
+                    Matcher m;
+                    if ((m = CART_LINE.matcher(line)).matches()) {
+                        name = m.group(1).trim();
+                        quantity = m.group(2);
+                    } else if ((m = KG_LINE.matcher(line)).matches()) {
+                        name = m.group(2).trim();
+                        quantity = m.group(1);
+                    } else {
+                        if (!line.isEmpty()) System.err.println("Order " + orderId + ": skipped line '" + line + "'");
+                        continue;
+                    }
+
+                    Integer productId = productIds.get(nameKey(name));
+                    insert.setInt(1, orderId);
+                    if (productId != null) insert.setInt(2, productId);
+                    else insert.setNull(2, Types.INTEGER);
+                    insert.setString(3, name);
+                    insert.setDouble(4, Double.parseDouble(quantity.replace(",", ".")));
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Gets the key used to match old order lines with products.
+     *
+     * @param name product name
+     * @return trimmed lower case name
+     */
+    private static String nameKey(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * V9: moves the invoices from orderinfo.invoice_content (Base64 text) to the order_invoices table
+     * (raw PDF bytes with a SHA-256 hash), then drops the old column.
+     * The invoices are moved one by one, so only one invoice is in memory at a time.
+     *
+     * @param conn database connection
+     * @throws SQLException if the change fails
+     */
+    private static void moveInvoices(Connection conn) throws SQLException {
+        Migration.ifMissingTable("order_invoices", "CREATE TABLE order_invoices ("
+                + "order_id INT NOT NULL, "
+                + "content_hash CHAR(64) NOT NULL, "
+                + "size INT NOT NULL, "
+                + "pdf LONGBLOB NOT NULL, "
+                + "created_at TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP, "
+                + "PRIMARY KEY (order_id), "
+                + "CONSTRAINT fk_order_invoices_order FOREIGN KEY (order_id) REFERENCES orderinfo (id) ON DELETE CASCADE)")
+                .apply(conn);
+        if (!Migration.hasColumn(conn, "orderinfo", "invoice_content")) return; // moved in an earlier run
+
+        // the IDs first, then one invoice per query: the driver may read a whole result set into memory;
+        // invoices moved by an earlier, failed run are skipped
+        List<Integer> ids = new ArrayList<>();
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id FROM orderinfo WHERE invoice_content IS NOT NULL "
+                     + "AND id NOT IN (SELECT order_id FROM order_invoices)")) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+
+        int moved = 0, skipped = 0;
+        try (PreparedStatement select = conn.prepareStatement("SELECT invoice_content FROM orderinfo WHERE id = ?");
+             PreparedStatement insert = conn.prepareStatement(
+                     "INSERT INTO order_invoices (order_id, content_hash, size, pdf) VALUES (?, ?, ?, ?)")) {
+            for (int id : ids) {
+                byte[] pdf;
+                select.setInt(1, id);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next() || rs.getString(1) == null || rs.getString(1).isEmpty()) continue;
+                    pdf = Base64.getMimeDecoder().decode(rs.getString(1));
+                } catch (IllegalArgumentException e) {
+                    skipped++; // not valid Base64; the invoice is built again when it is needed
+                    continue;
+                }
+                if (pdf.length == 0) continue;
+                insert.setInt(1, id);
+                insert.setString(2, ImageUtil.hash(pdf));
+                insert.setInt(3, pdf.length);
+                insert.setBinaryStream(4, new ByteArrayInputStream(pdf), pdf.length);
+                insert.executeUpdate();
+                moved++;
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE orderinfo DROP COLUMN invoice_content");
+        }
+        if (moved > 0 || skipped > 0) {
+            System.out.printf("Moved %d invoices to order_invoices (%d not readable)%n", moved, skipped);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package database;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects usage numbers of the connection pool.
+ * It counts borrows, created and closed connections, and how long callers wait.
+ * It also counts prepared statement cache hits and misses per SQL text.
+ * All counters are thread safe.
+ */
+public class PoolMetrics {
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder validationFailureCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalLeaseNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+
+    /** Hits and misses for each SQL text: index 0 = hits, index 1 = misses. */
+    private final Map<String, LongAdder[]> statementCountsBySql = new ConcurrentHashMap<>();
+
+    /**
+     * Records one successful borrow.
+     *
+     * @param waitNanos time the caller waited for the connection
+     */
+    void recordBorrow(long waitNanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Records that a connection was given back.
+     *
+     * @param leaseNanos time the connection was used by the caller
+     */
+    void recordReturn(long leaseNanos) {
+        totalLeaseNanos.add(leaseNanos);
+    }
+
+    /** Records that a new physical connection was opened. */
+    void recordCreated() {
+        createdCount.increment();
+    }
+
+    /** Records that a physical connection was closed. */
+    void recordDestroyed() {
+        destroyedCount.increment();
+    }
+
+    /** Records that a caller gave up waiting for a connection. */
+    void recordTimeout() {
+        timeoutCount.increment();
+    }
+
+    /** Records that an idle connection failed the check before borrow. */
+    void recordValidationFailure() {
+        validationFailureCount.increment();
+    }
+
+    /** Records that a connection was kept longer than the leak threshold. */
+    void recordLeak() {
+        leakCount.increment();
+    }
+
+    /**
+     * Records that a cached prepared statement was reused.
+     *
+     * @param sql SQL text of the statement
+     */
+    void recordStatementHit(String sql) {
+        statementHits.increment();
+        countsFor(sql)[0].increment();
+    }
+
+    /**
+     * Records that a statement had to be prepared.
+     *
+     * @param sql SQL text of the statement
+     */
+    void recordStatementMiss(String sql) {
+        statementMisses.increment();
+        countsFor(sql)[1].increment();
+    }
+
+    /** Records that a cached statement was closed because the cache was full. */
+    void recordStatementEviction() {
+        statementEvictions.increment();
+    }
+
+    /** @return number of successful borrows */
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /** @return number of opened physical connections */
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    /** @return number of closed physical connections */
+    public long getDestroyedCount() {
+        return destroyedCount.sum();
+    }
+
+    /** @return number of borrow calls that timed out */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /** @return number of connections that failed validation */
+    public long getValidationFailureCount() {
+        return validationFailureCount.sum();
+    }
+
+    /** @return number of detected connection leaks */
+    public long getLeakCount() {
+        return leakCount.sum();
+    }
+
+    /** @return average wait time for a borrow in milliseconds */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.sum();
+        return borrows == 0 ? 0.0 : totalWaitNanos.sum() / (double) borrows / 1_000_000.0;
+    }
+
+    /** @return longest wait time for a borrow in milliseconds */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /** @return total time connections were borrowed, in milliseconds */
+    public long getTotalLeaseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalLeaseNanos.sum());
+    }
+
+    /** @return number of reused prepared statements */
+    public long getStatementHitCount() {
+        return statementHits.sum();
+    }
+
+    /** @return number of newly prepared statements */
+    public long getStatementMissCount() {
+        return statementMisses.sum();
+    }
+
+    /** @return number of statements closed because a cache was full */
+    public long getStatementEvictionCount() {
+        return statementEvictions.sum();
+    }
+
+    /** @return share of statements that were reused (0.0 - 1.0) */
+    public double getStatementHitRatio() {
+        long hits = statementHits.sum();
+        long total = hits + statementMisses.sum();
+        return total == 0 ? 0.0 : hits / (double) total;
+    }
+
+    /**
+     * Gets hits and misses for every SQL text seen so far.
+     * The value array is {hits, misses}.
+     *
+     * @return counts by SQL text, sorted by SQL
+     */
+    public Map<String, long[]> getStatementCountsBySql() {
+        Map<String, long[]> snapshot = new TreeMap<>();
+        statementCountsBySql.forEach((sql, counts) ->
+                snapshot.put(sql, new long[]{counts[0].sum(), counts[1].sum()}));
+        return snapshot;
+    }
+
+    /**
+     * Returns a one-line summary of the counters.
+     *
+     * @return metrics as text
+     */
+    @Override
+    public String toString() {
+        return String.format(
+                "borrows=%d, created=%d, destroyed=%d, timeouts=%d, validationFailures=%d, leaks=%d, avgWait=%.3fms, maxWait=%.3fms, "
+                        + "stmtHits=%d, stmtMisses=%d, stmtHitRatio=%.2f",
+                getBorrowCount(), getCreatedCount(), getDestroyedCount(), getTimeoutCount(),
+                getValidationFailureCount(), getLeakCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                getStatementHitCount(), getStatementMissCount(), getStatementHitRatio()
+        );
+    }
+
+    /**
+     * Gets the hit/miss counters of one SQL text.
+     *
+     * @param sql SQL text
+     * @return {hits, misses} counters
+     */
+    private LongAdder[] countsFor(String sql) {
+        return statementCountsBySql.computeIfAbsent(sql, k -> new LongAdder[]{new LongAdder(), new LongAdder()});
+    }
+}
@@ -0,0 +1,187 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * One physical connection that belongs to the connection pool.
+ * Callers never see this object directly. They get a proxy Connection,
+ * and closing the proxy gives the physical connection back to the pool.
+ * prepareStatement(sql) calls go through a per-connection statement cache.
+ */
+class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection raw;
+    private final StatementCache statementCache;
+
+    private long lastReturnedAt;
+    private long leasedAt;
+    private Throwable leaseStack;
+    private boolean leakReported;
+    private volatile boolean broken;
+
+    /**
+     * Creates a pool entry for a physical connection.
+     *
+     * @param pool pool that owns the connection
+     * @param raw physical JDBC connection
+     * @param statementCacheSize number of cached statements (0 = no cache)
+     * @param metrics pool metrics for statement cache counters
+     */
+    PooledConnection(ConnectionPool pool, Connection raw, int statementCacheSize, PoolMetrics metrics) {
+        this.pool = pool;
+        this.raw = raw;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize, metrics) : null;
+        this.lastReturnedAt = System.nanoTime();
+    }
+
+    /** @return the physical JDBC connection */
+    Connection getRaw() {
+        return raw;
+    }
+
+    /**
+     * Marks the connection as borrowed and creates a new proxy for the caller.
+     *
+     * @param stack where the connection was borrowed (null if leak detection is off)
+     * @return proxy connection for the caller
+     */
+    Connection lease(Throwable stack) {
+        leasedAt = System.nanoTime();
+        leaseStack = stack;
+        leakReported = false;
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle()
+        );
+    }
+
+    /** @return nanoseconds since the connection was borrowed */
+    long leaseNanos() {
+        return System.nanoTime() - leasedAt;
+    }
+
+    /** @return nanoseconds since the connection was given back */
+    long idleNanos() {
+        return System.nanoTime() - lastReturnedAt;
+    }
+
+    /** @return stack trace of the borrow call, or null */
+    Throwable getLeaseStack() {
+        return leaseStack;
+    }
+
+    /** @return true if this leak was already reported */
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    /** Remembers that the leak was reported, so it is logged only once. */
+    void markLeakReported() {
+        leakReported = true;
+    }
+
+    /**
+     * Prepares the connection to be used again.
+     * Open transactions are rolled back and auto commit is turned on.
+     *
+     * @return true if the connection can go back to the idle list
+     */
+    boolean reset() {
+        if (broken) return false;
+        try {
+            if (raw.isClosed()) return false;
+            if (statementCache != null) statementCache.releaseAll();
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            raw.clearWarnings();
+            lastReturnedAt = System.nanoTime();
+            leaseStack = null;
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Closes the physical connection and ignores errors. */
+    void closeQuietly() {
+        if (statementCache != null) statementCache.closeAll();
+        try {
+            raw.close();
+        } catch (SQLException ignored) {
+            // connection is thrown away anyway
+        }
+    }
+
+    /**
+     * Proxy handler that is given to one caller.
+     * After close() the handle cannot be used anymore.
+     */
+    private final class Handle implements InvocationHandler {
+
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + raw + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection was already returned to the pool.");
+            }
+
+            try {
+                if (statementCache != null && isPlainPrepare(method)) {
+                    return statementCache.prepare(raw, (Connection) proxy, (String) args[0]);
+                }
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                // SQL state class 08 means the connection itself failed
+                if (cause instanceof SQLException sqlEx
+                        && sqlEx.getSQLState() != null
+                        && sqlEx.getSQLState().startsWith("08")) {
+                    broken = true;
+                }
+                throw cause;
+            }
+        }
+
+        /**
+         * Checks if the call is prepareStatement(String) with no other options.
+         *
+         * @param method called method
+         * @return true if the statement can be cached
+         */
+        private boolean isPlainPrepare(Method method) {
+            return method.getName().equals("prepareStatement")
+                    && method.getParameterCount() == 1
+                    && method.getReturnType() == PreparedStatement.class;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package database;
+
+import dao.CouponDAO;
+import dao.MessageDAO;
+import dao.OrderDAO;
+import dao.RatingDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks with EXPLAIN that the hot DAO queries can use an index.
+ * Run it by hand (or in a build step) against the configured database:
+ *   java database.QueryPlanCheck
+ * It exits with code 1 if a query has to read a whole table.
+ *
+ * - MySQL: a table with access type ALL and no possible key fails.
+ *   ALL with a possible key is only a warning: on small tables MySQL may still prefer a scan.
+ * - H2 (embedded profile): a table read with tableScan fails.
+ *
+ * The SQL text comes from the DAOs (their *_SQL constants and page builders), so the check
+ * always EXPLAINs the queries that really run. When a DAO gets a new hot query, move its SQL
+ * into such a constant and add it here, together with its index migration.
+ */
+public class QueryPlanCheck {
+
+    /**
+     * One checked query with sample parameter values.
+     */
+    private static class Query {
+        final String name;
+        final String sql;
+        final Object[] params;
+
+        Query(String name, String sql, Object... params) {
+            this.name = name;
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    /**
+     * Gets the checked queries.
+     *
+     * @return queries of OrderDAO, MessageDAO, RatingDAO and CouponDAO
+     */
+    private static List<Query> queries() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Query> q = new ArrayList<>();
+
+        // OrderDAO (pages are checked with the keyset condition of a second page)
+        q.add(new Query("order with details", OrderDAO.ORDER_WITH_DETAILS_SQL, 1));
+        q.add(new Query("all orders page", OrderDAO.allOrdersPageSql(true), now, now, 1000, 100));
+        q.add(new Query("unassigned orders page", OrderDAO.unassignedOrdersPageSql(true), now, now, 1, 100));
+        q.add(new Query("assigned orders of carrier", OrderDAO.ASSIGNED_ORDERS_SQL, 2));
+        q.add(new Query("delivered orders of carrier page", OrderDAO.deliveredOrdersOfCarrierPageSql(true),
+                2, now, now, 1000, 100));
+        q.add(new Query("delivered orders in range page", OrderDAO.deliveredOrdersBetweenPageSql(true),
+                now, now, now, now, 1, 200));
+        q.add(new Query("orders of user page", OrderDAO.ordersOfUserPageSql(true), 1, now, now, 1000, 100));
+        q.add(new Query("order items", OrderDAO.ORDER_ITEMS_SQL, 1));
+        q.add(new Query("order stock lines", OrderDAO.ORDER_STOCK_LINES_SQL, 1));
+
+        // MessageDAO
+        q.add(new Query("new messages", MessageDAO.NEW_MESSAGES_SQL, 1, 3, 0, 3, 1, 0));
+        q.add(new Query("older messages page", MessageDAO.OLDER_MESSAGES_SQL, 1, 3, 1000, 50, 3, 1, 1000, 50, 50));
+
+        // RatingDAO
+        q.add(new Query("rating of order", RatingDAO.RATING_OF_ORDER_SQL, 1));
+        q.add(new Query("comments of carrier", RatingDAO.COMMENTS_OF_CARRIER_SQL, 2));
+
+        // CouponDAO
+        q.add(new Query("coupons of user", CouponDAO.COUPONS_OF_USER_SQL, 1));
+        q.add(new Query("active coupon", CouponDAO.ACTIVE_COUPON_SQL, "X"));
+        q.add(new Query("valid coupon", CouponDAO.VALID_COUPON_SQL, "X", 100.0, 1));
+        return q;
+    }
+
+    /**
+     * Runs the check and prints one line per query.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        int failures;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean mysql = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+            failures = 0;
+            for (Query query : queries()) {
+                String problem = mysql ? checkMySql(conn, query) : checkH2(conn, query);
+                if (problem == null) {
+                    System.out.printf("OK    %s%n", query.name);
+                } else if (problem.startsWith("warning: ")) {
+                    System.out.printf("WARN  %s - %s%n", query.name, problem.substring(9));
+                } else {
+                    System.out.printf("SCAN  %s - %s%n", query.name, problem);
+                    failures++;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            failures = -1;
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+
+        if (failures != 0) {
+            System.err.println(failures < 0 ? "Query plan check could not run." : failures + " queries read a whole table.");
+            System.exit(1);
+        }
+        System.out.println("All queries can use an index.");
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Checks the MySQL plan: every table must be read with an index, or at least have one it could use.
+     *
+     * @param conn connection
+     * @param query checked query
+     * @return null if fine, "warning: ..." for a scan with a possible key, otherwise the problem
+     * @throws SQLException if EXPLAIN fails
+     */
+    private static String checkMySql(Connection conn, Query query) throws SQLException {
+        String warning = null;
+        try (PreparedStatement stmt = explain(conn, query); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String table = rs.getString("table");
+                if (!"ALL".equals(rs.getString("type"))) continue;
+                if (rs.getString("possible_keys") == null) {
+                    return "full scan of " + table + ", no usable index";
+                }
+                warning = "warning: full scan of " + table + " although " + rs.getString("possible_keys")
+                        + " could be used (small or unselective table)";
+            }
+        }
+        return warning;
+    }
+
+    /**
+     * Checks the H2 plan: no table may be read with tableScan.
+     *
+     * @param conn connection
+     * @param query checked query
+     * @return null if fine, otherwise the problem
+     * @throws SQLException if EXPLAIN fails
+     */
+    private static String checkH2(Connection conn, Query query) throws SQLException {
+        try (PreparedStatement stmt = explain(conn, query); ResultSet rs = stmt.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) plan.append(rs.getString(1)).append('\n');
+            for (String line : plan.toString().split("\n")) {
+                if (line.contains(".tableScan")) return "full scan: " + line.trim();
+            }
+        }
+        return null;
+    }
+
+    private static PreparedStatement explain(Connection conn, Query query) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + query.sql);
+        for (int i = 0; i < query.params.length; i++) {
+            stmt.setObject(i + 1, query.params[i]);
+        }
+        return stmt;
+    }
+}
@@ -0,0 +1,267 @@
+package database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a MySQL dump file (like databaseSQL/GreenGrocery.sql) on the embedded database.
+ * The dump is translated so that H2 in MySQL mode can run it:
+ * - MySQL comments, SET, USE, CREATE DATABASE and LOCK TABLES lines are skipped
+ * - table options (ENGINE, CHARSET, COLLATE) are removed
+ * - _binary '...' values become X'...' hex values and backslash escapes are decoded
+ * - foreign keys are added after all tables exist
+ */
+public class SqlScriptLoader {
+
+    private static final Pattern TABLE_OPTIONS = Pattern.compile("\\)\\s*ENGINE\\s*=.*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern COLUMN_CHARSET = Pattern.compile("\\s+(COLLATE|CHARACTER SET)\\s+\\w+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_TABLE = Pattern.compile("^CREATE TABLE\\s+(`?\\w+`?)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FOREIGN_KEY = Pattern.compile("^\\s*CONSTRAINT\\s+\\S+\\s+FOREIGN KEY.*", Pattern.CASE_INSENSITIVE);
+
+    /** Statements that only matter for a MySQL server. */
+    private static final String[] SKIPPED_PREFIXES = {
+            "CREATE DATABASE", "USE ", "LOCK TABLES", "UNLOCK TABLES", "SET "
+    };
+
+    /**
+     * Opens a connection and runs the script.
+     *
+     * @param url JDBC url of the embedded database
+     * @param user database user
+     * @param password database password
+     * @param script path of the MySQL dump
+     * @throws SQLException if a statement fails
+     * @throws IOException if the file cannot be read
+     */
+    public static void run(String url, String user, String password, Path script) throws SQLException, IOException {
+        long start = System.nanoTime();
+        List<String> statements = translate(Files.readAllBytes(script));
+
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Bootstrap statement failed: " + abbreviate(sql) + "\n" + e.getMessage(), e);
+                }
+            }
+        }
+
+        System.out.printf("Embedded database created from %s (%d statements, %d ms)%n",
+                script, statements.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Splits a MySQL dump into statements that H2 can run.
+     *
+     * @param dump file content
+     * @return translated statements in run order
+     */
+    static List<String> translate(byte[] dump) {
+        List<String> result = new ArrayList<>();
+        List<String> foreignKeys = new ArrayList<>();
+
+        for (String raw : split(dump)) {
+            String sql = raw.trim();
+            if (sql.isEmpty() || isSkipped(sql)) continue;
+
+            Matcher create = CREATE_TABLE.matcher(sql);
+            if (create.find()) {
+                sql = rewriteCreateTable(sql, create.group(1), foreignKeys);
+            }
+            result.add(sql);
+        }
+
+        result.addAll(foreignKeys);
+        return result;
+    }
+
+    /**
+     * Removes MySQL table options and moves foreign keys to ALTER TABLE statements.
+     *
+     * @param sql CREATE TABLE statement
+     * @param table table name
+     * @param foreignKeys list that collects the ALTER TABLE statements
+     * @return cleaned CREATE TABLE statement
+     */
+    private static String rewriteCreateTable(String sql, String table, List<String> foreignKeys) {
+        sql = TABLE_OPTIONS.matcher(sql).replaceFirst(")");
+        sql = COLUMN_CHARSET.matcher(sql).replaceAll("");
+
+        List<String> kept = new ArrayList<>();
+        for (String line : sql.split("\r?\n")) {
+            if (FOREIGN_KEY.matcher(line).matches()) {
+                String constraint = line.trim();
+                if (constraint.endsWith(",")) constraint = constraint.substring(0, constraint.length() - 1);
+                foreignKeys.add("ALTER TABLE " + table + " ADD " + constraint);
+            } else {
+                kept.add(line);
+            }
+        }
+
+        // the line before ")" must not end with a comma after removing constraints
+        int last = kept.size() - 2;
+        if (last >= 0 && kept.get(last).trim().endsWith(",")) {
+            String line = kept.get(last);
+            kept.set(last, line.substring(0, line.lastIndexOf(',')));
+        }
+        return String.join("\n", kept);
+    }
+
+    /**
+     * Checks if a statement is only needed for a MySQL server.
+     *
+     * @param sql statement
+     * @return true if it should not run on the embedded database
+     */
+    private static boolean isSkipped(String sql) {
+        String upper = sql.toUpperCase(Locale.ROOT);
+        for (String prefix : SKIPPED_PREFIXES) {
+            if (upper.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Splits the dump on ';' outside of strings and removes comments.
+     * String values are rewritten into standard SQL at the same time.
+     *
+     * @param dump file content
+     * @return raw statements
+     */
+    private static List<String> split(byte[] dump) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        int n = dump.length;
+
+        while (i < n) {
+            char c = (char) (dump[i] & 0xFF);
+
+            if (c == '-' && i + 1 < n && dump[i + 1] == '-') {
+                while (i < n && dump[i] != '\n') i++;
+            } else if (c == '/' && i + 1 < n && dump[i + 1] == '*') {
+                i += 2;
+                while (i + 1 < n && !(dump[i] == '*' && dump[i + 1] == '/')) i++;
+                i += 2;
+            } else if (c == '\'') {
+                boolean binary = endsWithIgnoreCase(current, "_binary ");
+                if (binary) current.setLength(current.length() - "_binary ".length());
+                ByteArrayOutputStream value = new ByteArrayOutputStream();
+                i = readQuoted(dump, i, value);
+                current.append(binary ? toHexLiteral(value.toByteArray()) : toStringLiteral(value.toByteArray()));
+            } else if (c == '`') {
+                int end = i + 1;
+                while (end < n && dump[end] != '`') end++;
+                current.append(new String(dump, i, end - i + 1, StandardCharsets.UTF_8));
+                i = end + 1;
+            } else if (c == ';') {
+                statements.add(current.toString());
+                current.setLength(0);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        if (!current.toString().isBlank()) statements.add(current.toString());
+        return statements;
+    }
+
+    /**
+     * Reads a MySQL quoted string and decodes its escapes.
+     *
+     * @param dump file content
+     * @param start index of the opening quote
+     * @param out decoded bytes
+     * @return index after the closing quote
+     */
+    private static int readQuoted(byte[] dump, int start, ByteArrayOutputStream out) {
+        int i = start + 1;
+        while (i < dump.length) {
+            byte b = dump[i];
+            if (b == '\\' && i + 1 < dump.length) {
+                byte next = dump[i + 1];
+                switch (next) {
+                    case '0' -> out.write(0);
+                    case 'n' -> out.write('\n');
+                    case 'r' -> out.write('\r');
+                    case 't' -> out.write('\t');
+                    case 'b' -> out.write('\b');
+                    case 'Z' -> out.write(26);
+                    default -> out.write(next);
+                }
+                i += 2;
+            } else if (b == '\'' && i + 1 < dump.length && dump[i + 1] == '\'') {
+                out.write('\'');
+                i += 2;
+            } else if (b == '\'') {
+                return i + 1;
+            } else {
+                out.write(b);
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Creates a standard SQL string value.
+     *
+     * @param bytes UTF-8 bytes of the text
+     * @return quoted text
+     */
+    private static String toStringLiteral(byte[] bytes) {
+        return "'" + new String(bytes, StandardCharsets.UTF_8).replace("'", "''") + "'";
+    }
+
+    /**
+     * Creates a hex value for binary data.
+     *
+     * @param bytes binary data
+     * @return X'...' value
+     */
+    private static String toHexLiteral(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2 + 3);
+        sb.append("X'");
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.append('\'').toString();
+    }
+
+    /**
+     * Checks the end of a StringBuilder without case.
+     *
+     * @param sb text
+     * @param suffix expected end
+     * @return true if sb ends with suffix
+     */
+    private static boolean endsWithIgnoreCase(StringBuilder sb, String suffix) {
+        int from = sb.length() - suffix.length();
+        return from >= 0 && sb.substring(from).equalsIgnoreCase(suffix);
+    }
+
+    /**
+     * Shortens a statement for error messages.
+     *
+     * @param sql statement
+     * @return first part of the statement
+     */
+    private static String abbreviate(String sql) {
+        return sql.length() <= 200 ? sql : sql.substring(0, 200) + "...";
+    }
+}
@@ -0,0 +1,254 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps prepared statements of one pooled connection open for reuse.
+ * Statements are stored by their SQL text. When the caller closes a cached
+ * statement, it is only reset (parameters and result set) and kept for the
+ * next call with the same SQL. The least recently used statement is closed
+ * when the cache is full.
+ *
+ * A cache belongs to one connection and a connection is used by one thread
+ * at a time, so this class is not thread safe.
+ */
+class StatementCache {
+
+    private final int maxSize;
+    private final PoolMetrics metrics;
+
+    /** Cached statements in LRU order (access order). */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /** Evicted statements that were still in use; closed when given back. */
+    private final List<Entry> evictedInUse = new ArrayList<>();
+
+    /**
+     * Creates a statement cache.
+     *
+     * @param maxSize maximum number of cached statements
+     * @param metrics pool metrics for hit/miss counters
+     */
+    StatementCache(int maxSize, PoolMetrics metrics) {
+        this.maxSize = maxSize;
+        this.metrics = metrics;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets a prepared statement for the SQL text.
+     * A cached statement is returned if it is not used right now.
+     *
+     * @param raw physical connection
+     * @param owner connection proxy returned by getConnection() of the statement
+     * @param sql SQL text
+     * @return statement proxy; closing it gives the statement back to the cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(Connection raw, Connection owner, String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse) {
+            metrics.recordStatementHit(sql);
+            return entry.checkOut(owner);
+        }
+
+        metrics.recordStatementMiss(sql);
+        PreparedStatement stmt = raw.prepareStatement(sql);
+        if (entry != null) {
+            // same SQL is already open (nested use), so this one is not cached
+            return stmt;
+        }
+
+        Entry created = new Entry(stmt);
+        entries.put(sql, created);
+        evictOverflow();
+        return created.checkOut(owner);
+    }
+
+    /**
+     * Gives back statements that the caller forgot to close.
+     * It is called when the connection returns to the pool.
+     */
+    void releaseAll() {
+        for (Entry entry : entries.values()) {
+            try {
+                entry.giveBack();
+            } catch (SQLException e) {
+                entry.closeQuietly();
+                entry.evicted = true;
+            }
+        }
+        entries.values().removeIf(entry -> entry.evicted);
+
+        for (Entry entry : evictedInUse) {
+            try {
+                entry.giveBack();
+            } catch (SQLException e) {
+                entry.closeQuietly();
+            }
+        }
+        evictedInUse.clear();
+    }
+
+    /** Closes all cached statements. */
+    void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.closeQuietly();
+        }
+        for (Entry entry : evictedInUse) {
+            entry.closeQuietly();
+        }
+        entries.clear();
+        evictedInUse.clear();
+    }
+
+    /** @return number of cached statements */
+    int size() {
+        return entries.size();
+    }
+
+    /** Closes the least recently used statements until the cache fits its size. */
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            metrics.recordStatementEviction();
+            if (eldest.inUse) {
+                eldest.evicted = true; // closed when the caller is done with it
+                evictedInUse.add(eldest);
+            } else {
+                eldest.closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * One cached statement.
+     * Every checkout gets its own proxy, so an old proxy that was already
+     * closed cannot touch the statement while someone else uses it.
+     */
+    private static final class Entry {
+
+        private final PreparedStatement stmt;
+        private final List<ResultSet> openResults = new ArrayList<>();
+        private Connection owner;
+        private boolean inUse;
+        private boolean evicted;
+        private int generation;
+
+        Entry(PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+
+        /**
+         * Marks the statement as used and creates a proxy for the caller.
+         *
+         * @param owner connection proxy of the caller
+         * @return statement proxy
+         */
+        PreparedStatement checkOut(Connection owner) {
+            this.owner = owner;
+            this.inUse = true;
+            generation++;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Lease(generation)
+            );
+        }
+
+        /** Resets the statement so the next caller starts clean. */
+        void giveBack() throws SQLException {
+            if (!inUse) return;
+            inUse = false;
+            owner = null;
+
+            for (ResultSet rs : openResults) {
+                rs.close();
+            }
+            openResults.clear();
+
+            if (evicted) {
+                stmt.close();
+                return;
+            }
+            stmt.clearParameters();
+            stmt.clearBatch();
+            stmt.clearWarnings();
+        }
+
+        /** Closes the statement and ignores errors. */
+        void closeQuietly() {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {
+                // statement is thrown away anyway
+            }
+        }
+
+        /**
+         * Proxy handler for one checkout of the statement.
+         */
+        private final class Lease implements InvocationHandler {
+
+            private final int leaseGeneration;
+
+            Lease(int leaseGeneration) {
+                this.leaseGeneration = leaseGeneration;
+            }
+
+            /** @return true while this proxy is the current user of the statement */
+            private boolean isActive() {
+                return inUse && generation == leaseGeneration;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (isActive()) giveBack();
+                        return null;
+                    case "isClosed":
+                        return !isActive() || stmt.isClosed();
+                    case "getConnection":
+                        return owner;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "CachedStatement[" + stmt + "]";
+                    default:
+                        break;
+                }
+
+                if (!isActive()) {
+                    throw new SQLException("Statement is already closed.");
+                }
+
+                try {
+                    Object result = method.invoke(stmt, args);
+                    if (result instanceof ResultSet rs) {
+                        openResults.add(rs);
+                    }
+                    return result;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    }
+}
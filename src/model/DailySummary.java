@@ -0,0 +1,52 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Order numbers of one day (by order date), used by the owner reports.
+ * Pending orders are the orders that are neither delivered nor cancelled.
+ */
+public class DailySummary {
+
+    private final LocalDate date;
+    private final int orderCount;
+    private final int deliveredCount;
+    private final int cancelledCount;
+    private final double deliveredRevenue;
+
+    /**
+     * Creates a daily summary.
+     *
+     * @param date order date
+     * @param orderCount number of orders placed on this day
+     * @param deliveredCount number of these orders that are delivered (and not cancelled)
+     * @param cancelledCount number of these orders that are cancelled
+     * @param deliveredRevenue total cost of the delivered orders
+     */
+    public DailySummary(LocalDate date, int orderCount, int deliveredCount, int cancelledCount,
+                        double deliveredRevenue) {
+        this.date = date;
+        this.orderCount = orderCount;
+        this.deliveredCount = deliveredCount;
+        this.cancelledCount = cancelledCount;
+        this.deliveredRevenue = deliveredRevenue;
+    }
+
+    /** @return order date */
+    public LocalDate getDate() { return date; }
+
+    /** @return number of orders placed on this day */
+    public int getOrderCount() { return orderCount; }
+
+    /** @return number of delivered orders */
+    public int getDeliveredCount() { return deliveredCount; }
+
+    /** @return number of cancelled orders */
+    public int getCancelledCount() { return cancelledCount; }
+
+    /** @return number of orders that are neither delivered nor cancelled */
+    public int getPendingCount() { return orderCount - deliveredCount - cancelledCount; }
+
+    /** @return total cost of the delivered orders */
+    public double getDeliveredRevenue() { return deliveredRevenue; }
+}
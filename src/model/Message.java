@@ -34,6 +34,15 @@ public class Message {
         this.read = read;
     }
 
+    /**
+     * Gets the message ID.
+     *
+     * @return message ID
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Gets the sender ID.
      *
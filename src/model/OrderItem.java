@@ -0,0 +1,63 @@
+package model;
+
+/**
+ * Represents one line of an order (one product and its quantity).
+ * Lines are stored in the order_items table.
+ */
+public class OrderItem {
+    private int orderId;
+    private int productId;
+    private String productName;
+    private double quantity;
+    private double unitPrice;
+
+    /**
+     * Creates an order line.
+     *
+     * @param orderId order ID
+     * @param productId product ID (0 if the product is not known, for example old orders)
+     * @param productName product name when the order was placed
+     * @param quantity quantity in kg
+     * @param unitPrice price per kg when the order was placed (0 if not known)
+     */
+    public OrderItem(int orderId, int productId, String productName, double quantity, double unitPrice) {
+        this.orderId = orderId;
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    /** @return order ID */
+    public int getOrderId() { return orderId; }
+
+    /** @param orderId order ID */
+    public void setOrderId(int orderId) { this.orderId = orderId; }
+
+    /** @return product ID (0 if not known) */
+    public int getProductId() { return productId; }
+
+    /** @param productId product ID */
+    public void setProductId(int productId) { this.productId = productId; }
+
+    /** @return product name when the order was placed */
+    public String getProductName() { return productName; }
+
+    /** @param productName product name */
+    public void setProductName(String productName) { this.productName = productName; }
+
+    /** @return quantity in kg */
+    public double getQuantity() { return quantity; }
+
+    /** @param quantity quantity in kg */
+    public void setQuantity(double quantity) { this.quantity = quantity; }
+
+    /** @return price per kg (0 if not known) */
+    public double getUnitPrice() { return unitPrice; }
+
+    /** @param unitPrice price per kg */
+    public void setUnitPrice(double unitPrice) { this.unitPrice = unitPrice; }
+
+    /** @return line total (quantity * unit price) */
+    public double getTotal() { return quantity * unitPrice; }
+}
@@ -0,0 +1,71 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An order that waits to be saved, for example in the checkout pipeline.
+ * It keeps a copy of the cart lines, so the cart can change after checkout.
+ * After saving, it holds the new order ID or the reason why it was not saved.
+ */
+public class OrderRequest {
+    private final User user;
+    private final List<CartItem> items;
+    private final String couponCode;
+    private final LocalDateTime deliveryTime;
+    private final double totalCost;
+    private final String products;
+
+    private int orderId;
+    private Exception failure;
+
+    /**
+     * Creates an order request from a cart.
+     *
+     * @param user customer
+     * @param cart cart of the customer (copied)
+     * @param deliveryTime wanted delivery time
+     */
+    public OrderRequest(User user, Cart cart, LocalDateTime deliveryTime) {
+        this.user = user;
+        this.items = new ArrayList<>();
+        for (CartItem item : cart.getItems()) {
+            items.add(new CartItem(item.getProduct(), item.getQuantity()));
+        }
+        this.couponCode = cart.getAppliedCoupon() != null ? cart.getAppliedCoupon().getCode() : null;
+        this.deliveryTime = deliveryTime;
+        this.totalCost = cart.getTotalPrice();
+        this.products = cart.getCartContentAsString();
+    }
+
+    /** @return customer */
+    public User getUser() { return user; }
+
+    /** @return copied cart lines */
+    public List<CartItem> getItems() { return items; }
+
+    /** @return code of the applied coupon, or null */
+    public String getCouponCode() { return couponCode; }
+
+    /** @return wanted delivery time */
+    public LocalDateTime getDeliveryTime() { return deliveryTime; }
+
+    /** @return total cost of the cart */
+    public double getTotalCost() { return totalCost; }
+
+    /** @return cart content as text (for showing the order) */
+    public String getProducts() { return products; }
+
+    /** @return new order ID, or 0 if the order is not saved */
+    public int getOrderId() { return orderId; }
+
+    /** @param orderId new order ID */
+    public void setOrderId(int orderId) { this.orderId = orderId; }
+
+    /** @return reason why the order was not saved, or null */
+    public Exception getFailure() { return failure; }
+
+    /** @param failure reason why the order was not saved */
+    public void setFailure(Exception failure) { this.failure = failure; }
+}
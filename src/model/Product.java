@@ -14,7 +14,14 @@ public class Product
     private byte[] image;
     private double threshold;
 
-    private byte[] imageBytes;
+    /** SHA-256 hash of the image (ETag). Catalog rows carry only the hash, not the bytes. */
+    private String imageHash;
+
+    /** Small copy of the image for product cards, only set when a new image is saved. */
+    private byte[] thumbnail;
+
+    /** Row version (last update time in milliseconds), used by the product catalog cache. */
+    private long version;
 
 
     /**
@@ -39,6 +46,19 @@ public class Product
         this.threshold = threshold;
     }
 
+    /**
+     * Creates a copy of another product.
+     *
+     * @param other product to copy
+     */
+    public Product(Product other)
+    {
+        this(other.id, other.name, other.type, other.price, other.stock, other.image, other.threshold);
+        this.imageHash = other.imageHash;
+        this.thumbnail = other.thumbnail;
+        this.version = other.version;
+    }
+
     /** @return product ID */
     public int getId() {
         return id;
@@ -92,7 +112,12 @@ public class Product
         this.stock = stock;
     }
 
-    /** @return product image */
+    /**
+     * Gets the product image bytes.
+     * Products from the catalog do not carry the image; use ProductImageStore to load it.
+     *
+     * @return product image, or null if not loaded
+     */
     public byte[] getImage() {
         return image;
     }
@@ -102,6 +127,26 @@ public class Product
         this.image = image;
     }
 
+    /** @return image hash (ETag), null if there is no image */
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    /** @param imageHash image hash (ETag) */
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+
+    /** @return thumbnail bytes, or null if not set */
+    public byte[] getThumbnail() {
+        return thumbnail;
+    }
+
+    /** @param thumbnail thumbnail bytes */
+    public void setThumbnail(byte[] thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+
     /** @return stock threshold */
     public double getThreshold() {
         return threshold;
@@ -111,4 +156,14 @@ public class Product
     public void setThreshold(double threshold) {
         this.threshold = threshold;
     }
-}
\ No newline at end of file
+
+    /** @return row version (last update time in milliseconds) */
+    public long getVersion() {
+        return version;
+    }
+
+    /** @param version row version */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
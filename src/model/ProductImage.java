@@ -0,0 +1,49 @@
+package model;
+
+/**
+ * Image of a product as read from the database.
+ * If the caller already had the current image, only the hash is read and the bytes are null.
+ */
+public class ProductImage
+{
+    private final int productId;
+    private final String hash;
+    private final byte[] bytes;
+    private final boolean modified;
+
+    /**
+     * Creates a product image.
+     *
+     * @param productId product ID
+     * @param hash SHA-256 hash of the image (ETag), null if unknown
+     * @param bytes image bytes, null if not modified or if there is no image
+     * @param modified false if the caller's image is still the current one
+     */
+    public ProductImage(int productId, String hash, byte[] bytes, boolean modified)
+    {
+        this.productId = productId;
+        this.hash = hash;
+        this.bytes = bytes;
+        this.modified = modified;
+    }
+
+    /** @return product ID */
+    public int getProductId() {
+        return productId;
+    }
+
+    /** @return image hash (ETag), null if unknown */
+    public String getHash() {
+        return hash;
+    }
+
+    /** @return image bytes, null if not modified or if there is no image */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /** @return false if the image did not change since the given hash */
+    public boolean isModified() {
+        return modified;
+    }
+}
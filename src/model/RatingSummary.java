@@ -0,0 +1,39 @@
+package model;
+
+/**
+ * Rating numbers of one carrier: average, number of ratings and number of comments.
+ */
+public class RatingSummary {
+
+    private final int carrierId;
+    private final double average;
+    private final int count;
+    private final int commentCount;
+
+    /**
+     * Creates a rating summary.
+     *
+     * @param carrierId carrier ID
+     * @param average average rating
+     * @param count number of ratings
+     * @param commentCount number of ratings with a comment
+     */
+    public RatingSummary(int carrierId, double average, int count, int commentCount) {
+        this.carrierId = carrierId;
+        this.average = average;
+        this.count = count;
+        this.commentCount = commentCount;
+    }
+
+    /** @return carrier ID */
+    public int getCarrierId() { return carrierId; }
+
+    /** @return average rating */
+    public double getAverage() { return average; }
+
+    /** @return number of ratings */
+    public int getCount() { return count; }
+
+    /** @return number of ratings with a comment */
+    public int getCommentCount() { return commentCount; }
+}
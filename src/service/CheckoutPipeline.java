@@ -0,0 +1,222 @@
+package service;
+
+import dao.OrderDAO;
+import database.DatabaseConnection;
+import model.Cart;
+import model.OrderRequest;
+import model.User;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Saves checkouts in small groups with one commit per group (group commit).
+ * Orders are put in a queue; one worker thread takes up to checkout.maxBatchSize orders,
+ * waiting at most checkout.maxWaitMillis for more orders after the first one,
+ * and saves them with OrderDAO.placeOrders (JDBC batches, one transaction).
+ * So the database writes its log once per group instead of once per order.
+ *
+ * Every order gets its own result: the future completes with the new order ID,
+ * or with InsufficientStockException / another error for that order only.
+ * If a whole group fails, its orders are tried again one by one.
+ */
+public class CheckoutPipeline {
+
+    private static CheckoutPipeline instance;
+
+    /**
+     * One queued checkout.
+     */
+    private static class Pending {
+        final OrderRequest request;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Pending(OrderRequest request) {
+            this.request = request;
+        }
+    }
+
+    private final OrderDAO orderDAO = new OrderDAO();
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder orderCount = new LongAdder();
+    private final LongAdder groupCount = new LongAdder();
+    private final LongAdder failedGroupCount = new LongAdder();
+    private final LongAdder placedCount = new LongAdder();
+
+    /**
+     * Creates the pipeline with the configured group size and starts the worker thread.
+     */
+    private CheckoutPipeline() {
+        this.maxBatchSize = Math.max(1, DatabaseConnection.getConfig().getInt("checkout.maxBatchSize", 32));
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(
+                DatabaseConnection.getConfig().getLong("checkout.maxWaitMillis", 5L));
+        this.worker = new Thread(this::run, "checkout-pipeline");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Gets the shared pipeline. The worker thread is started on the first call.
+     *
+     * @return checkout pipeline
+     */
+    public static synchronized CheckoutPipeline getInstance() {
+        if (instance == null) {
+            instance = new CheckoutPipeline();
+        }
+        return instance;
+    }
+
+    /**
+     * Saves the orders that are still queued and stops the worker thread.
+     * Orders the worker could not save in time fail, so no caller waits forever.
+     * Does nothing if the pipeline was never started.
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) return;
+        synchronized (instance.queue) {
+            instance.running = false; // submit checks it under the same lock
+        }
+        try {
+            instance.worker.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending left;
+        while ((left = instance.queue.poll()) != null) {
+            left.result.completeExceptionally(new IllegalStateException("Checkout is shut down"));
+        }
+        instance = null;
+    }
+
+    /**
+     * Queues a checkout. The cart is copied, so it can be cleared after this call.
+     *
+     * @param user customer
+     * @param cart cart of the customer
+     * @param deliveryTime wanted delivery time
+     * @return future with the new order ID; fails with InsufficientStockException if products are short
+     */
+    public CompletableFuture<Integer> submit(User user, Cart cart, LocalDateTime deliveryTime) {
+        Pending pending = new Pending(new OrderRequest(user, cart, deliveryTime));
+        synchronized (queue) {
+            if (!running) {
+                pending.result.completeExceptionally(new IllegalStateException("Checkout is shut down"));
+                return pending.result;
+            }
+            queue.add(pending);
+        }
+        orderCount.increment();
+        return pending.result;
+    }
+
+    /**
+     * Returns pipeline statistics.
+     *
+     * @return statistics as text
+     */
+    @Override
+    public String toString() {
+        long groups = groupCount.sum();
+        return String.format("CheckoutPipeline[orders=%d, placed=%d, groups=%d, avgGroupSize=%.1f, failedGroups=%d, queued=%d]",
+                orderCount.sum(), placedCount.sum(), groups,
+                groups == 0 ? 0.0 : (double) orderCount.sum() / groups, failedGroupCount.sum(), queue.size());
+    }
+
+    // --- HELPERS ---
+
+    /** Worker loop: collects a group and saves it. Ends after shutdown when the queue is empty. */
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            List<Pending> group = new ArrayList<>();
+            try {
+                // short poll instead of take(), so the loop sees shutdown without an interrupt
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (group.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!group.isEmpty()) save(group);
+        }
+    }
+
+    /**
+     * Saves one group. If the group fails as a whole, the orders are saved one by one,
+     * so one broken order does not fail the others.
+     *
+     * @param group queued checkouts
+     */
+    private void save(List<Pending> group) {
+        groupCount.increment(); // only here, so the retries below do not lower avgGroupSize
+        Exception failure = place(group);
+        if (failure == null) return;
+
+        failedGroupCount.increment();
+        if (group.size() == 1) {
+            group.get(0).result.completeExceptionally(failure);
+            return;
+        }
+        for (Pending p : group) {
+            p.request.setFailure(null);
+            Exception e = place(List.of(p));
+            if (e != null) p.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Saves orders in one transaction and gives them their results.
+     *
+     * @param group queued checkouts
+     * @return null if the group was saved, else the error of the whole group (no result is set then)
+     */
+    private Exception place(List<Pending> group) {
+        List<OrderRequest> requests = new ArrayList<>();
+        for (Pending p : group) requests.add(p.request);
+
+        try {
+            orderDAO.placeOrders(requests);
+            complete(group);
+            return null;
+        } catch (SQLException | RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Gives every order of a saved group its result.
+     *
+     * @param group saved checkouts
+     */
+    private void complete(List<Pending> group) {
+        for (Pending p : group) {
+            if (p.request.getFailure() != null) {
+                p.result.completeExceptionally(p.request.getFailure());
+            } else {
+                placedCount.increment();
+                p.result.complete(p.request.getOrderId());
+            }
+        }
+    }
+}
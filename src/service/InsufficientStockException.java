@@ -0,0 +1,78 @@
+package service;
+
+import java.util.List;
+
+/**
+ * Thrown when an order wants more of a product than there is in stock.
+ * It tells which lines are short, so the customer can change the cart.
+ */
+public class InsufficientStockException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * One cart line that could not be reserved.
+     */
+    public static class Shortfall {
+        private final int productId;
+        private final String productName;
+        private final double requested;
+        private final double available;
+
+        /**
+         * Creates a shortfall.
+         *
+         * @param productId product ID
+         * @param productName product name
+         * @param requested wanted quantity
+         * @param available quantity in stock when the order was placed
+         */
+        public Shortfall(int productId, String productName, double requested, double available) {
+            this.productId = productId;
+            this.productName = productName;
+            this.requested = requested;
+            this.available = available;
+        }
+
+        /** @return product ID */
+        public int getProductId() { return productId; }
+
+        /** @return product name */
+        public String getProductName() { return productName; }
+
+        /** @return wanted quantity */
+        public double getRequested() { return requested; }
+
+        /** @return quantity in stock */
+        public double getAvailable() { return available; }
+
+        /** @return missing quantity */
+        public double getMissing() { return requested - available; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: wanted %.2f kg, only %.2f kg left", productName, requested, Math.max(0, available));
+        }
+    }
+
+    private final List<Shortfall> shortfalls;
+
+    /**
+     * Creates the exception.
+     *
+     * @param shortfalls lines that are short (not empty)
+     */
+    public InsufficientStockException(List<Shortfall> shortfalls) {
+        super("Not enough stock for " + shortfalls.size() + " product(s)");
+        this.shortfalls = List.copyOf(shortfalls);
+    }
+
+    /**
+     * Gets the lines that are short.
+     *
+     * @return shortfalls
+     */
+    public List<Shortfall> getShortfalls() {
+        return shortfalls;
+    }
+}
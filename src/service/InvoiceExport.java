@@ -0,0 +1,338 @@
+package service;
+
+import com.itextpdf.text.pdf.PdfReader;
+import dao.InvoiceDAO;
+import dao.OrderDAO;
+import database.DatabaseConnection;
+import model.Order;
+import util.InvoiceUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports the invoices of all orders delivered in a date range into one ZIP file
+ * (one invoice_&lt;id&gt;.pdf per order), for the month-end bookkeeping.
+ *
+ * - The orders are read page by page, so a long range is never read at once.
+ * - The invoices are made on invoice.exportThreads workers (default: number of cores).
+ *   A saved invoice (order_invoices) is reused; a missing one is rendered and saved.
+ * - The calling thread writes the ZIP in delivery order while the workers go on.
+ *   At most two invoices per worker wait in memory, whatever the size of the range.
+ *
+ * The owner screen starts it with exportAsync. It can also run without a screen:
+ *   java service.InvoiceExport 2026-09-01 2026-09-30 invoices-2026-09.zip
+ */
+public class InvoiceExport {
+
+    private static final int PAGE_SIZE = 200;
+
+    /** Progress is reported after this many invoices. */
+    private static final int PROGRESS_STEP = 25;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final OrderDAO orderDAO = new OrderDAO();
+    private final InvoiceDAO invoiceDAO = new InvoiceDAO();
+    private final int threads;
+
+    /**
+     * Numbers of an export. The progress callback gets a copy while the export runs.
+     */
+    public static class Result {
+        private int orders;
+        private int pages;
+        private int stored;
+        private int rendered;
+        private int failed;
+        private long nanos;
+
+        /** @return number of invoices in the ZIP */
+        public int getOrders() { return orders; }
+
+        /** @return number of PDF pages in the ZIP */
+        public int getPages() { return pages; }
+
+        /** @return invoices taken from order_invoices */
+        public int getStored() { return stored; }
+
+        /** @return invoices rendered during the export */
+        public int getRendered() { return rendered; }
+
+        /** @return orders whose invoice could not be made */
+        public int getFailed() { return failed; }
+
+        /** @return time since the start, in milliseconds */
+        public long getMillis() { return nanos / 1_000_000; }
+
+        /** @return PDF pages written per second */
+        public double getPagesPerSecond() {
+            return nanos == 0 ? 0 : pages * 1_000_000_000.0 / nanos;
+        }
+
+        private Result copy() {
+            Result r = new Result();
+            r.orders = orders;
+            r.pages = pages;
+            r.stored = stored;
+            r.rendered = rendered;
+            r.failed = failed;
+            r.nanos = nanos;
+            return r;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d invoices, %d pages in %.1f s (%.1f pages/s); %d saved, %d rendered, %d failed",
+                    orders, pages, nanos / 1e9, getPagesPerSecond(), stored, rendered, failed);
+        }
+    }
+
+    /**
+     * One finished invoice, waiting to be written into the ZIP.
+     */
+    private static class Part {
+        final int orderId;
+        final byte[] pdf;
+        final int pages;
+        final boolean stored;
+
+        Part(int orderId, byte[] pdf, int pages, boolean stored) {
+            this.orderId = orderId;
+            this.pdf = pdf;
+            this.pages = pages;
+            this.stored = stored;
+        }
+    }
+
+    /**
+     * Creates an exporter with the configured number of workers.
+     */
+    public InvoiceExport() {
+        this.threads = Math.max(1, DatabaseConnection.getConfig().getInt("invoice.exportThreads",
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Exports the invoices of the orders delivered from one day to another.
+     * The ZIP is written to a temporary file first and renamed when it is complete.
+     *
+     * @param from first delivery day
+     * @param to last delivery day (inclusive)
+     * @param zipFile target ZIP file (replaced if it exists)
+     * @param progress gets the numbers every few invoices (on the export thread), or null
+     * @return numbers of the export
+     * @throws IOException if the ZIP file can not be written or the orders can not be read
+     *                     (the temporary file is deleted then)
+     */
+    public Result export(LocalDate from, LocalDate to, Path zipFile, Consumer<Result> progress) throws IOException {
+        Files.createDirectories(zipFile.toAbsolutePath().getParent());
+        Path tmp = zipFile.resolveSibling(zipFile.getFileName() + ".tmp");
+
+        Result result;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            result = export(from, to, out, progress);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, zipFile, StandardCopyOption.REPLACE_EXISTING);
+        return result;
+    }
+
+    /**
+     * Exports the invoices of the orders delivered from one day to another into a stream.
+     *
+     * @param from first delivery day
+     * @param to last delivery day (inclusive)
+     * @param out target stream (closed when the ZIP is finished)
+     * @param progress gets the numbers every few invoices (on the export thread), or null
+     * @return numbers of the export
+     * @throws IOException if the stream can not be written or the orders can not be read
+     */
+    public Result export(LocalDate from, LocalDate to, OutputStream out, Consumer<Result> progress) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        Deque<Future<Part>> pending = new ArrayDeque<>();
+        int window = threads * 2;
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "invoice-export-" + THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            // PDF content is compressed already; a fast level keeps the one writer ahead of the workers
+            zip.setLevel(Deflater.BEST_SPEED);
+
+            Order after = null;
+            List<Order> page;
+            do {
+                try {
+                    page = orderDAO.getDeliveredOrdersBetweenPage(
+                            from.atStartOfDay(), to.plusDays(1).atStartOfDay(), after, PAGE_SIZE);
+                } catch (SQLException e) {
+                    throw new IOException("Delivered orders could not be read.", e);
+                }
+                for (Order order : page) {
+                    if (pending.size() >= window) {
+                        writeNext(zip, pending, result, start, progress);
+                    }
+                    pending.add(workers.submit(() -> makePart(order)));
+                }
+                if (!page.isEmpty()) after = page.get(page.size() - 1);
+            } while (page.size() == PAGE_SIZE);
+
+            while (!pending.isEmpty()) {
+                writeNext(zip, pending, result, start, progress);
+            }
+        } finally {
+            pending.forEach(f -> f.cancel(true));
+            workers.shutdownNow();
+        }
+
+        result.nanos = System.nanoTime() - start;
+        if (progress != null) progress.accept(result.copy());
+        return result;
+    }
+
+    /**
+     * Runs an export on its own thread, so neither the JavaFX thread nor the database threads wait.
+     *
+     * @param from first delivery day
+     * @param to last delivery day (inclusive)
+     * @param zipFile target ZIP file
+     * @param progress gets the numbers every few invoices (not on the JavaFX thread), or null
+     * @return future with the numbers of the export
+     */
+    public CompletableFuture<Result> exportAsync(LocalDate from, LocalDate to, Path zipFile, Consumer<Result> progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return export(from, to, zipFile, progress);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, r -> {
+            Thread t = new Thread(r, "invoice-export");
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    /**
+     * Exports invoices without a screen.
+     *
+     * @param args first day, last day (yyyy-MM-dd) and the ZIP file
+     *             (default: invoices/invoices_&lt;first&gt;_&lt;last&gt;.zip)
+     * @throws IOException if the ZIP file can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java service.InvoiceExport <first day> <last day> [zip file]");
+            System.exit(2);
+        }
+        LocalDate from = LocalDate.parse(args[0]);
+        LocalDate to = LocalDate.parse(args[1]);
+        Path zipFile = args.length > 2 ? Paths.get(args[2])
+                : InvoiceUtil.INVOICE_DIR.resolve("invoices_" + from + "_" + to + ".zip");
+
+        Result result;
+        try {
+            result = new InvoiceExport().export(from, to, zipFile,
+                    r -> System.out.printf("%6d invoices, %7.1f pages/s%n", r.getOrders(), r.getPagesPerSecond()));
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+        System.out.println(zipFile.toAbsolutePath() + ": " + result);
+        if (result.getFailed() > 0) System.exit(1);
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Makes the PDF of one order. Runs on an export worker.
+     *
+     * @param order order with customer and carrier names
+     * @return invoice, or a part without PDF if it could not be made
+     */
+    private Part makePart(Order order) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(8 * 1024);
+            boolean stored = invoiceDAO.writeInvoice(order.getId(), buf);
+            byte[] pdf;
+            if (stored) {
+                pdf = buf.toByteArray();
+            } else {
+                pdf = InvoiceUtil.renderInvoice(order);
+                if (!invoiceDAO.saveInvoice(order.getId(), pdf)) {
+                    System.err.println("Invoice of order " + order.getId() + " could not be saved in the database.");
+                }
+            }
+            PdfReader reader = new PdfReader(pdf);
+            int pages = reader.getNumberOfPages();
+            reader.close();
+            return new Part(order.getId(), pdf, pages, stored);
+        } catch (Exception e) {
+            System.err.println("Invoice of order " + order.getId() + " could not be made: " + e.getMessage());
+            return new Part(order.getId(), null, 0, false);
+        }
+    }
+
+    /**
+     * Waits for the oldest invoice and writes it into the ZIP.
+     *
+     * @throws IOException if the ZIP can not be written
+     */
+    private static void writeNext(ZipOutputStream zip, Deque<Future<Part>> pending, Result result,
+                                  long start, Consumer<Result> progress) throws IOException {
+        Part part;
+        try {
+            part = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Invoice export was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Invoice export failed.", e.getCause());
+        }
+
+        if (part.pdf == null) {
+            result.failed++;
+        } else {
+            zip.putNextEntry(new ZipEntry("invoice_" + part.orderId + ".pdf"));
+            zip.write(part.pdf);
+            zip.closeEntry();
+            result.orders++;
+            result.pages += part.pages;
+            if (part.stored) result.stored++; else result.rendered++;
+        }
+
+        int done = result.orders + result.failed;
+        if (progress != null && done % PROGRESS_STEP == 0) {
+            result.nanos = System.nanoTime() - start;
+            progress.accept(result.copy());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package service;
+
+import dao.InvoiceDAO;
+import dao.OrderDAO;
+import database.DatabaseConnection;
+import model.Order;
+import util.InvoiceUtil;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes invoice PDFs on a small worker pool, never on the JavaFX thread.
+ *
+ * An invoice is made only once per order (delivered orders do not change):
+ * 1. the file in the invoices folder is used if it exists,
+ * 2. otherwise the copy in the order_invoices table is streamed into a file,
+ * 3. otherwise the PDF is built in memory, and the file and the database copy
+ *    are both written from that one buffer.
+ *
+ * The pool has invoice.threads workers and a queue of invoice.queueSize jobs.
+ * When the queue is full, new requests fail at once instead of piling up.
+ * Two requests for the same order share one job.
+ */
+public class InvoiceService {
+
+    private static InvoiceService instance;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final OrderDAO orderDAO = new OrderDAO();
+    private final InvoiceDAO invoiceDAO = new InvoiceDAO();
+    private final ThreadPoolExecutor executor;
+
+    /** Running jobs by order ID. */
+    private final Map<Integer, CompletableFuture<Path>> running = new ConcurrentHashMap<>();
+
+    private final LongAdder fileHits = new LongAdder();
+    private final LongAdder storedHits = new LongAdder();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates the service with the configured pool size.
+     */
+    private InvoiceService() {
+        int threads = Math.max(1, DatabaseConnection.getConfig().getInt("invoice.threads", 2));
+        int queueSize = Math.max(1, DatabaseConnection.getConfig().getInt("invoice.queueSize", 16));
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread t = new Thread(r, "invoice-worker-" + THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the shared invoice service. The pool is created on the first call.
+     *
+     * @return invoice service
+     */
+    public static synchronized InvoiceService getInstance() {
+        if (instance == null) {
+            instance = new InvoiceService();
+        }
+        return instance;
+    }
+
+    /**
+     * Finishes the running invoice jobs and stops the workers.
+     * Does nothing if the service was never used.
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) return;
+        instance.executor.shutdown();
+        try {
+            instance.executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        instance = null;
+    }
+
+    /**
+     * Gets the invoice file of an order, making it if needed.
+     *
+     * @param orderId order ID
+     * @return future with the path of the PDF file; fails with RejectedExecutionException if the service is busy
+     */
+    public CompletableFuture<Path> getInvoice(int orderId) {
+        CompletableFuture<Path> job = new CompletableFuture<>();
+        CompletableFuture<Path> existing = running.putIfAbsent(orderId, job);
+        if (existing != null) return existing;
+
+        try {
+            executor.execute(() -> {
+                try {
+                    job.complete(loadOrCreate(orderId));
+                } catch (Exception e) {
+                    job.completeExceptionally(e);
+                } finally {
+                    running.remove(orderId, job);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            running.remove(orderId, job);
+            job.completeExceptionally(new RejectedExecutionException("Too many invoices are being made, please try again.", e));
+        }
+        return job;
+    }
+
+    /**
+     * Gets the path of the invoice file of an order (the file may not exist yet).
+     *
+     * @param orderId order ID
+     * @return file path
+     */
+    public static Path invoicePath(int orderId) {
+        return InvoiceUtil.INVOICE_DIR.resolve("invoice_" + orderId + ".pdf");
+    }
+
+    /**
+     * Returns service statistics.
+     *
+     * @return statistics as text
+     */
+    @Override
+    public String toString() {
+        return String.format("InvoiceService[fileHits=%d, storedHits=%d, rendered=%d, rejected=%d, queued=%d]",
+                fileHits.sum(), storedHits.sum(), rendered.sum(), rejected.sum(), executor.getQueue().size());
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Finds or makes the invoice file. Runs on an invoice worker.
+     *
+     * @param orderId order ID
+     * @return path of the PDF file
+     * @throws Exception if the order is missing or the PDF can not be made
+     */
+    private Path loadOrCreate(int orderId) throws Exception {
+        Path path = invoicePath(orderId);
+        if (Files.isRegularFile(path) && Files.size(path) > 0) {
+            fileHits.increment();
+            return path;
+        }
+
+        // streamed from the database into a temporary file, which is renamed when complete
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        if (invoiceDAO.copyInvoiceTo(orderId, tmp)) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            storedHits.increment();
+            return path;
+        }
+
+        // the table rows have no customer and carrier names, so the full order is read here
+        Order order = orderDAO.getOrderWithDetails(orderId);
+        if (order == null) {
+            throw new IllegalArgumentException("Order " + orderId + " was not found.");
+        }
+
+        byte[] pdfBytes = InvoiceUtil.renderInvoice(order);
+        InvoiceUtil.saveInvoiceFile(path, pdfBytes);
+        if (!invoiceDAO.saveInvoice(orderId, pdfBytes)) {
+            System.err.println("Invoice of order " + orderId + " could not be saved in the database.");
+        }
+        rendered.increment();
+        return path;
+    }
+}
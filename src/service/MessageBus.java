@@ -0,0 +1,381 @@
+package service;
+
+import database.DatabaseConnection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Pushes "new message" notices to open chat windows, so they do not have to poll.
+ *
+ * MessageDAO publishes a notice after a message is saved. A chat window subscribes to its
+ * conversation and reads the new rows (MessageDAO.getMessagesSince) when a notice comes.
+ * A notice only has IDs; the text is always read from the database.
+ *
+ * Several copies of the program on one computer can share notices over a local socket
+ * (messages.busPort, 0 = off). The first copy listens on 127.0.0.1:port and passes every
+ * notice on to the other copies; the others connect to it. If that copy closes, another
+ * one takes over within about a second. After every (re)connect all subscribers get a
+ * notice with message ID 0, because notices of the time in between may be lost.
+ *
+ * Every connection has its own queue and writer thread, so publish never waits for a socket.
+ * A copy that does not read its notices fast enough is disconnected when its queue is full;
+ * it reconnects and gets the sync notice like after any other reconnect.
+ */
+public class MessageBus {
+
+    private static MessageBus instance;
+
+    /** Wait time before the transport tries to listen or connect again. */
+    private static final long RETRY_MILLIS = 1000;
+
+    /** Notices that may wait for one connection before it is dropped as too slow. */
+    private static final int PEER_QUEUE_SIZE = 1000;
+
+    /**
+     * A new message in a conversation.
+     */
+    public static class Notice {
+        private final int senderId;
+        private final int receiverId;
+        private final int messageId;
+
+        /**
+         * Creates a notice.
+         *
+         * @param senderId sender user ID
+         * @param receiverId receiver user ID
+         * @param messageId ID of the new message, or 0 if the subscriber should check for any new messages
+         */
+        public Notice(int senderId, int receiverId, int messageId) {
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.messageId = messageId;
+        }
+
+        /** @return sender user ID */
+        public int getSenderId() { return senderId; }
+
+        /** @return receiver user ID */
+        public int getReceiverId() { return receiverId; }
+
+        /** @return ID of the new message, or 0 after a reconnect */
+        public int getMessageId() { return messageId; }
+
+        private String toLine() {
+            return "M " + senderId + " " + receiverId + " " + messageId;
+        }
+
+        private static Notice parse(String line) {
+            String[] parts = line.split(" ");
+            if (parts.length != 4 || !parts[0].equals("M")) return null;
+            try {
+                return new Notice(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A subscription of one listener. Close it when the chat window closes.
+     */
+    public class Subscription implements AutoCloseable {
+        private final long key;
+        private final Consumer<Notice> listener;
+
+        private Subscription(long key, Consumer<Notice> listener) {
+            this.key = key;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops the notices of this subscription.
+         */
+        @Override
+        public void close() {
+            subscribers.computeIfPresent(key, (k, list) -> {
+                list.remove(listener);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    /**
+     * A connection to another copy. Its writer thread sends the queued notices.
+     */
+    private static class Peer {
+        private final Socket socket;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(PEER_QUEUE_SIZE);
+        private final Thread writer;
+
+        private Peer(Socket socket) {
+            this.socket = socket;
+            this.writer = new Thread(this::write, "message-bus-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /**
+         * Queues a notice line without waiting.
+         *
+         * @return false if the queue is full
+         */
+        private boolean offer(String line) {
+            return queue.offer(line);
+        }
+
+        /**
+         * Sends the queued lines until the connection closes. Runs on the writer thread.
+         */
+        private void write() {
+            try {
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                while (true) {
+                    out.println(queue.take());
+                    String line;
+                    while ((line = queue.poll()) != null) {
+                        out.println(line); // one flush for all notices that are waiting
+                    }
+                    out.flush();
+                    if (out.checkError()) break;
+                }
+            } catch (IOException | InterruptedException ignored) {
+                // the connection closed
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Closes the connection and stops the writer thread.
+         */
+        private void close() {
+            closeQuietly(socket);
+            writer.interrupt();
+        }
+    }
+
+    /** Listeners by conversation (see key). */
+    private final Map<Long, List<Consumer<Notice>>> subscribers = new ConcurrentHashMap<>();
+
+    /** Open connections to other copies. */
+    private final Set<Peer> peers = ConcurrentHashMap.newKeySet();
+
+    private final int port;
+    private volatile boolean running = true;
+    private volatile ServerSocket server;
+
+    /**
+     * Creates the bus and starts the socket transport if a port is configured.
+     */
+    private MessageBus() {
+        this.port = DatabaseConnection.getConfig().getInt("messages.busPort", 0);
+        if (port > 0) {
+            Thread t = new Thread(this::runTransport, "message-bus");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Gets the shared message bus. It is created on the first call.
+     *
+     * @return message bus
+     */
+    public static synchronized MessageBus getInstance() {
+        if (instance == null) {
+            instance = new MessageBus();
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the socket transport. Does nothing if the bus was never used.
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) return;
+        instance.running = false;
+        closeQuietly(instance.server);
+        instance.peers.forEach(Peer::close);
+        instance = null;
+    }
+
+    /**
+     * Listens to the new messages of a conversation, in both directions.
+     * The listener runs on the thread that published the notice (a database or socket thread),
+     * so it must be short; a JavaFX listener should use Platform.runLater.
+     *
+     * @param userA first user ID
+     * @param userB second user ID
+     * @param listener gets the notices
+     * @return subscription to close when the notices are not needed any more
+     */
+    public Subscription subscribe(int userA, int userB, Consumer<Notice> listener) {
+        long key = key(userA, userB);
+        subscribers.compute(key, (k, list) -> {
+            if (list == null) list = new CopyOnWriteArrayList<>();
+            list.add(listener);
+            return list;
+        });
+        return new Subscription(key, listener);
+    }
+
+    /**
+     * Tells the subscribers of a conversation (here and in the other copies) about a new message.
+     *
+     * @param senderId sender user ID
+     * @param receiverId receiver user ID
+     * @param messageId ID of the saved message
+     */
+    public void publish(int senderId, int receiverId, int messageId) {
+        Notice notice = new Notice(senderId, receiverId, messageId);
+        deliver(notice);
+        send(notice, null);
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Gets the key of a conversation; it is the same for both directions.
+     */
+    private static long key(int userA, int userB) {
+        return ((long) Math.min(userA, userB) << 32) | (Math.max(userA, userB) & 0xffffffffL);
+    }
+
+    /**
+     * Calls the local listeners of the notice's conversation.
+     */
+    private void deliver(Notice notice) {
+        List<Consumer<Notice>> listeners = subscribers.get(key(notice.senderId, notice.receiverId));
+        if (listeners == null) return;
+        for (Consumer<Notice> listener : listeners) {
+            try {
+                listener.accept(notice);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Tells every local subscriber to check for new messages (after a reconnect).
+     */
+    private void deliverSyncToAll() {
+        for (Map.Entry<Long, List<Consumer<Notice>>> entry : subscribers.entrySet()) {
+            long key = entry.getKey();
+            deliver(new Notice((int) (key >>> 32), (int) key, 0));
+        }
+    }
+
+    /**
+     * Queues a notice for the connected copies. Does not wait for the sockets.
+     * A copy whose queue is full is disconnected.
+     *
+     * @param notice notice
+     * @param except connection the notice came from (not sent back), or null
+     */
+    private void send(Notice notice, Peer except) {
+        if (peers.isEmpty()) return;
+        String line = notice.toLine();
+        for (Peer peer : peers) {
+            if (peer == except) continue;
+            if (!peer.offer(line)) {
+                System.err.println("Message bus: a connected copy is too slow, it is disconnected.");
+                peers.remove(peer);
+                peer.close();
+            }
+        }
+    }
+
+    /**
+     * Runs the socket transport: listens on the port, or connects to the copy that listens.
+     * Runs on the message-bus thread until shutdown.
+     */
+    private void runTransport() {
+        InetAddress host = InetAddress.getLoopbackAddress();
+        while (running) {
+            try (ServerSocket ss = new ServerSocket(port, 50, host)) {
+                server = ss;
+                deliverSyncToAll(); // notices of other copies may have been missed until now
+                while (running) {
+                    Socket socket = ss.accept();
+                    Thread t = new Thread(() -> serve(socket, true), "message-bus-peer");
+                    t.setDaemon(true);
+                    t.start();
+                }
+            } catch (BindException e) {
+                // another copy listens already
+                try {
+                    serve(new Socket(host, port), false);
+                } catch (IOException ignored) {
+                    // that copy closed meanwhile, try again
+                }
+            } catch (IOException e) {
+                if (running) e.printStackTrace();
+            } finally {
+                server = null;
+            }
+
+            if (!running) return;
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the notices of one connection until it closes.
+     *
+     * @param socket connection to another copy
+     * @param relay true if this copy listens and passes notices on to the other copies
+     */
+    private void serve(Socket socket, boolean relay) {
+        Peer peer = new Peer(socket);
+        peers.add(peer);
+        if (!relay) deliverSyncToAll(); // connected to the listening copy
+
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Notice notice = Notice.parse(line);
+                if (notice == null) continue;
+                deliver(notice);
+                if (relay) send(notice, peer);
+            }
+        } catch (IOException ignored) {
+            // the other copy closed
+        } finally {
+            peers.remove(peer);
+            peer.close();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (Exception ignored) {
+            // closing anyway
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package service;
+
+import dao.ProductDAO;
+import database.DatabaseConnection;
+import database.DbExecutor;
+import model.Product;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared in-memory cache of the productinfo table.
+ * The catalog is loaded once. After that only changed rows are read again:
+ * - ProductDAO marks single rows as stale after add/update/delete/reduceStock
+ * - refresh() reads rows whose updated_at is newer than the last seen version
+ * - a background task calls refresh() on a fixed interval (catalog.refreshMillis)
+ *
+ * Callers always get copies, so changing a returned Product does not change the cache.
+ */
+public class ProductCatalog {
+
+    /** Rows changed this long before the newest seen row are read again (clock/commit delay). */
+    private static final long SAFETY_WINDOW_MILLIS = 2_000;
+
+    private static final ProductCatalog INSTANCE = new ProductCatalog();
+
+    private final ProductDAO productDAO = new ProductDAO();
+
+    /** Cached rows by product ID. */
+    private final Map<Integer, Product> products = new ConcurrentHashMap<>();
+
+    /** Rows that must be read again before the next read. */
+    private final Set<Integer> staleIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean loaded;
+    private volatile boolean refreshNeeded;
+
+    /** Highest row version (updated_at in milliseconds) seen so far. */
+    private long highestVersion;
+
+    private long fullLoadCount;
+    private long deltaRefreshCount;
+    private long refreshedRowCount;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates the catalog and starts the background refresh if it is configured.
+     */
+    private ProductCatalog() {
+        long period = DatabaseConnection.getConfig().getLong("catalog.refreshMillis", 30_000L);
+        if (period > 0) {
+            startAutoRefresh(period);
+        }
+    }
+
+    /**
+     * Gets the shared catalog.
+     *
+     * @return product catalog
+     */
+    public static ProductCatalog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets all products ordered by ID.
+     *
+     * @return copies of all products
+     */
+    public List<Product> getAllProducts() {
+        ensureFresh();
+        List<Product> result = new ArrayList<>();
+        for (Product p : products.values()) {
+            result.add(new Product(p));
+        }
+        result.sort(Comparator.comparingInt(Product::getId));
+        return result;
+    }
+
+    /**
+     * Gets products with stock > 0 ordered by name.
+     *
+     * @return copies of available products
+     */
+    public List<Product> getAvailableProducts() {
+        ensureFresh();
+        List<Product> result = new ArrayList<>();
+        for (Product p : products.values()) {
+            if (p.getStock() > 0) result.add(new Product(p));
+        }
+        result.sort(Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER));
+        return result;
+    }
+
+    /**
+     * Gets one product.
+     *
+     * @param id product ID
+     * @return copy of the product, or null if it does not exist
+     */
+    public Product getProduct(int id) {
+        ensureFresh();
+        Product p = products.get(id);
+        return p == null ? null : new Product(p);
+    }
+
+    /**
+     * Gets all products ordered by ID on a database thread.
+     * The first call and stale rows need a query, so screens should use this method.
+     *
+     * @return future with copies of all products
+     */
+    public CompletableFuture<List<Product>> getAllProductsAsync() {
+        return DbExecutor.supply(this::getAllProducts);
+    }
+
+    /**
+     * Gets products with stock > 0 ordered by name on a database thread.
+     *
+     * @return future with copies of available products
+     */
+    public CompletableFuture<List<Product>> getAvailableProductsAsync() {
+        return DbExecutor.supply(this::getAvailableProducts);
+    }
+
+    /**
+     * Runs refresh() on a database thread.
+     *
+     * @return future that completes after the refresh
+     */
+    public CompletableFuture<Void> refreshAsync() {
+        return DbExecutor.run(this::refresh);
+    }
+
+    /**
+     * Marks one product as changed. It is read again on the next access.
+     *
+     * @param id product ID
+     */
+    public void invalidate(int id) {
+        staleIds.add(id);
+    }
+
+    /**
+     * Marks the whole catalog as possibly changed.
+     * The next access runs a delta refresh (not a full reload).
+     */
+    public void invalidateAll() {
+        refreshNeeded = true;
+    }
+
+    /**
+     * Reads rows that changed since the last refresh and removes deleted rows.
+     * If the catalog was never loaded, it loads everything.
+     */
+    public synchronized void refresh() {
+        if (!loaded) {
+            reload();
+            return;
+        }
+
+        Timestamp since = new Timestamp(highestVersion - SAFETY_WINDOW_MILLIS);
+        List<Product> changed = productDAO.getProductsChangedSince(since);
+        if (changed == null) return; // keep the cached rows and try again on the next access
+        refreshNeeded = false;
+        for (Product p : changed) {
+            store(p);
+        }
+
+        Set<Integer> existing = productDAO.getAllProductIds();
+        if (existing != null) {
+            products.keySet().retainAll(existing);
+        }
+
+        refreshStale();
+        deltaRefreshCount++;
+        refreshedRowCount += changed.size();
+    }
+
+    /**
+     * Loads the whole table again.
+     * If the table can not be read, the cached rows are kept.
+     */
+    public synchronized void reload() {
+        List<Product> all = productDAO.getProductsChangedSince(new Timestamp(0));
+        if (all == null) return;
+        products.clear();
+        staleIds.clear();
+        highestVersion = 0;
+        for (Product p : all) {
+            store(p);
+        }
+        loaded = true;
+        refreshNeeded = false;
+        fullLoadCount++;
+        refreshedRowCount += all.size();
+    }
+
+    /**
+     * Starts refreshing the catalog in the background.
+     *
+     * @param periodMillis time between refreshes
+     */
+    public synchronized void startAutoRefresh(long periodMillis) {
+        stopAutoRefresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (loaded) refresh();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the background refresh. */
+    public synchronized void stopAutoRefresh() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns cache statistics.
+     *
+     * @return statistics as text
+     */
+    @Override
+    public synchronized String toString() {
+        return "ProductCatalog[products=" + products.size() + ", fullLoads=" + fullLoadCount
+                + ", deltaRefreshes=" + deltaRefreshCount + ", refreshedRows=" + refreshedRowCount + "]";
+    }
+
+    // --- HELPERS ---
+
+    /** Loads, refreshes, or re-reads stale rows before a read. */
+    private synchronized void ensureFresh() {
+        if (!loaded) {
+            reload();
+        } else if (refreshNeeded) {
+            refresh();
+        } else {
+            refreshStale();
+        }
+    }
+
+    /** Re-reads rows that were marked as changed. Must hold the lock. */
+    private void refreshStale() {
+        if (staleIds.isEmpty()) return;
+
+        List<Integer> ids = new ArrayList<>(staleIds);
+        staleIds.removeAll(ids);
+
+        List<Product> found = productDAO.getProductsByIds(ids);
+        if (found == null) {
+            staleIds.addAll(ids); // database error, try again on the next read
+            return;
+        }
+        for (Product p : found) {
+            store(p);
+            ids.remove(Integer.valueOf(p.getId()));
+        }
+        // IDs that were not found are deleted products
+        for (int id : ids) {
+            products.remove(id);
+        }
+        refreshedRowCount += found.size();
+    }
+
+    /**
+     * Puts a row into the cache and updates the highest version.
+     *
+     * @param p product read from the database
+     */
+    private void store(Product p) {
+        products.put(p.getId(), p);
+        highestVersion = Math.max(highestVersion, p.getVersion());
+    }
+}
@@ -0,0 +1,232 @@
+package service;
+
+import dao.ProductDAO;
+import database.DatabaseConnection;
+import database.DbExecutor;
+import model.Product;
+import model.ProductImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shared cache of product images and card thumbnails, keyed by product ID.
+ * Product lists carry only the image hash (ETag). The bytes are loaded here when a screen needs them:
+ * - if the cached hash equals the product's hash, the cached bytes are used without a query
+ * - otherwise the cached hash is sent to the database, and the bytes are only sent back if they changed
+ * - the least recently used images are removed when the cache is larger than images.cacheBytes
+ */
+public class ProductImageStore {
+
+    /** Estimated memory of one entry without the image bytes. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final ProductImageStore INSTANCE = new ProductImageStore();
+
+    /**
+     * One cached image.
+     */
+    private static class Entry {
+        final String hash;
+        final byte[] bytes;
+        /** false after invalidate(): the next read asks the database if the hash is still current */
+        boolean valid = true;
+
+        Entry(String hash, byte[] bytes) {
+            this.hash = hash;
+            this.bytes = bytes;
+        }
+
+        int weight() {
+            return ENTRY_OVERHEAD + (bytes == null ? 0 : bytes.length);
+        }
+    }
+
+    private final ProductDAO productDAO = new ProductDAO();
+
+    /** Cached images in access order (least recently used first), see key(). */
+    private final LinkedHashMap<Long, Entry> cache = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final long maxBytes;
+    private long cachedBytes;
+
+    private long hitCount;
+    private long notModifiedCount;
+    private long loadCount;
+    private long loadedBytes;
+    private long evictionCount;
+
+    /**
+     * Creates the store with the configured size limit.
+     */
+    private ProductImageStore() {
+        this.maxBytes = DatabaseConnection.getConfig().getLong("images.cacheBytes", 32L * 1024 * 1024);
+    }
+
+    /**
+     * Gets the shared image store.
+     *
+     * @return image store
+     */
+    public static ProductImageStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the image of a product.
+     *
+     * @param product product (from the catalog, with its image hash)
+     * @return image bytes, or null if the product has no image
+     */
+    public byte[] getImage(Product product) {
+        return getImage(product.getId(), product.getImageHash());
+    }
+
+    /**
+     * Gets the image of a product.
+     *
+     * @param productId product ID
+     * @param expectedHash current image hash if known (for example from the catalog), or null
+     * @return image bytes, or null if the product has no image
+     */
+    public byte[] getImage(int productId, String expectedHash) {
+        return get(productId, expectedHash, false);
+    }
+
+    /**
+     * Gets the image of a product on a database thread.
+     *
+     * @param product product (from the catalog, with its image hash)
+     * @return future with the image bytes (null if the product has no image)
+     */
+    public CompletableFuture<byte[]> getImageAsync(Product product) {
+        return DbExecutor.supply(() -> getImage(product));
+    }
+
+    /**
+     * Gets the card thumbnail of a product.
+     * Uses the same hash as the full image.
+     *
+     * @param product product (from the catalog, with its image hash)
+     * @return thumbnail bytes, or null if the product has no image
+     */
+    public byte[] getThumbnail(Product product) {
+        return get(product.getId(), product.getImageHash(), true);
+    }
+
+    /**
+     * Marks the image of a product as possibly changed.
+     * The bytes are kept; the next read only checks the hash and downloads the image if it changed.
+     *
+     * @param productId product ID
+     */
+    public synchronized void invalidate(int productId) {
+        for (boolean thumbnail : new boolean[] {false, true}) {
+            Entry e = cache.get(key(productId, thumbnail));
+            if (e != null) e.valid = false;
+        }
+    }
+
+    /**
+     * Removes all images from the cache.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Returns cache statistics.
+     *
+     * @return statistics as text
+     */
+    @Override
+    public synchronized String toString() {
+        return "ProductImageStore[images=" + cache.size() + ", bytes=" + cachedBytes + "/" + maxBytes
+                + ", hits=" + hitCount + ", notModified=" + notModifiedCount + ", loads=" + loadCount
+                + ", loadedBytes=" + loadedBytes + ", evictions=" + evictionCount + "]";
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Gets an image or thumbnail from the cache, or from the database if needed.
+     *
+     * @param productId product ID
+     * @param expectedHash current image hash if known, or null
+     * @param thumbnail true for the card thumbnail, false for the full image
+     * @return bytes, or null if the product has no image
+     */
+    private byte[] get(int productId, String expectedHash, boolean thumbnail) {
+        long key = key(productId, thumbnail);
+        Entry cached;
+        synchronized (this) {
+            cached = cache.get(key);
+            if (cached != null && cached.valid && Objects.equals(cached.hash, expectedHash)) {
+                hitCount++;
+                return cached.bytes;
+            }
+        }
+
+        // ask the database, sending our hash so unchanged bytes are not transferred again
+        String knownHash = cached == null ? null : cached.hash;
+        ProductImage image = thumbnail
+                ? productDAO.getThumbnail(productId, knownHash)
+                : productDAO.getImage(productId, knownHash);
+        if (image == null) {
+            // product was deleted or the query failed
+            return cached == null ? null : cached.bytes;
+        }
+
+        synchronized (this) {
+            if (!image.isModified()) {
+                notModifiedCount++;
+                cached.valid = true;
+                return cached.bytes;
+            }
+            loadCount++;
+            if (image.getBytes() != null) loadedBytes += image.getBytes().length;
+            put(key, new Entry(image.getHash(), image.getBytes()));
+            return image.getBytes();
+        }
+    }
+
+    /**
+     * Gets the cache key of an image.
+     *
+     * @param productId product ID
+     * @param thumbnail true for the card thumbnail
+     * @return key (product ID in the high bits, variant in the lowest bit)
+     */
+    private static long key(int productId, boolean thumbnail) {
+        return ((long) productId << 1) | (thumbnail ? 1 : 0);
+    }
+
+    /**
+     * Adds an entry and removes least recently used entries until the cache fits. Must hold the lock.
+     *
+     * @param key cache key
+     * @param entry new entry
+     */
+    private void put(long key, Entry entry) {
+        Entry old = cache.remove(key);
+        if (old != null) cachedBytes -= old.weight();
+
+        // an image larger than the whole cache is returned but not kept
+        if (entry.weight() > maxBytes) return;
+
+        cache.put(key, entry);
+        cachedBytes += entry.weight();
+
+        Iterator<Map.Entry<Long, Entry>> it = cache.entrySet().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            cachedBytes -= eldest.weight();
+            evictionCount++;
+        }
+    }
+}
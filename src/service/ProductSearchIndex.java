@@ -0,0 +1,206 @@
+package service;
+
+import model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Search index over product names and types.
+ * A product matches if its name or type contains the search text (like String.contains),
+ * but the index does not scan every product:
+ * - all 1, 2 and 3 letter parts (n-grams) of every name and type are indexed once
+ * - a query of up to 3 letters is one lookup
+ * - a longer query intersects the lists of its 3-grams and checks only those products
+ *
+ * Text is folded with Turkish rules (İ/I → i/ı) and Turkish letters are matched without
+ * their marks, so "cilek", "ÇİLEK" and "Çilek" find the same product.
+ * The index is immutable; build a new one when the product list changes.
+ */
+public class ProductSearchIndex {
+
+    private static final Locale TURKISH = Locale.forLanguageTag("tr");
+
+    /** Longest indexed n-gram. */
+    private static final int MAX_GRAM = 3;
+
+    private static final int[] NO_MATCH = new int[0];
+
+    private final List<Product> products;
+    private final String[] names;
+    private final String[] types;
+
+    /** Indexes (into products) of the products that contain each n-gram, in ascending order. */
+    private final Map<String, int[]> postings;
+
+    /**
+     * Builds the index. This can take some time for big catalogs,
+     * so it should be built on a database/background thread.
+     *
+     * @param products products to index
+     */
+    public ProductSearchIndex(List<Product> products) {
+        this.products = List.copyOf(products);
+        this.names = new String[this.products.size()];
+        this.types = new String[this.products.size()];
+
+        Map<String, IntList> building = new HashMap<>();
+        for (int i = 0; i < this.products.size(); i++) {
+            Product p = this.products.get(i);
+            names[i] = normalize(p.getName());
+            types[i] = normalize(p.getType());
+            addGrams(building, names[i], i);
+            addGrams(building, types[i], i);
+        }
+
+        this.postings = new HashMap<>(building.size() * 2);
+        building.forEach((gram, list) -> postings.put(gram, list.toArray()));
+    }
+
+    /**
+     * Gets the indexed products.
+     *
+     * @return products in the original order
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Creates a filter for a search text.
+     *
+     * @param query search text (may be null or empty)
+     * @return filter that accepts the matching products
+     */
+    public Predicate<Product> matcher(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) return p -> true;
+
+        Set<Integer> ids = new HashSet<>();
+        for (int i : search(q)) {
+            ids.add(products.get(i).getId());
+        }
+        return p -> ids.contains(p.getId());
+    }
+
+    /**
+     * Folds text for searching: Turkish lower case, then Turkish letters without marks.
+     *
+     * @param text text to fold (may be null)
+     * @return folded text, empty for null
+     */
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String lower = text.toLowerCase(TURKISH);
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            switch (c) {
+                case 'ı', 'î' -> sb.append('i');
+                case 'ç' -> sb.append('c');
+                case 'ğ' -> sb.append('g');
+                case 'ö' -> sb.append('o');
+                case 'ş' -> sb.append('s');
+                case 'ü', 'û' -> sb.append('u');
+                case 'â' -> sb.append('a');
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Finds the products whose name or type contains the folded query.
+     *
+     * @param q folded, not empty query
+     * @return indexes of matching products
+     */
+    private int[] search(String q) {
+        if (q.length() <= MAX_GRAM) {
+            // every part of up to MAX_GRAM letters is indexed, so the list is already exact
+            return postings.getOrDefault(q, NO_MATCH);
+        }
+
+        List<int[]> lists = new ArrayList<>();
+        for (int i = 0; i + MAX_GRAM <= q.length(); i++) {
+            int[] list = postings.get(q.substring(i, i + MAX_GRAM));
+            if (list == null) return NO_MATCH;
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(l -> l.length));
+
+        int[] candidates = lists.get(0);
+        for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+            candidates = intersect(candidates, lists.get(i));
+        }
+
+        // the 3-grams can be in different places, so check the real text
+        int n = 0;
+        int[] result = new int[candidates.length];
+        for (int i : candidates) {
+            if (names[i].contains(q) || types[i].contains(q)) result[n++] = i;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Intersects two sorted lists.
+     *
+     * @param a sorted list
+     * @param b sorted list
+     * @return values that are in both lists
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Adds all n-grams of a text for one product.
+     *
+     * @param building n-gram lists being built
+     * @param text folded text
+     * @param doc product index
+     */
+    private static void addGrams(Map<String, IntList> building, String text, int doc) {
+        for (int len = 1; len <= MAX_GRAM; len++) {
+            for (int start = 0; start + len <= text.length(); start++) {
+                building.computeIfAbsent(text.substring(start, start + len), g -> new IntList()).add(doc);
+            }
+        }
+    }
+
+    /**
+     * Growing list of ascending product indexes without duplicates.
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int v) {
+            if (size > 0 && values[size - 1] == v) return; // same product again
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
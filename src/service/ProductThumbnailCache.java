@@ -0,0 +1,137 @@
+package service;
+
+import database.DatabaseConnection;
+import database.DbExecutor;
+import javafx.scene.image.Image;
+import model.Product;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cache of decoded card thumbnails, keyed by product ID and image hash.
+ * Rendering the product grid again (for example on every search keystroke)
+ * reuses the decoded Image instead of decoding the bytes again.
+ * The number of kept images is limited by images.decodedCacheSize.
+ */
+public class ProductThumbnailCache {
+
+    private static final ProductThumbnailCache INSTANCE = new ProductThumbnailCache();
+
+    /**
+     * One decoded thumbnail.
+     */
+    private static class Entry {
+        final String hash;
+        final Image image;
+
+        Entry(String hash, Image image) {
+            this.hash = hash;
+            this.image = image;
+        }
+    }
+
+    private final int maxImages;
+
+    /** Decoded thumbnails in access order (least recently used first). */
+    private final LinkedHashMap<Integer, Entry> cache;
+
+    private long hitCount;
+    private long decodeCount;
+
+    /**
+     * Creates the cache with the configured size limit.
+     */
+    private ProductThumbnailCache() {
+        this.maxImages = DatabaseConnection.getConfig().getInt("images.decodedCacheSize", 256);
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > maxImages;
+            }
+        };
+    }
+
+    /**
+     * Gets the shared thumbnail cache.
+     *
+     * @return thumbnail cache
+     */
+    public static ProductThumbnailCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the decoded card thumbnail of a product if it is already in the cache.
+     * This never runs a query, so it can be called on the JavaFX thread.
+     *
+     * @param product product (from the catalog, with its image hash)
+     * @return thumbnail image, or null if it is not cached
+     */
+    public synchronized Image getCachedImage(Product product) {
+        Entry e = cache.get(product.getId());
+        if (e != null && e.hash != null && e.hash.equals(product.getImageHash())) {
+            hitCount++;
+            return e.image;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the decoded card thumbnail of a product.
+     * Cached images are returned at once; others are loaded and decoded on a database thread.
+     *
+     * @param product product (from the catalog, with its image hash)
+     * @return future with the thumbnail image (null if the product has no image)
+     */
+    public CompletableFuture<Image> getImageAsync(Product product) {
+        Image cached = getCachedImage(product);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        return DbExecutor.supply(() -> getImage(product));
+    }
+
+    /**
+     * Gets the decoded card thumbnail of a product.
+     * This may run a query, so it should not be called on the JavaFX thread.
+     *
+     * @param product product (from the catalog, with its image hash)
+     * @return thumbnail image, or null if the product has no image
+     */
+    public Image getImage(Product product) {
+        Image cached = getCachedImage(product);
+        if (cached != null) return cached;
+
+        byte[] bytes = ProductImageStore.getInstance().getThumbnail(product);
+        if (bytes == null) return null;
+        Image image = new Image(new ByteArrayInputStream(bytes));
+
+        synchronized (this) {
+            decodeCount++;
+            // without a hash we cannot tell later if the image changed, so it is not kept
+            if (product.getImageHash() != null) {
+                cache.put(product.getId(), new Entry(product.getImageHash(), image));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Removes all decoded images.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns cache statistics.
+     *
+     * @return statistics as text
+     */
+    @Override
+    public synchronized String toString() {
+        return "ProductThumbnailCache[images=" + cache.size() + "/" + maxImages
+                + ", hits=" + hitCount + ", decodes=" + decodeCount + "]";
+    }
+}
@@ -0,0 +1,77 @@
+package service;
+
+import dao.ReportDAO;
+import database.DatabaseConnection;
+import database.DbExecutor;
+import model.DailySummary;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Daily order numbers for the owner dashboard.
+ * The numbers come from the order_daily_summary table, which OrderDAO keeps up to date
+ * when an order is placed, delivered or cancelled. So the dashboard reads one row per day
+ * instead of every order.
+ *
+ * The rows are cached in memory. The cache is dropped after a local order change
+ * and is read again after reports.cacheMillis, so changes of other clients show up too.
+ */
+public class ReportingService {
+
+    private static final ReportingService INSTANCE = new ReportingService();
+
+    private final ReportDAO reportDAO = new ReportDAO();
+    private final long maxAgeMillis;
+
+    private List<DailySummary> days;
+    private long loadedAt;
+
+    /**
+     * Creates the service with the configured cache time.
+     */
+    private ReportingService() {
+        this.maxAgeMillis = DatabaseConnection.getConfig().getLong("reports.cacheMillis", 30_000L);
+    }
+
+    /**
+     * Gets the shared reporting service.
+     *
+     * @return reporting service
+     */
+    public static ReportingService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the summary of every order date, oldest first.
+     * The table is only read if the cache is empty or too old.
+     *
+     * @return daily summaries (read-only)
+     */
+    public synchronized List<DailySummary> getDailySummaries() {
+        long now = System.currentTimeMillis();
+        if (days == null || now - loadedAt > maxAgeMillis) {
+            days = List.copyOf(reportDAO.getDailySummaries());
+            loadedAt = now;
+        }
+        return days;
+    }
+
+    /**
+     * Gets the daily summaries on a database thread.
+     *
+     * @return future with the daily summaries
+     */
+    public CompletableFuture<List<DailySummary>> getDailySummariesAsync() {
+        return DbExecutor.supply(this::getDailySummaries);
+    }
+
+    /**
+     * Drops the cache, so the next read gets the new numbers.
+     * OrderDAO calls this after an order change is committed.
+     */
+    public synchronized void invalidate() {
+        days = null;
+    }
+}
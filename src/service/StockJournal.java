@@ -0,0 +1,219 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of the stock changes of the StockLedger.
+ * Every change is written and forced to disk before the order continues,
+ * so changes that were not yet written to the database survive a crash.
+ *
+ * One line is one change with a sequence number: "17 3:-2.0,8:-0.5".
+ * The journal is split into segment files (stock-ledger-N.log). A flush closes the current
+ * segment; when the database has the flushed changes, the closed segments are deleted.
+ */
+class StockJournal {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("stock-ledger-(\\d+)\\.log");
+
+    /**
+     * Changes read from the journal files at start-up.
+     */
+    static class Recovery {
+        /** Sum of the changes per product with a sequence number above the flushed one. */
+        final Map<Integer, Double> deltas = new HashMap<>();
+        /** Highest sequence number found in the files. */
+        long maxSeq;
+        /** Number of changes that were not flushed yet. */
+        int entryCount;
+    }
+
+    private final Path dir;
+    private long lastSeq;
+    private long segment;
+    private FileChannel channel;
+    private int segmentEntries;
+
+    /**
+     * Opens a new segment after the existing ones.
+     *
+     * @param dir journal folder (created if missing)
+     * @param lastSeq highest sequence number used so far
+     * @throws IOException if the folder or file can not be created
+     */
+    StockJournal(Path dir, long lastSeq) throws IOException {
+        this.dir = dir;
+        this.lastSeq = lastSeq;
+        Files.createDirectories(dir);
+        for (Path p : segments(dir)) {
+            segment = Math.max(segment, segmentNumber(p));
+        }
+        openNextSegment();
+    }
+
+    /**
+     * Writes one change and forces it to disk.
+     *
+     * @param deltas stock change per product (negative for sales)
+     * @return sequence number of the change
+     * @throws IOException if the write fails
+     */
+    synchronized long append(Map<Integer, Double> deltas) throws IOException {
+        long seq = lastSeq + 1;
+        StringBuilder line = new StringBuilder().append(seq).append(' ');
+        boolean first = true;
+        for (Map.Entry<Integer, Double> e : deltas.entrySet()) {
+            if (!first) line.append(',');
+            line.append(e.getKey()).append(':').append(e.getValue());
+            first = false;
+        }
+        line.append('\n');
+
+        ByteBuffer buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+
+        lastSeq = seq;
+        segmentEntries++;
+        return seq;
+    }
+
+    /**
+     * Closes the current segment and starts a new one.
+     * Does nothing if the current segment is empty.
+     *
+     * @return sequence number of the last change in the closed segments
+     * @throws IOException if the new segment can not be created
+     */
+    synchronized long rotate() throws IOException {
+        if (segmentEntries > 0) {
+            channel.close();
+            openNextSegment();
+        }
+        return lastSeq;
+    }
+
+    /**
+     * Deletes the closed segments. Their changes must already be in the database.
+     */
+    synchronized void deleteClosedSegments() {
+        try {
+            for (Path p : segments(dir)) {
+                if (segmentNumber(p) < segment) Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            e.printStackTrace(); // they are skipped at the next start-up (already flushed)
+        }
+    }
+
+    /**
+     * Closes the current segment file.
+     */
+    synchronized void close() {
+        try {
+            channel.close();
+            if (segmentEntries == 0) Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads all journal files of a folder.
+     * A last line that was only partly written (crash during the write) is ignored.
+     *
+     * @param dir journal folder
+     * @param flushedSeq sequence number that the database already has
+     * @return changes that are not in the database yet
+     * @throws IOException if a file can not be read
+     */
+    static Recovery read(Path dir, long flushedSeq) throws IOException {
+        Recovery recovery = new Recovery();
+        recovery.maxSeq = flushedSeq;
+        if (!Files.isDirectory(dir)) return recovery;
+
+        for (Path p : segments(dir)) {
+            String text = Files.readString(p, StandardCharsets.UTF_8);
+            int end = text.lastIndexOf('\n'); // text after the last line end was not fully written
+            if (end < 0) continue;
+
+            for (String line : text.substring(0, end).split("\n")) {
+                if (line.isBlank()) continue;
+
+                int space = line.indexOf(' ');
+                long seq = Long.parseLong(line.substring(0, space));
+                recovery.maxSeq = Math.max(recovery.maxSeq, seq);
+                if (seq <= flushedSeq) continue;
+
+                for (String part : line.substring(space + 1).split(",")) {
+                    int colon = part.indexOf(':');
+                    recovery.deltas.merge(Integer.parseInt(part.substring(0, colon)),
+                            Double.parseDouble(part.substring(colon + 1)), Double::sum);
+                }
+                recovery.entryCount++;
+            }
+        }
+        return recovery;
+    }
+
+    /**
+     * Deletes all journal files of a folder, after recovery wrote them to the database.
+     *
+     * @param dir journal folder
+     * @throws IOException if a file can not be deleted
+     */
+    static void deleteAll(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        for (Path p : segments(dir)) {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    // --- HELPERS ---
+
+    private void openNextSegment() throws IOException {
+        segment++;
+        channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentEntries = 0;
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve("stock-ledger-" + number + ".log");
+    }
+
+    /**
+     * Lists the segment files of a folder in segment order.
+     *
+     * @param dir journal folder
+     * @return segment files
+     * @throws IOException if the folder can not be read
+     */
+    private static List<Path> segments(Path dir) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches()).forEach(result::add);
+        }
+        result.sort((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+        return result;
+    }
+
+    private static long segmentNumber(Path p) {
+        Matcher m = SEGMENT_NAME.matcher(p.getFileName().toString());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+}
@@ -0,0 +1,595 @@
+package service;
+
+import database.DatabaseConfig;
+import database.DatabaseConnection;
+import model.CartItem;
+import model.Product;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional in-memory stock of all products, for high checkout load (stock.ledger.enabled).
+ * Checkouts take stock from memory instead of locking the productinfo rows.
+ * The changes are collected per product and written to the database in one batch
+ * every stock.ledger.flushMillis, so the database gets a few updates per second
+ * instead of one per order.
+ *
+ * How it works:
+ * - products are spread over stripes by ID; each stripe has its own lock and keeps
+ *   the available stock and the not yet written change in primitive arrays
+ * - every change is first written to a journal file (StockJournal) and forced to disk
+ * - a flush writes the collected changes and the last journal sequence number
+ *   (stock_ledger_state) in one transaction; after a crash the journal changes with a
+ *   higher number are written at the next start-up, so nothing is lost or written twice
+ *
+ * The ledger only knows the stock changes of this application, so it must only be used
+ * when one application instance sells from the database. If an order fails after its
+ * stock was taken, the stock is given back; if the application crashes in between,
+ * the stock stays taken (never oversold).
+ */
+public class StockLedger {
+
+    private static volatile StockLedger instance;
+
+    private final Stripe[] stripes;
+    private final StockJournal journal;
+    private final ScheduledExecutorService flusher;
+
+    /** Held during a flush and while a product is read again from the database. */
+    private final Object flushLock = new Object();
+
+    private final LongAdder reservedCount = new LongAdder();
+    private final LongAdder conflictCount = new LongAdder();
+    private final LongAdder releasedCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushedRowCount = new LongAdder();
+    private final LongAdder flushFailureCount = new LongAdder();
+
+    /**
+     * Stock of the products of one stripe.
+     * The arrays are an open addressing table keyed by product ID.
+     */
+    private static class Stripe {
+        private static final int EMPTY = Integer.MIN_VALUE;
+
+        final ReentrantLock lock = new ReentrantLock();
+        int[] ids = newIds(16);
+        double[] available = new double[16];
+        double[] pending = new double[16];
+        int size;
+
+        /**
+         * Finds the slot of a product.
+         *
+         * @param id product ID
+         * @return slot index, or -1 if the product is not in the stripe
+         */
+        int find(int id) {
+            int mask = ids.length - 1;
+            for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+                if (ids[i] == id) return i;
+                if (ids[i] == EMPTY) return -1;
+            }
+        }
+
+        /**
+         * Finds or adds the slot of a product.
+         *
+         * @param id product ID
+         * @return slot index
+         */
+        int slot(int id) {
+            int i = find(id);
+            if (i >= 0) return i;
+            if ((size + 1) * 2 > ids.length) grow();
+            int mask = ids.length - 1;
+            i = mix(id) & mask;
+            while (ids[i] != EMPTY) i = (i + 1) & mask;
+            ids[i] = id;
+            size++;
+            return i;
+        }
+
+        private void grow() {
+            int[] oldIds = ids;
+            double[] oldAvailable = available;
+            double[] oldPending = pending;
+            ids = newIds(oldIds.length * 2);
+            available = new double[ids.length];
+            pending = new double[ids.length];
+            size = 0;
+            for (int j = 0; j < oldIds.length; j++) {
+                if (oldIds[j] == EMPTY) continue;
+                int i = slot(oldIds[j]);
+                available[i] = oldAvailable[j];
+                pending[i] = oldPending[j];
+            }
+        }
+
+        private static int[] newIds(int capacity) {
+            int[] a = new int[capacity];
+            Arrays.fill(a, EMPTY);
+            return a;
+        }
+
+        private static int mix(int id) {
+            return id * 0x9E3779B9 >>> 7;
+        }
+    }
+
+    /**
+     * Checks if the ledger is turned on in the configuration.
+     *
+     * @return true if stock.ledger.enabled is true
+     */
+    public static boolean isEnabled() {
+        return DatabaseConnection.getConfig().getBoolean("stock.ledger.enabled", false);
+    }
+
+    /**
+     * Gets the shared ledger. The first call writes left-over journal changes to the database,
+     * loads the stock of all products and starts the background flush.
+     *
+     * @return stock ledger, or null if the ledger is turned off
+     */
+    public static synchronized StockLedger getInstance() {
+        if (instance == null && isEnabled()) {
+            try {
+                instance = new StockLedger(DatabaseConnection.getConfig());
+            } catch (IOException | SQLException e) {
+                throw new IllegalStateException("Stock ledger could not be started", e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the stock of a product that can still be sold.
+     * If the ledger is running, the value comes from memory; otherwise it is the product's stock.
+     * This never runs a query, so it can be called on the JavaFX thread.
+     *
+     * @param product product (from the catalog)
+     * @return available stock
+     */
+    public static double availableStock(Product product) {
+        StockLedger ledger = instance;
+        double available = ledger == null ? Double.NaN : ledger.getAvailable(product.getId());
+        return Double.isNaN(available) ? product.getStock() : available;
+    }
+
+    /**
+     * Tells the ledger that the stock of a product was changed in the database
+     * (for example by the owner). Does nothing if the ledger is not running.
+     *
+     * @param productId product ID
+     */
+    public static void productChanged(int productId) {
+        StockLedger ledger = instance;
+        if (ledger != null) ledger.reload(productId);
+    }
+
+    /**
+     * Writes the last changes and stops the ledger. Does nothing if the ledger is not running.
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) return;
+        // no interrupt: an interrupted file write would close the journal
+        instance.flusher.shutdown();
+        try {
+            instance.flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        instance.flush();
+        instance.journal.close();
+        instance = null;
+    }
+
+    /**
+     * Creates the ledger: recovery, full load and background flush.
+     *
+     * @param config database configuration
+     * @throws IOException if the journal can not be read or created
+     * @throws SQLException if the database can not be read or updated
+     */
+    private StockLedger(DatabaseConfig config) throws IOException, SQLException {
+        int stripeCount = Integer.highestOneBit(Math.max(1, config.getInt("stock.ledger.stripes", 16)));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        Path dir = Path.of(config.get("stock.ledger.journalDir", "journal"));
+        long lastSeq = recover(dir);
+        this.journal = new StockJournal(dir, lastSeq);
+        loadAll();
+
+        long period = config.getLong("stock.ledger.flushMillis", 200L);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-ledger-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the stock that can still be sold. This never runs a query,
+     * so it can be called on the JavaFX thread.
+     *
+     * @param productId product ID
+     * @return available stock, or NaN if the product is not known yet
+     */
+    public double getAvailable(int productId) {
+        Stripe s = stripeOf(productId);
+        s.lock.lock();
+        try {
+            int i = s.find(productId);
+            return i < 0 ? Double.NaN : s.available[i];
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the stock of all cart lines, or nothing if one line is short.
+     * The change is in the journal when this method returns.
+     *
+     * @param items cart lines
+     * @throws InsufficientStockException if one or more lines do not have enough stock
+     */
+    public void reserve(List<CartItem> items) throws InsufficientStockException {
+        Map<Integer, Double> quantities = new TreeMap<>();
+        Map<Integer, String> names = new TreeMap<>();
+        for (CartItem item : items) {
+            if (item.getQuantity() <= 0) continue;
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Double::sum);
+            names.putIfAbsent(item.getProduct().getId(), item.getProduct().getName());
+        }
+        if (quantities.isEmpty()) return;
+
+        for (int id : quantities.keySet()) {
+            if (Double.isNaN(getAvailable(id))) reload(id); // added after the start-up load
+        }
+
+        List<Stripe> locked = lockStripes(quantities.keySet());
+        try {
+            List<InsufficientStockException.Shortfall> shortfalls = new ArrayList<>();
+            for (Map.Entry<Integer, Double> e : quantities.entrySet()) {
+                Stripe s = stripeOf(e.getKey());
+                int i = s.find(e.getKey());
+                double available = i < 0 ? 0 : s.available[i];
+                if (i < 0 || available < e.getValue()) {
+                    shortfalls.add(new InsufficientStockException.Shortfall(
+                            e.getKey(), names.get(e.getKey()), e.getValue(), available));
+                }
+            }
+            if (!shortfalls.isEmpty()) {
+                conflictCount.increment();
+                throw new InsufficientStockException(shortfalls);
+            }
+
+            Map<Integer, Double> deltas = new TreeMap<>();
+            quantities.forEach((id, qty) -> deltas.put(id, -qty));
+            apply(deltas);
+            reservedCount.increment();
+        } finally {
+            unlockStripes(locked);
+        }
+    }
+
+    /**
+     * Gives stock back, for example for a cancelled or failed order.
+     * The change is in the journal when this method returns.
+     *
+     * @param quantities quantity per product ID
+     */
+    public void release(Map<Integer, Double> quantities) {
+        Map<Integer, Double> deltas = new TreeMap<>();
+        quantities.forEach((id, qty) -> {
+            if (qty > 0) deltas.merge(id, qty, Double::sum);
+        });
+        if (deltas.isEmpty()) return;
+
+        List<Stripe> locked = lockStripes(deltas.keySet());
+        try {
+            apply(deltas);
+            releasedCount.increment();
+        } finally {
+            unlockStripes(locked);
+        }
+    }
+
+    /**
+     * Gives the stock of cart lines back.
+     *
+     * @param items cart lines
+     */
+    public void release(List<CartItem> items) {
+        Map<Integer, Double> quantities = new TreeMap<>();
+        for (CartItem item : items) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Double::sum);
+        }
+        release(quantities);
+    }
+
+    /**
+     * Writes the collected changes to the database in one transaction.
+     * If the write fails, the changes are kept for the next flush.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Integer, Double> deltas = new TreeMap<>();
+            long seq;
+
+            // stripes first, then the journal: the same lock order as reserve/release
+            List<Stripe> locked = lockStripes(null);
+            try {
+                for (Stripe s : stripes) {
+                    for (int i = 0; i < s.ids.length; i++) {
+                        if (s.ids[i] != Stripe.EMPTY && s.pending[i] != 0) {
+                            deltas.put(s.ids[i], s.pending[i]);
+                            s.pending[i] = 0;
+                        }
+                    }
+                }
+                seq = journal.rotate();
+            } catch (IOException e) {
+                restorePending(deltas, false);
+                throw new UncheckedIOException(e);
+            } finally {
+                unlockStripes(locked);
+            }
+            if (deltas.isEmpty()) return;
+
+            try {
+                writeDeltas(deltas, seq);
+            } catch (SQLException e) {
+                flushFailureCount.increment();
+                restorePending(deltas, true);
+                e.printStackTrace();
+                return;
+            }
+
+            journal.deleteClosedSegments();
+            flushCount.increment();
+            flushedRowCount.add(deltas.size());
+            for (int id : deltas.keySet()) {
+                ProductCatalog.getInstance().invalidate(id); // stock changed
+            }
+        }
+    }
+
+    /**
+     * Returns ledger statistics.
+     *
+     * @return statistics as text
+     */
+    @Override
+    public String toString() {
+        int products = 0;
+        int pendingProducts = 0;
+        for (Stripe s : stripes) {
+            s.lock.lock();
+            try {
+                products += s.size;
+                for (int i = 0; i < s.ids.length; i++) {
+                    if (s.ids[i] != Stripe.EMPTY && s.pending[i] != 0) pendingProducts++;
+                }
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        return "StockLedger[products=" + products + ", stripes=" + stripes.length
+                + ", reserved=" + reservedCount.sum() + ", conflicts=" + conflictCount.sum()
+                + ", released=" + releasedCount.sum() + ", pendingProducts=" + pendingProducts
+                + ", flushes=" + flushCount.sum() + ", flushedRows=" + flushedRowCount.sum()
+                + ", flushFailures=" + flushFailureCount.sum() + "]";
+    }
+
+    // --- HELPERS ---
+
+    private Stripe stripeOf(int productId) {
+        return stripes[productId & (stripes.length - 1)];
+    }
+
+    /**
+     * Locks the stripes of some products in stripe order, so two callers can not deadlock.
+     *
+     * @param ids product IDs, or null for all stripes
+     * @return locked stripes
+     */
+    private List<Stripe> lockStripes(Iterable<Integer> ids) {
+        boolean[] used = new boolean[stripes.length];
+        if (ids == null) {
+            Arrays.fill(used, true);
+        } else {
+            for (int id : ids) used[id & (stripes.length - 1)] = true;
+        }
+        List<Stripe> locked = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            if (!used[i]) continue;
+            stripes[i].lock.lock();
+            locked.add(stripes[i]);
+        }
+        return locked;
+    }
+
+    private static void unlockStripes(List<Stripe> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).lock.unlock();
+        }
+    }
+
+    /**
+     * Writes changes to the journal and then to memory. The stripes must be locked.
+     *
+     * @param deltas stock change per product
+     */
+    private void apply(Map<Integer, Double> deltas) {
+        try {
+            journal.append(deltas);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Stock journal write failed", e);
+        }
+        deltas.forEach((id, delta) -> {
+            Stripe s = stripeOf(id);
+            int i = s.slot(id);
+            s.available[i] += delta;
+            s.pending[i] += delta;
+        });
+    }
+
+    /**
+     * Puts changes that were not written back into the pending values.
+     *
+     * @param deltas changes taken by a flush
+     * @param lock true if the stripes are not locked yet
+     */
+    private void restorePending(Map<Integer, Double> deltas, boolean lock) {
+        List<Stripe> locked = lock ? lockStripes(deltas.keySet()) : List.of();
+        try {
+            deltas.forEach((id, delta) -> {
+                Stripe s = stripeOf(id);
+                s.pending[s.slot(id)] += delta;
+            });
+        } finally {
+            unlockStripes(locked);
+        }
+    }
+
+    /**
+     * Reads the stock of one product from the database again.
+     * The available stock is the database stock plus the changes that are not written yet.
+     *
+     * @param productId product ID
+     */
+    private void reload(int productId) {
+        synchronized (flushLock) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT stock FROM productinfo WHERE id = ?")) {
+                stmt.setInt(1, productId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    Stripe s = stripeOf(productId);
+                    s.lock.lock();
+                    try {
+                        if (rs.next()) {
+                            int i = s.slot(productId);
+                            s.available[i] = rs.getDouble("stock") + s.pending[i];
+                        }
+                    } finally {
+                        s.lock.unlock();
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Loads the stock of all products. Called once, before any change.
+     *
+     * @throws SQLException if the query fails
+     */
+    private void loadAll() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, stock FROM productinfo")) {
+            while (rs.next()) {
+                Stripe s = stripeOf(rs.getInt("id"));
+                s.available[s.slot(rs.getInt("id"))] = rs.getDouble("stock");
+            }
+        }
+    }
+
+    /**
+     * Writes journal changes that are not in the database yet (after a crash).
+     *
+     * @param dir journal folder
+     * @return highest used sequence number
+     * @throws IOException if the journal can not be read
+     * @throws SQLException if the changes can not be written
+     */
+    private long recover(Path dir) throws IOException, SQLException {
+        long flushedSeq;
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_seq FROM stock_ledger_state WHERE id = 1")) {
+            flushedSeq = rs.next() ? rs.getLong("last_seq") : 0;
+        }
+
+        StockJournal.Recovery recovery = StockJournal.read(dir, flushedSeq);
+        if (!recovery.deltas.isEmpty()) {
+            writeDeltas(new TreeMap<>(recovery.deltas), recovery.maxSeq);
+            System.out.println("Stock ledger recovered " + recovery.entryCount + " change(s) from the journal");
+        }
+        StockJournal.deleteAll(dir);
+        return recovery.maxSeq;
+    }
+
+    /**
+     * Writes stock changes and the journal position in one transaction.
+     *
+     * @param deltas stock change per product, in product ID order
+     * @param seq journal sequence number that is included in the changes
+     * @throws SQLException if the write fails (nothing is written)
+     */
+    private static void writeDeltas(Map<Integer, Double> deltas, long seq) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stock = conn.prepareStatement(
+                         "UPDATE productinfo SET stock = stock + ? WHERE id = ?");
+                 PreparedStatement state = conn.prepareStatement(
+                         "UPDATE stock_ledger_state SET last_seq = ? WHERE id = 1 AND last_seq < ?")) {
+                for (Map.Entry<Integer, Double> e : deltas.entrySet()) {
+                    stock.setDouble(1, e.getValue());
+                    stock.setInt(2, e.getKey());
+                    stock.addBatch();
+                }
+                stock.executeBatch();
+
+                state.setLong(1, seq);
+                state.setLong(2, seq);
+                state.executeUpdate();
+            }
+            conn.commit();
+
+        } catch (SQLException e) {
+            if (conn != null) {
+                try { conn.rollback(); } catch (SQLException ex) { ex.printStackTrace(); }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) { e.printStackTrace(); }
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package service;
+
+import model.CartItem;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Takes the stock of a group of orders inside the checkout transaction (allocate, then apply).
+ * The stock rows of all products of the orders are locked (SELECT ... FOR UPDATE, in product ID order),
+ * the orders are checked against that stock one after the other, and then all accepted lines are
+ * taken with one batched conditional update (stock = stock - ? WHERE id = ? AND stock >= ?),
+ * so stock can never go below zero, even when many customers check out the same product at the same time.
+ *
+ * Rows are always locked in product ID order, so two checkouts can not deadlock.
+ * A short order gets the details of every short line; the other orders of the group are not affected.
+ * Throughput and conflict numbers are kept for monitoring (see toString()).
+ */
+public class StockReservation {
+
+    private static final StockReservation INSTANCE = new StockReservation();
+
+    private static final String RESERVE_SQL =
+            "UPDATE productinfo SET stock = stock - ? WHERE id = ? AND stock >= ?";
+
+    private final LongAdder groupCount = new LongAdder();
+    private final LongAdder attemptCount = new LongAdder();
+    private final LongAdder reservedCount = new LongAdder();
+    private final LongAdder conflictCount = new LongAdder();
+    private final LongAdder reservedLineCount = new LongAdder();
+    private final LongAdder shortLineCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Result of checking a group of orders against the locked stock.
+     * Nothing is written until apply() is called.
+     */
+    public static class Allocation {
+        private final List<Map<Integer, Double>> quantities = new ArrayList<>();
+        private final List<List<InsufficientStockException.Shortfall>> shortfalls = new ArrayList<>();
+        private final Map<Integer, Double> left;
+        private final long start = System.nanoTime();
+
+        private Allocation(Map<Integer, Double> stock) {
+            this.left = stock;
+        }
+
+        /**
+         * Checks if the stock of an order is reserved.
+         *
+         * @param order index of the order in the group
+         * @return true if every line of the order has enough stock
+         */
+        public boolean isReserved(int order) {
+            return shortfalls.get(order) == null;
+        }
+
+        /**
+         * Gets the short lines of an order.
+         *
+         * @param order index of the order in the group
+         * @return short lines, or null if the order is reserved
+         */
+        public List<InsufficientStockException.Shortfall> getShortfalls(int order) {
+            return shortfalls.get(order);
+        }
+
+        /**
+         * Drops a reserved order, for example because its coupon was already used.
+         * Its stock is not taken by apply().
+         *
+         * @param order index of the order in the group
+         */
+        public void reject(int order) {
+            if (!isReserved(order)) return;
+            quantities.get(order).forEach((id, qty) -> left.merge(id, qty, Double::sum));
+            shortfalls.set(order, List.of());
+        }
+    }
+
+    private StockReservation() {
+    }
+
+    /**
+     * Gets the shared reservation engine.
+     *
+     * @return stock reservation
+     */
+    public static StockReservation getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Locks the stock of all products of a group of orders and checks the orders in list order.
+     * An order is reserved if all its lines fit in the stock that the earlier orders left.
+     *
+     * @param conn connection of the running transaction (auto commit off)
+     * @param orders cart lines of each order
+     * @return allocation; call apply() to take the stock
+     * @throws SQLException if the stock can not be read
+     */
+    public Allocation allocate(Connection conn, List<List<CartItem>> orders) throws SQLException {
+        List<Map<Integer, Double>> quantities = new ArrayList<>();
+        Map<Integer, String> names = new TreeMap<>();
+        for (List<CartItem> items : orders) {
+            // one quantity per product
+            Map<Integer, Double> q = new TreeMap<>();
+            for (CartItem item : items) {
+                if (item.getQuantity() <= 0) continue;
+                int id = item.getProduct().getId();
+                q.merge(id, item.getQuantity(), Double::sum);
+                names.putIfAbsent(id, item.getProduct().getName());
+            }
+            quantities.add(q);
+        }
+
+        Allocation allocation = new Allocation(lockStock(conn, new ArrayList<>(names.keySet())));
+        for (Map<Integer, Double> q : quantities) {
+            List<InsufficientStockException.Shortfall> shortfalls = new ArrayList<>();
+            for (Map.Entry<Integer, Double> e : q.entrySet()) {
+                double available = allocation.left.getOrDefault(e.getKey(), 0.0);
+                if (available < e.getValue()) {
+                    shortfalls.add(new InsufficientStockException.Shortfall(
+                            e.getKey(), names.get(e.getKey()), e.getValue(), available));
+                }
+            }
+            if (shortfalls.isEmpty()) {
+                q.forEach((id, qty) -> allocation.left.merge(id, -qty, Double::sum));
+                allocation.shortfalls.add(null);
+            } else {
+                allocation.shortfalls.add(shortfalls);
+            }
+            allocation.quantities.add(q);
+        }
+        return allocation;
+    }
+
+    /**
+     * Takes the stock of all reserved orders of an allocation with one batched update.
+     *
+     * @param conn the connection that was used for allocate()
+     * @param allocation checked orders
+     * @throws SQLException if the update fails
+     */
+    public void apply(Connection conn, Allocation allocation) throws SQLException {
+        Map<Integer, Double> totals = new TreeMap<>();
+        for (int i = 0; i < allocation.quantities.size(); i++) {
+            if (allocation.isReserved(i)) {
+                allocation.quantities.get(i).forEach((id, qty) -> totals.merge(id, qty, Double::sum));
+            }
+        }
+
+        try {
+            if (!totals.isEmpty()) {
+                List<Integer> ids = new ArrayList<>(totals.keySet());
+                int[] counts;
+                try (PreparedStatement stmt = conn.prepareStatement(RESERVE_SQL)) {
+                    for (int id : ids) {
+                        double qty = totals.get(id);
+                        stmt.setDouble(1, qty);
+                        stmt.setInt(2, id);
+                        stmt.setDouble(3, qty);
+                        stmt.addBatch();
+                    }
+                    counts = stmt.executeBatch();
+                }
+                for (int i = 0; i < ids.size(); i++) {
+                    // the rows are locked, so this only happens if a row was deleted
+                    if (counts[i] == 0) throw new SQLException("Stock of product " + ids.get(i) + " changed during checkout");
+                }
+            }
+        } finally {
+            record(allocation);
+        }
+    }
+
+    /** @return number of orders that were checked */
+    public long getAttemptCount() {
+        return attemptCount.sum();
+    }
+
+    /** @return number of orders whose stock was taken */
+    public long getReservedCount() {
+        return reservedCount.sum();
+    }
+
+    /** @return number of orders that failed because of missing stock */
+    public long getConflictCount() {
+        return conflictCount.sum();
+    }
+
+    /** @return average time of one group (allocate to apply) in milliseconds */
+    public double getAverageMillis() {
+        long n = groupCount.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns reservation statistics.
+     *
+     * @return statistics as text
+     */
+    @Override
+    public String toString() {
+        return String.format("StockReservation[groups=%d, attempts=%d, reserved=%d, conflicts=%d, reservedLines=%d, "
+                        + "shortLines=%d, avg=%.2fms, max=%.2fms]",
+                groupCount.sum(), getAttemptCount(), getReservedCount(), getConflictCount(), reservedLineCount.sum(),
+                shortLineCount.sum(), getAverageMillis(), maxNanos.get() / 1_000_000.0);
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Adds the numbers of one group to the statistics.
+     *
+     * @param allocation finished allocation
+     */
+    private void record(Allocation allocation) {
+        groupCount.increment();
+        for (int i = 0; i < allocation.quantities.size(); i++) {
+            attemptCount.increment();
+            List<InsufficientStockException.Shortfall> shortfalls = allocation.shortfalls.get(i);
+            if (shortfalls == null) {
+                reservedCount.increment();
+                reservedLineCount.add(allocation.quantities.get(i).size());
+            } else if (!shortfalls.isEmpty()) { // empty: rejected for another reason
+                conflictCount.increment();
+                shortLineCount.add(shortfalls.size());
+            }
+        }
+        long nanos = System.nanoTime() - allocation.start;
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Reads and locks the current stock of some products, in product ID order.
+     *
+     * @param conn connection of the running transaction
+     * @param ids product IDs
+     * @return stock by product ID
+     * @throws SQLException if the query fails
+     */
+    private static Map<Integer, Double> lockStock(Connection conn, List<Integer> ids) throws SQLException {
+        Map<Integer, Double> stock = new TreeMap<>();
+        if (ids.isEmpty()) return stock;
+
+        StringBuilder sql = new StringBuilder("SELECT id, stock FROM productinfo WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") ORDER BY id FOR UPDATE");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setInt(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    stock.put(rs.getInt("id"), rs.getDouble("stock"));
+                }
+            }
+        }
+        return stock;
+    }
+}
@@ -1,5 +1,6 @@
 package util;
 
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ButtonType;
@@ -8,11 +9,13 @@ import java.util.Optional;
 /**
  * Utility class for showing alert messages.
  * It is used for error, warning, success, and confirmation alerts.
+ * Message alerts can also be shown from database threads; they are moved to the JavaFX thread.
  */
 public class Alertutil {
 
     /**
      * Shows a basic alert dialog.
+     * If it is called from another thread, the alert is shown later on the JavaFX thread.
      *
      * @param title alert title
      * @param header alert header text
@@ -20,6 +23,10 @@ public class Alertutil {
      * @param type alert type
      */
     public static void showAlert(String title, String header, String content, AlertType type) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> showAlert(title, header, content, type));
+            return;
+        }
         Alert alert = new Alert(type);
         alert.setTitle(title);
         alert.setHeaderText(header);
@@ -0,0 +1,105 @@
+package util;
+
+import javafx.application.Platform;
+import javafx.scene.Cursor;
+import javafx.scene.Node;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Connects async database work with the JavaFX screen.
+ * The result of a future is given to the screen code on the JavaFX thread (Platform.runLater).
+ *
+ * While a load is running, its "busy" node shows a loading state (disabled, wait cursor).
+ * If the same node starts a new load before the old one finished, the old result is dropped,
+ * so a slow old query can not overwrite newer data.
+ */
+public class FxAsync {
+
+    private static final String PENDING_KEY = "FxAsync.pending";
+    private static final String REQUEST_KEY = "FxAsync.request";
+
+    /**
+     * Shows the result of a load. Errors are shown in an error alert.
+     *
+     * @param busy node that shows the loading state (for example a table), or null
+     * @param task running database work
+     * @param onSuccess called on the JavaFX thread with the result
+     * @param <T> result type
+     */
+    public static <T> void load(Node busy, CompletableFuture<T> task, Consumer<T> onSuccess) {
+        load(busy, task, onSuccess,
+                error -> Alertutil.showErrorMessage("Database error:\n" + error.getMessage()));
+    }
+
+    /**
+     * Shows the result of a load.
+     *
+     * @param busy node that shows the loading state (for example a table), or null
+     * @param task running database work
+     * @param onSuccess called on the JavaFX thread with the result
+     * @param onError called on the JavaFX thread with the error
+     * @param <T> result type
+     */
+    public static <T> void load(Node busy, CompletableFuture<T> task,
+                                Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        long request = busy == null ? 0 : startLoading(busy);
+
+        task.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (busy != null) {
+                boolean latest = stopLoading(busy, request);
+                if (!latest) return; // a newer load of this node is running or done
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                cause.printStackTrace();
+                onError.accept(cause);
+            } else {
+                onSuccess.accept(result);
+            }
+        }));
+    }
+
+    /**
+     * Shows the loading state of a node and gives the load a number.
+     *
+     * @param busy node that shows the loading state
+     * @return number of this load
+     */
+    private static long startLoading(Node busy) {
+        Map<Object, Object> props = busy.getProperties();
+        int pending = (int) props.getOrDefault(PENDING_KEY, 0);
+        long request = (long) props.getOrDefault(REQUEST_KEY, 0L) + 1;
+        props.put(PENDING_KEY, pending + 1);
+        props.put(REQUEST_KEY, request);
+
+        if (pending == 0) {
+            busy.setDisable(true);
+            busy.setCursor(Cursor.WAIT);
+        }
+        return request;
+    }
+
+    /**
+     * Ends one load of a node and removes the loading state when no load is left.
+     *
+     * @param busy node that shows the loading state
+     * @param request number of the finished load
+     * @return true if this was the newest load of the node
+     */
+    private static boolean stopLoading(Node busy, long request) {
+        Map<Object, Object> props = busy.getProperties();
+        int pending = (int) props.getOrDefault(PENDING_KEY, 1) - 1;
+        props.put(PENDING_KEY, pending);
+
+        if (pending == 0) {
+            busy.setDisable(false);
+            busy.setCursor(null);
+        }
+        return request == (long) props.getOrDefault(REQUEST_KEY, 0L);
+    }
+}
@@ -1,14 +1,25 @@
 package util;
 
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * Utility for reading image files as byte arrays.
  */
 public class ImageUtil
 {
+    /** Longest side of a product card thumbnail in pixels. */
+    public static final int THUMBNAIL_SIZE = 120;
+
     public static byte[] readImageAsBytes(String filePath)
     {
         try {
@@ -18,4 +29,96 @@ public class ImageUtil
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Hashes image bytes using SHA-256.
+     * The hash is stored in productinfo.image_hash and used as the image ETag.
+     *
+     * @param image image bytes
+     * @return hash in lowercase hex format, or null if there is no image
+     */
+    public static String hash(byte[] image)
+    {
+        if (image == null || image.length == 0) return null;
+        return hex(sha256().digest(image));
+    }
+
+    /**
+     * Creates a new SHA-256 digest, for hashing bytes that come as a stream.
+     *
+     * @return SHA-256 message digest
+     */
+    public static MessageDigest sha256()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java runtime has SHA-256
+        }
+    }
+
+    /**
+     * Turns a digest into the lowercase hex format used by hash.
+     *
+     * @param bytes digest bytes
+     * @return hex text
+     */
+    public static String hex(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates a small copy of an image for product cards.
+     * The aspect ratio is kept. Opaque images are saved as JPEG, others as PNG.
+     * This uses AWT, not JavaFX, so it can also run outside the FX thread (for example in a migration).
+     *
+     * @param image original image bytes
+     * @param maxSize longest side of the thumbnail in pixels
+     * @return thumbnail bytes, the original bytes if the image is already small,
+     *         or null if there is no image or it cannot be read
+     */
+    public static byte[] createThumbnail(byte[] image, int maxSize)
+    {
+        if (image == null || image.length == 0) return null;
+        try {
+            BufferedImage src = ImageIO.read(new ByteArrayInputStream(image));
+            if (src == null) return null; // unknown format
+
+            int w = src.getWidth();
+            int h = src.getHeight();
+            if (w <= maxSize && h <= maxSize) return image;
+
+            double scale = (double) maxSize / Math.max(w, h);
+            int targetW = Math.max(1, (int) Math.round(w * scale));
+            int targetH = Math.max(1, (int) Math.round(h * scale));
+            boolean opaque = !src.getColorModel().hasAlpha();
+            int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+            // halve the size step by step, one big bilinear step looks blurry and loses detail
+            BufferedImage current = src;
+            while (w > targetW || h > targetH) {
+                w = Math.max(targetW, w / 2);
+                h = Math.max(targetH, h / 2);
+                BufferedImage next = new BufferedImage(w, h, type);
+                Graphics2D g = next.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+                g.dispose();
+                current = next;
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(current, opaque ? "jpg" : "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
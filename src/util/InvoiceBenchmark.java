@@ -0,0 +1,100 @@
+package util;
+
+import model.Order;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * Measures the time and memory of building one invoice PDF (InvoiceUtil.renderInvoice).
+ * No database is needed: the orders are made in memory.
+ *
+ * Run it by hand:
+ *   java util.InvoiceBenchmark [invoices] [warm-up invoices]
+ *
+ * It prints the latency per invoice (average, p50, p95, p99), the bytes allocated
+ * per invoice by the rendering thread and the PDF size.
+ * If the allocated bytes grow a lot, something in InvoiceUtil is built per invoice again.
+ */
+public class InvoiceBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of measured invoices (default 2000) and warm-up invoices (default 500)
+     * @throws Exception if an invoice can not be built
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int warmUp = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        for (int i = 0; i < warmUp; i++) {
+            InvoiceUtil.renderInvoice(sampleOrder(i));
+        }
+
+        Order[] orders = new Order[count];
+        for (int i = 0; i < count; i++) {
+            orders[i] = sampleOrder(warmUp + i);
+        }
+
+        long[] nanos = new long[count];
+        long pdfBytes = 0;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < count; i++) {
+            long t0 = System.nanoTime();
+            byte[] pdf = InvoiceUtil.renderInvoice(orders[i]);
+            nanos[i] = System.nanoTime() - t0;
+            pdfBytes += pdf.length;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Arrays.sort(nanos);
+        long total = Arrays.stream(nanos).sum();
+        System.out.printf("invoices:          %d (after %d warm-up)%n", count, warmUp);
+        System.out.printf("latency avg:       %.3f ms%n", total / 1e6 / count);
+        System.out.printf("latency p50:       %.3f ms%n", percentile(nanos, 50) / 1e6);
+        System.out.printf("latency p95:       %.3f ms%n", percentile(nanos, 95) / 1e6);
+        System.out.printf("latency p99:       %.3f ms%n", percentile(nanos, 99) / 1e6);
+        System.out.printf("throughput:        %.1f invoices/s%n", count * 1e9 / total);
+        System.out.printf("allocated/invoice: %s%n", allocated < 0 ? "n/a" : (allocated / count / 1024) + " KB");
+        System.out.printf("pdf size/invoice:  %d bytes%n", pdfBytes / count);
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Makes an order with typical invoice data.
+     *
+     * @param i number of the order
+     * @return order with customer and carrier names
+     */
+    private static Order sampleOrder(int i) {
+        long now = System.currentTimeMillis();
+        Order o = new Order(i + 1, new Timestamp(now - 86_400_000L), new Timestamp(now),
+                "Tomato x 2.0 kg, Potato x 1.5 kg, Apple x 3.0 kg, Banana x 1.0 kg, Cucumber x 0.5 kg",
+                1, 2, true, 123.45 + i % 100, "");
+        o.setCustomerName("customer" + (i % 50));
+        o.setCustomerAddress("Street " + (i % 50) + ", Istanbul");
+        o.setCarrierName("carrier" + (i % 5));
+        return o;
+    }
+
+    /**
+     * Gets the bytes allocated by this thread so far.
+     *
+     * @return allocated bytes, or -1 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
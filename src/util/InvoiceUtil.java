@@ -2,103 +2,247 @@ package util;
 
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
-import com.itextpdf.text.pdf.draw.LineSeparator;
-import dao.OrderDAO;
 import model.Order;
 
 import java.io.*;
 import java.nio.file.*;
-import java.util.Base64;
 
 /**
  * Utility class for creating and saving invoice files.
- * It generates a PDF invoice and also stores it as Base64 text (CLOB) in the database.
+ * It builds the PDF invoice of an order and writes invoice files.
+ * The screens use service.InvoiceService, which also stores the bytes in the database
+ * (order_invoices) and runs this work off the JavaFX thread.
+ *
+ * The fixed parts of the invoice (fonts, texts, positions) are prepared once, and each
+ * thread reuses its output buffer. util.InvoiceBenchmark measures the cost per invoice.
  */
 public class InvoiceUtil {
 
+    /** Folder of the invoice files. */
+    public static final Path INVOICE_DIR = Paths.get("invoices");
+
     /**
-     * Creates a PDF invoice for the given order.
-     * The invoice is saved to disk and stored in the database as Base64 text.
+     * Builds the PDF invoice of an order in memory.
      *
-     * @param order The order information
-     * @param filePath The file name for saving the PDF
-     * @throws Exception if file creation or DB save fails
+     * @param order The order information (with customer and carrier names)
+     * @return PDF bytes
+     * @throws DocumentException if the PDF can not be built
      */
-    public static void generateInvoice(Order order, String filePath) throws Exception {
-        // PDF directory
-        Path dir = Paths.get("invoices");
-        if (!Files.exists(dir)) {
-            Files.createDirectories(dir);
+    public static byte[] renderInvoice(Order order) throws DocumentException {
+        ByteArrayOutputStream out = BUFFER.get();
+        out.reset();
+        try {
+            writeInvoice(order, out);
+            return out.toByteArray();
+        } finally {
+            if (out.size() > MAX_POOLED_BUFFER) BUFFER.remove();
         }
+    }
 
-        // Full file path
-        Path pdfPath = dir.resolve(filePath);
+    /**
+     * Writes a PDF file. The bytes go to a temporary file first, which is then renamed,
+     * so a reader never sees a half written invoice.
+     *
+     * @param path target file
+     * @param pdfBytes PDF bytes
+     * @throws IOException if the file can not be written
+     */
+    public static void saveInvoiceFile(Path path, byte[] pdfBytes) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, pdfBytes);
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-        // Create PDF document
+    /**
+     * Writes the PDF invoice of an order to a stream.
+     * The text is drawn straight onto the page at the positions of the invoice template,
+     * so only the order values are measured and wrapped here.
+     *
+     * @param order The order information
+     * @param out target stream (it is closed together with the document)
+     * @throws DocumentException if the PDF can not be built
+     */
+    private static void writeInvoice(Order order, OutputStream out) throws DocumentException {
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, new FileOutputStream(pdfPath.toFile()));
+        PdfWriter writer = PdfWriter.getInstance(document, out);
         document.open();
-
-        // Fonts
-        Font titleFont = new Font(Font.FontFamily.HELVETICA, 20, Font.BOLD);
-        Font sectionFont = new Font(Font.FontFamily.HELVETICA, 14, Font.BOLD);
-        Font normalFont = new Font(Font.FontFamily.HELVETICA, 11);
-        Font boldFont = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD);
-        Font italicFont = new Font(Font.FontFamily.HELVETICA, 10, Font.ITALIC);
+        PdfContentByte cb = writer.getDirectContent();
 
         // Header
-        Paragraph title = new Paragraph("GREEN GROCER INVOICE\n\n", titleFont);
-        title.setAlignment(Element.ALIGN_CENTER);
-        document.add(title);
-        document.add(new LineSeparator());
+        cb.beginText();
+        text(cb, BOLD, 20, TITLE, TITLE_X, TITLE_Y);
+        line(cb, RULE_UNDER_TITLE_Y);
 
         // Invoice info
-        Paragraph info = new Paragraph();
-        info.add(new Chunk("Invoice ID: ", boldFont));
-        info.add(order.getId() + "\n");
-        info.add(new Chunk("Order Date: ", boldFont));
-        info.add(order.getOrderTime() + "\n");
-        info.add(new Chunk("Delivery Date: ", boldFont));
-        info.add(order.getDeliveryTime() + "\n\n");
-        document.add(info);
+        float y = RULE_UNDER_TITLE_Y - 16;
+        text(cb, BOLD, 11, INVOICE_ID, LEFT, y);
+        text(cb, NORMAL, 12, String.valueOf(order.getId()), INVOICE_ID_X, y);
+        y -= 16;
+        text(cb, BOLD, 11, ORDER_DATE, LEFT, y);
+        text(cb, NORMAL, 12, String.valueOf(order.getOrderTime()), ORDER_DATE_X, y);
+        y -= 16;
+        text(cb, BOLD, 11, DELIVERY_DATE, LEFT, y);
+        text(cb, NORMAL, 12, String.valueOf(order.getDeliveryTime()), DELIVERY_DATE_X, y);
+        y -= 16 + 21; // one empty line, then the heading
 
         // Customer info
-        document.add(new Paragraph("Customer Information", sectionFont));
-        document.add(new LineSeparator());
-        document.add(new Paragraph(
-                "Customer: " + order.getCustomerName() + "\n" +
-                        "Address: " + order.getCustomerAddress() + "\n" +
-                        "Carrier: " + order.getCarrierName() + "\n\n",
-                normalFont
-        ));
+        y = heading(document, cb, "Customer Information", y);
+        y = paragraph(document, cb, NORMAL, 11, "Customer: " + order.getCustomerName(), y);
+        y = paragraph(document, cb, NORMAL, 11, "Address: " + order.getCustomerAddress(), y);
+        y = paragraph(document, cb, NORMAL, 11, "Carrier: " + order.getCarrierName(), y);
+        y -= 21; // y is on the empty line under the block
 
         // Products
-        document.add(new Paragraph("Products", sectionFont));
-        document.add(new LineSeparator());
-        document.add(new Paragraph(order.getProducts(), normalFont));
-
-        // Total
-        Paragraph total = new Paragraph(
-                "\nTOTAL (incl. VAT): " + order.getTotalCost() + " ₺",
-                boldFont
-        );
-        total.setAlignment(Element.ALIGN_RIGHT);
-        document.add(total);
+        y = heading(document, cb, "Products", y);
+        y = paragraph(document, cb, NORMAL, 11, order.getProducts(), y);
+
+        // Total (the empty line above it is part of the template)
+        y = newLine(document, cb, y - 16.5f, 16.5f);
+        String total = "TOTAL (incl. VAT): " + order.getTotalCost() + " ₺";
+        text(cb, BOLD, 11, total, RIGHT - BOLD.getWidthPoint(total, 11), y);
 
         // Footer
-        document.add(new Paragraph(
-                "\n\nThank you for shopping with GreenGrocer!",
-                italicFont
-        ));
+        y = newLine(document, cb, y - 15 * 3, 15);
+        text(cb, ITALIC, 10, FOOTER, LEFT, y);
+        cb.endText();
 
         document.close();
+    }
 
-        // ✅ Convert PDF to Base64 for database
-        byte[] pdfBytes = Files.readAllBytes(pdfPath);
-        String base64Invoice = Base64.getEncoder().encodeToString(pdfBytes);
+    // --- INVOICE TEMPLATE ---
+    // The fixed parts of the invoice: fonts, texts and positions (A4, 36 pt margins).
+    // They are made once; iText shares the standard fonts between documents and threads.
+
+    private static final BaseFont NORMAL = baseFont(BaseFont.HELVETICA);
+    private static final BaseFont BOLD = baseFont(BaseFont.HELVETICA_BOLD);
+    private static final BaseFont ITALIC = baseFont(BaseFont.HELVETICA_OBLIQUE);
+
+    private static final float LEFT = 36;
+    private static final float RIGHT = 559;
+    private static final float TOP = 806;
+    private static final float BOTTOM = 36;
+
+    private static final String TITLE = "GREEN GROCER INVOICE";
+    private static final String INVOICE_ID = "Invoice ID: ";
+    private static final String ORDER_DATE = "Order Date: ";
+    private static final String DELIVERY_DATE = "Delivery Date: ";
+    private static final String FOOTER = "Thank you for shopping with GreenGrocer!";
+
+    private static final float TITLE_Y = TOP - 30;
+    private static final float TITLE_X = (LEFT + RIGHT - BOLD.getWidthPoint(TITLE, 20)) / 2;
+    private static final float RULE_UNDER_TITLE_Y = TITLE_Y - 30;
+    private static final float INVOICE_ID_X = LEFT + BOLD.getWidthPoint(INVOICE_ID, 11);
+    private static final float ORDER_DATE_X = LEFT + BOLD.getWidthPoint(ORDER_DATE, 11);
+    private static final float DELIVERY_DATE_X = LEFT + BOLD.getWidthPoint(DELIVERY_DATE, 11);
+
+    /** Reused output buffer of each rendering thread. */
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFER =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(8 * 1024));
+
+    /** A buffer that grew beyond this size (very long orders) is not kept. */
+    private static final int MAX_POOLED_BUFFER = 64 * 1024;
+
+    private static BaseFont baseFont(String name) {
+        try {
+            return BaseFont.createFont(name, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+        } catch (DocumentException | IOException e) {
+            throw new IllegalStateException("Font " + name + " is not available.", e); // built into iText
+        }
+    }
 
-        // ✅ Save Base64 string into database (CLOB)
-        OrderDAO orderDAO = new OrderDAO();
-        orderDAO.saveInvoiceContent(order.getId(), base64Invoice);
+    /**
+     * Draws one line of text. Must be called between beginText and endText.
+     */
+    private static void text(PdfContentByte cb, BaseFont font, float size, String text, float x, float y) {
+        cb.setFontAndSize(font, size);
+        cb.setTextMatrix(x, y);
+        cb.showText(text);
+    }
+
+    /**
+     * Draws a full width line. Must be called between beginText and endText.
+     */
+    private static void line(PdfContentByte cb, float y) {
+        cb.endText();
+        cb.setLineWidth(1);
+        cb.moveTo(LEFT, y);
+        cb.lineTo(RIGHT, y);
+        cb.stroke();
+        cb.beginText();
+    }
+
+    /**
+     * Draws a section heading with a line on its baseline.
+     *
+     * @return baseline of the next line
+     */
+    private static float heading(Document document, PdfContentByte cb, String title, float y) {
+        y = newLine(document, cb, y, 21);
+        text(cb, BOLD, 14, title, LEFT, y);
+        line(cb, y);
+        return y - 16.5f;
+    }
+
+    /**
+     * Draws text that is wrapped at the page width, 1.5 lines apart.
+     * Line breaks in the text are kept.
+     *
+     * @return baseline of the next line
+     */
+    private static float paragraph(Document document, PdfContentByte cb, BaseFont font, float size,
+                                   String text, float y) {
+        float leading = size * 1.5f;
+        float width = RIGHT - LEFT;
+        for (String part : String.valueOf(text).split("\n", -1)) {
+            int start = 0;
+            do {
+                int end = lineEnd(font, size, part, start, width);
+                y = newLine(document, cb, y, leading);
+                text(cb, font, size, part.substring(start, end).stripTrailing(), LEFT, y);
+                y -= leading;
+                start = end;
+                while (start < part.length() && part.charAt(start) == ' ') start++;
+            } while (start < part.length());
+        }
+        return y;
+    }
+
+    /**
+     * Finds where a wrapped line ends: after the last space that fits, or inside a word
+     * that is wider than the page.
+     *
+     * @return index after the last character of the line
+     */
+    private static int lineEnd(BaseFont font, float size, String text, int start, float width) {
+        float used = 0;
+        int lastSpace = -1;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            used += font.getWidthPoint(c, size);
+            if (used > width) {
+                if (lastSpace > start) return lastSpace;
+                return Math.max(i, start + 1);
+            }
+            if (c == ' ') lastSpace = i;
+        }
+        return text.length();
+    }
+
+    /**
+     * Starts a new page if a line at y would be below the bottom margin.
+     *
+     * @return y, or the first baseline of the new page
+     */
+    private static float newLine(Document document, PdfContentByte cb, float y, float leading) {
+        if (y >= BOTTOM) return y;
+        cb.endText();
+        document.newPage();
+        cb.beginText();
+        return TOP - leading;
     }
 }
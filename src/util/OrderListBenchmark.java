@@ -0,0 +1,178 @@
+package util;
+
+import dao.OrderDAO;
+import database.DatabaseConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Measures how many bytes the order list queries read from the database,
+ * before (SELECT o.*, every orderinfo column) and after (OrderDAO.ORDER_COLUMNS).
+ * Up to migration V8, SELECT o.* also read invoice_content (a Base64 PDF per order);
+ * from V9 on, invoices are in order_invoices and the two forms are close.
+ *
+ * The queries are the first pages that the screens load (OrderDAO.*PageSql), so the
+ * numbers follow the DAO; "before" is the same text with o.* in place of the column list.
+ *
+ * Run it by hand against the configured database:
+ *   java util.OrderListBenchmark [rounds]
+ *
+ * Two numbers are shown per call:
+ * - value bytes: size of all returned values as UTF-8 text (MySQL sends values as text),
+ * - server bytes: the MySQL Bytes_sent counter of the session ("n/a" on other databases).
+ * If "after" grows a lot, a large column is in the order lists again.
+ */
+public class OrderListBenchmark {
+
+    /** Rows of the first page of an order table (like controller.PagedTableLoader). */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * One order list query in its old and new form.
+     */
+    private static class Case {
+        final String name;
+        final String before;
+        final String after;
+        final Object[] params;
+
+        /**
+         * Creates a case from a DAO query.
+         *
+         * @param name shown name
+         * @param after query of the DAO
+         * @param params parameter values of the query
+         */
+        Case(String name, String after, Object... params) {
+            this.name = name;
+            this.before = after.replace(OrderDAO.ORDER_COLUMNS, "o.*");
+            this.after = after;
+            this.params = params;
+        }
+    }
+
+    /**
+     * Bytes and time of one query, per call.
+     */
+    private static class Result {
+        int rows;
+        long valueBytes;
+        long serverBytes = -1;
+        double millis;
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of rounds per query (default 5)
+     * @throws SQLException if the database can not be used
+     */
+    public static void main(String[] args) throws SQLException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int userId = firstId(conn, "SELECT user_id FROM orderinfo WHERE user_id IS NOT NULL LIMIT 1");
+            int carrierId = firstId(conn, "SELECT carrier_id FROM orderinfo WHERE isdelivered = 1 AND carrier_id <> 0 LIMIT 1");
+
+            Case[] cases = {
+                    new Case("all orders (owner)", OrderDAO.allOrdersPageSql(false), PAGE_SIZE),
+                    new Case("orders by user " + userId, OrderDAO.ordersOfUserPageSql(false), userId, PAGE_SIZE),
+                    new Case("delivered by carrier " + carrierId, OrderDAO.deliveredOrdersOfCarrierPageSql(false),
+                            carrierId, PAGE_SIZE)
+            };
+
+            System.out.printf("%-28s %6s %14s %14s %14s %14s %7s%n",
+                    "query", "rows", "before value", "after value", "before server", "after server", "saved");
+            for (Case c : cases) {
+                Result before = measure(conn, c.before, c.params, rounds);
+                Result after = measure(conn, c.after, c.params, rounds);
+                double saved = before.valueBytes == 0 ? 0 : 100.0 * (before.valueBytes - after.valueBytes) / before.valueBytes;
+                System.out.printf("%-28s %6d %14d %14d %14s %14s %6.1f%%%n",
+                        c.name, after.rows, before.valueBytes, after.valueBytes,
+                        server(before), server(after), saved);
+                System.out.printf("%-28s %6s %11.2f ms %11.2f ms%n", "", "", before.millis, after.millis);
+            }
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    // --- HELPERS ---
+
+    /**
+     * Runs a query several times and reads every value, like the DAO does.
+     *
+     * @param conn connection
+     * @param sql query
+     * @param params parameter values
+     * @param rounds number of runs
+     * @return bytes and time per call
+     * @throws SQLException if the query fails
+     */
+    private static Result measure(Connection conn, String sql, Object[] params, int rounds) throws SQLException {
+        Result result = new Result();
+        long statusCost = bytesSent(conn);
+        long start = bytesSent(conn);
+        statusCost = start < 0 ? -1 : start - statusCost; // bytes of one status query itself
+
+        long nanos = 0;
+        long valueBytes = 0;
+        for (int r = 0; r < rounds; r++) {
+            long t0 = System.nanoTime();
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    int columns = rs.getMetaData().getColumnCount();
+                    int rows = 0;
+                    while (rs.next()) {
+                        rows++;
+                        for (int i = 1; i <= columns; i++) {
+                            String value = rs.getString(i);
+                            if (value != null) valueBytes += value.getBytes(StandardCharsets.UTF_8).length;
+                        }
+                    }
+                    result.rows = rows;
+                }
+            }
+            nanos += System.nanoTime() - t0;
+        }
+
+        long end = bytesSent(conn);
+        if (start >= 0 && end >= 0) {
+            result.serverBytes = (end - start - statusCost) / rounds;
+        }
+        result.valueBytes = valueBytes / rounds;
+        result.millis = nanos / 1_000_000.0 / rounds;
+        return result;
+    }
+
+    /**
+     * Reads the MySQL Bytes_sent counter of the session.
+     *
+     * @param conn connection
+     * @return bytes sent by the server on this session, or -1 if the database has no such counter
+     */
+    private static long bytesSent(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SHOW SESSION STATUS LIKE 'Bytes_sent'")) {
+            return rs.next() ? rs.getLong(2) : -1;
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private static int firstId(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static String server(Result r) {
+        return r.serverBytes < 0 ? "n/a" : String.valueOf(r.serverBytes);
+    }
+}